@@ -3,53 +3,158 @@ package com.kitfox.svg;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 public class BufferPainter
 {
     public static final boolean DEBUG_PAINT = false;
 
+    /**
+     * An element rendered to an offscreen layer
+     */
     public static class Cache
     {
         private final BufferedImage img;
         private final Rectangle bounds;
         private final AffineTransform transform;
+        //State of the diagram the layer was rendered from
+        private final int modificationCount;
+        private final Rectangle viewport;
+        //Number of threads drawing the layer, and whether it has been
+        // discarded from the layer cache.  Guarded by the LayerCache.
+        private int pins;
+        private boolean discarded;
 
         public Cache(BufferedImage img, Rectangle bounds, AffineTransform transform)
+        {
+            this(img, bounds, transform, -1, null);
+        }
+
+        Cache(BufferedImage img, Rectangle bounds, AffineTransform transform,
+              int modificationCount, Rectangle viewport)
         {
             this.img = img;
             this.bounds = bounds;
             this.transform = transform;
+            this.modificationCount = modificationCount;
+            this.viewport = viewport;
         }
 
-        boolean isCompatible(AffineTransform tx)
+        /**
+         * @return the memory used by the layer, in bytes
+         */
+        long getSize()
         {
-            return tx.getScaleX() == transform.getScaleX()
-                && tx.getScaleY() == transform.getScaleY()
-                && tx.getShearX() == transform.getShearX()
-                && tx.getShearY() == transform.getShearY();
+            return (long) img.getWidth() * img.getHeight() * 4;
+        }
+
+        void pin()
+        {
+            pins++;
+        }
+
+        /**
+         * Ends a use started by pin(), returning the image to the pool if the
+         * layer has been discarded meanwhile
+         */
+        void unpin()
+        {
+            if (--pins == 0 && discarded)
+            {
+                ImagePool.release(img);
+            }
+        }
+
+        /**
+         * Returns the image of a layer that has been discarded to the pool
+         * once no thread is drawing it any more
+         */
+        void recycle()
+        {
+            discarded = true;
+            if (pins == 0)
+            {
+                ImagePool.release(img);
+            }
         }
 
-        Rectangle getBoundsForTransform(AffineTransform tx)
+        /**
+         * Tests whether this layer can be drawn in place of rendering the
+         * element again.  This is the case if the diagram has not changed
+         * and the transform differs from the one the layer was rendered
+         * with by a translation and a uniform scale within a tolerance.
+         *
+         * @param tx Transform the element is to be drawn with
+         * @return transform from the device space the layer was rendered in
+         * to the device space of tx, or null if the layer cannot be used
+         */
+        AffineTransform getReuseTransform(AffineTransform tx, int modificationCount,
+                                          Rectangle viewport, float scaleTolerance)
         {
-            double dx = tx.getTranslateX() - transform.getTranslateX();
-            double dy = tx.getTranslateY() - transform.getTranslateY();
-            return new Rectangle((int) (bounds.x + dx), (int) (bounds.y + dy),
-                                 bounds.width, bounds.height);
+            if (this.modificationCount != modificationCount || !viewport.equals(this.viewport))
+            {
+                return null;
+            }
+
+            if (tx.getScaleX() == transform.getScaleX()
+                && tx.getScaleY() == transform.getScaleY()
+                && tx.getShearX() == transform.getShearX()
+                && tx.getShearY() == transform.getShearY())
+            {
+                return AffineTransform.getTranslateInstance(
+                    tx.getTranslateX() - transform.getTranslateX(),
+                    tx.getTranslateY() - transform.getTranslateY());
+            }
+
+            if (scaleTolerance <= 0)
+            {
+                return null;
+            }
+
+            AffineTransform relative;
+            try
+            {
+                relative = transform.createInverse();
+            } catch (NoninvertibleTransformException e)
+            {
+                return null;
+            }
+            relative.preConcatenate(tx);
+
+            //Must be a uniform scale close to 1
+            double scale = relative.getScaleX();
+            double limit = scaleTolerance * Math.abs(scale);
+            if (Math.abs(scale - 1) > scaleTolerance
+                || Math.abs(relative.getScaleY() - scale) > limit
+                || Math.abs(relative.getShearX()) > limit
+                || Math.abs(relative.getShearY()) > limit)
+            {
+                return null;
+            }
+            return relative;
         }
     }
 
+    /**
+     * @return true if the element must be rendered through an offscreen
+     * buffer, because it has a mask or filter
+     */
+    static boolean isBuffered(RenderableElement element)
+    {
+        return element.cachedMask != null
+            || (element.filter != null && !element.filter.filterEffects.isEmpty());
+    }
+
     public static void paintElement(Graphics2D g, RenderableElement element) throws SVGException
     {
-        if (element.cachedMask != null
-            || (element.filter != null && !element.filter.filterEffects.isEmpty()))
+        if (isBuffered(element))
         {
             renderElement(g, element);
         } else
@@ -67,54 +172,150 @@ public class BufferPainter
         return (float) Math.sqrt(dx * dx + dy * dy);
     }
 
+    /**
+     * @return the use element an element is being rendered under, or the
+     * element itself if there are several, since its appearance then
+     * depends on more than one
+     */
+    private static SVGElement getRenderContext(RenderableElement element)
+    {
+        int depth = element.diagram.parentContextDepth.get();
+        if (depth == 0)
+        {
+            return null;
+        }
+
+        if (depth == 1)
+        {
+            for (SVGElement ele = element; ele != null; ele = ele.getParent())
+            {
+                SVGElement context = ele.getParentContext();
+                if (context != null)
+                {
+                    return context;
+                }
+            }
+        }
+        return element;
+    }
+
     private static void renderElement(Graphics2D g, RenderableElement element) throws SVGException
     {
         AffineTransform transform = g.getTransform();
+        SVGDiagram diagram = element.diagram;
 
         Graphics2D gg = (Graphics2D) g.create();
-        Rectangle elementBounds = element.getBoundingBox().getBounds();
+        //Cover the whole stroke where it is known, not just half of it
+        Rectangle2D renderBounds = element.getRenderBounds();
+        Rectangle elementBounds = (renderBounds != null ? renderBounds : element.getBoundingBox()).getBounds();
         Rectangle transformedBounds = transform.createTransformedShape(elementBounds).getBounds();
         Rectangle dstBounds = new Rectangle(transformedBounds);
 
-        ImageObserver observer = element.diagram.getCurrentRenderTarget();
+        ImageObserver observer = diagram.getCurrentRenderTarget();
 
-        Cache cache = element.getBufferCache();
-        BufferedImage elementImage;
+        //Layers are reused across frames unless the element is drawn under
+        // several use elements at once
+        SVGElement context = getRenderContext(element);
+        boolean cacheable = context != element;
+        LayerCache layers = diagram.getLayerCache();
+        int modificationCount = diagram.getModificationCount();
+        Rectangle viewport = new Rectangle(diagram.getDeviceViewport());
 
-        if (cache == null || observer == null || !cache.isCompatible(transform))
+        //Pinned layers are not returned to the pool while we draw them
+        Cache cache = cacheable ? layers.get(element, context) : null;
+        Cache pinned = cache;
+        try
         {
-            elementImage = renderToBuffer(gg, element, transform, transformedBounds, dstBounds);
-            if (observer != null)
+            AffineTransform reuseXform = cache == null ? null
+                : cache.getReuseTransform(transform, modificationCount, viewport, layers.getScaleTolerance());
+            BufferedImage elementImage;
+            BufferedImage releaseImage = null;
+
+            if (reuseXform == null)
             {
-                // Only do caching if we are painting to a component.
-                Cache cacheEntry = new Cache(elementImage, new Rectangle(dstBounds), transform);
-                element.setBufferImage(cacheEntry);
+                //Layers kept for reuse must hold the whole element, otherwise
+                // only the part inside the clip is needed
+                Rectangle limit = null;
+                Shape clip = g.getClip();
+                if (clip != null && (!cacheable || layers.getBudget() == 0))
+                {
+                    limit = transform.createTransformedShape(clip).getBounds();
+                }
+
+                elementImage = renderToBuffer(gg, element, transform, transformedBounds, dstBounds, limit);
+                if (elementImage == null)
+                {
+                    gg.dispose();
+                    return;
+                }
+                Cache layer = cacheable ? new Cache(elementImage, new Rectangle(dstBounds),
+                                                    transform, modificationCount, viewport) : null;
+                if (layer != null && layers.put(element, context, layer))
+                {
+                    if (pinned != null)
+                    {
+                        layers.unpin(pinned);
+                    }
+                    pinned = layer;
+                } else
+                {
+                    //Returned to the pool once drawn
+                    releaseImage = elementImage;
+                }
+            } else if (reuseXform.getType() == AffineTransform.TYPE_TRANSLATION
+                       || reuseXform.isIdentity())
+            {
+                //Panned, so blit at the nearest pixel
+                elementImage = cache.img;
+                dstBounds.setBounds(
+                    cache.bounds.x + (int) Math.floor(reuseXform.getTranslateX() + .5),
+                    cache.bounds.y + (int) Math.floor(reuseXform.getTranslateY() + .5),
+                    cache.bounds.width, cache.bounds.height);
+            } else
+            {
+                //Zoomed slightly, so resample the layer
+                gg.setTransform(reuseXform);
+                gg.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                gg.drawImage(cache.img, cache.bounds.x, cache.bounds.y, observer);
+                gg.dispose();
+                return;
             }
-        } else
-        {
-            elementImage = cache.img;
-            dstBounds.setBounds(cache.getBoundsForTransform(transform));
-        }
 
-        // Reset the transform. We already accounted for it in the buffer image.
-        gg.setTransform(new AffineTransform());
-        gg.drawImage(elementImage, dstBounds.x, dstBounds.y, observer);
-        if (DEBUG_PAINT)
+            // Reset the transform. We already accounted for it in the buffer image.
+            gg.setTransform(new AffineTransform());
+            gg.drawImage(elementImage, dstBounds.x, dstBounds.y, observer);
+            if (DEBUG_PAINT)
+            {
+                gg.setColor(Color.GREEN);
+                gg.drawRect(dstBounds.x, dstBounds.y, dstBounds.width, dstBounds.height);
+                if (!dstBounds.equals(transformedBounds))
+                {
+                    gg.setColor(Color.PINK);
+                    gg.drawRect(transformedBounds.x, transformedBounds.y, transformedBounds.width, transformedBounds.height);
+                }
+            }
+            gg.dispose();
+            ImagePool.release(releaseImage);
+        }
+        finally
         {
-            gg.setColor(Color.GREEN);
-            gg.drawRect(dstBounds.x, dstBounds.y, dstBounds.width, dstBounds.height);
-            if (!dstBounds.equals(transformedBounds))
+            if (pinned != null)
             {
-                gg.setColor(Color.PINK);
-                gg.drawRect(transformedBounds.x, transformedBounds.y, transformedBounds.width, transformedBounds.height);
+                layers.unpin(pinned);
             }
         }
-        gg.dispose();
     }
 
+    /**
+     * Renders an element with its filter and mask applied.  The buffer
+     * covers the region of the element that may be non-transparent, limited
+     * to limit if it is not null.  dstBounds is set to the region covered.
+     *
+     * @return the buffer, or null if nothing would be drawn
+     */
     private static BufferedImage renderToBuffer(Graphics2D gg, RenderableElement element,
                                                 AffineTransform transform, Rectangle transformedBounds,
-                                                Rectangle dstBounds) throws SVGException
+                                                Rectangle dstBounds, Rectangle limit) throws SVGException
     {
         Point2D.Float origin = new Point2D.Float(0, 0);
         transform.transform(origin, origin);
@@ -126,32 +327,30 @@ public class BufferPainter
         testPoint.setLocation(0, 1);
         float yScale = getTransformScale(origin, testPoint, transform);
 
-        List<FilterEffects.FilterOp> filterOps = element.filter == null
-                ? Collections.emptyList()
-                : element.filter.filterEffects.stream()
-                        .flatMap(f -> f.getOperations(dstBounds, xScale, yScale).stream())
-                        .filter(Objects::nonNull)
-                        .collect(Collectors.toList());
-
-        for (FilterEffects.FilterOp filterOp : filterOps)
-        {
-            int right = Math.max(dstBounds.x + dstBounds.width,
-                                 filterOp.requiredImageBounds.x + filterOp.requiredImageBounds.width);
-            int bottom = Math.max(dstBounds.y + dstBounds.height,
-                                  filterOp.requiredImageBounds.y + filterOp.requiredImageBounds.height);
-            dstBounds.x = Math.min(dstBounds.x, filterOp.requiredImageBounds.x);
-            dstBounds.y = Math.min(dstBounds.y, filterOp.requiredImageBounds.y);
-            dstBounds.width = right - dstBounds.x;
-            dstBounds.height = bottom - dstBounds.y;
-        }
-
-
-        BufferedImage elementImage = BufferPainter.paintToBuffer(gg, transform, dstBounds, transformedBounds,
-                                                                 element, null, true);
-
-        for (FilterEffects.FilterOp filterOp : filterOps)
+        BufferedImage elementImage;
+        if (element.filter == null || element.filter.filterEffects.isEmpty())
         {
-            elementImage = filterOp.op.filter(elementImage, null);
+            if (limit != null)
+            {
+                dstBounds.setBounds(dstBounds.intersection(limit));
+            }
+            if (dstBounds.isEmpty())
+            {
+                return null;
+            }
+            elementImage = BufferPainter.paintToBuffer(gg, transform, dstBounds, transformedBounds,
+                                                       element, null, true);
+        } else
+        {
+            FilterEffects.FilterBuffer result = new FilterGraph(element.filter).apply(
+                transformedBounds, limit, xScale, yScale,
+                bounds -> BufferPainter.paintToBuffer(gg, transform, bounds, bounds, element, null, true));
+            if (result.isEmpty())
+            {
+                return null;
+            }
+            dstBounds.setBounds(result.bounds);
+            elementImage = result.image;
         }
 
         if (element.cachedMask != null)
@@ -167,6 +366,7 @@ public class BufferPainter
             elementGraphics.setComposite(element.cachedMask.createMaskComposite());
             elementGraphics.drawImage(maskImage, 0, 0, element.diagram.getCurrentRenderTarget());
             elementGraphics.dispose();
+            ImagePool.release(maskImage);
         }
         return elementImage;
     }
@@ -186,10 +386,7 @@ public class BufferPainter
                                               RenderableElement element,
                                               Color bgColor, boolean preMultiplied) throws SVGException
     {
-        int type = preMultiplied
-                ? BufferedImage.TYPE_INT_ARGB_PRE
-                : BufferedImage.TYPE_INT_ARGB;
-        BufferedImage img = new BufferedImage(dstBounds.width, dstBounds.height, type);
+        BufferedImage img = ImagePool.borrow(dstBounds.width, dstBounds.height, preMultiplied);
         Graphics2D imgGraphics = (Graphics2D) img.getGraphics();
         if (g != null)
         {
@@ -100,6 +100,14 @@ public class Circle extends ShapeElement
         finishLayer(g);
     }
 
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        beginLayer(builder);
+        compileShape(builder, circle);
+        finishLayer(builder);
+    }
+
     @Override
     public Shape getShape()
     {
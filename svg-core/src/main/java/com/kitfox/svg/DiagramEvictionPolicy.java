@@ -0,0 +1,265 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+package com.kitfox.svg;
+
+import com.kitfox.svg.xml.StyleAttribute;
+import java.io.Serializable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides when an SVGUniverse holds too many diagrams and which ones to
+ * release first.  A universe limited by a policy will discard its least
+ * valuable diagrams once the number of loaded diagrams or their estimated
+ * memory use exceeds the limits of the policy.  Diagrams which are referenced
+ * by other loaded documents are never discarded.
+ *
+ * @author kitfox
+ */
+abstract public class DiagramEvictionPolicy implements Comparator<DiagramEvictionPolicy.Usage>, Serializable
+{
+    public static final long serialVersionUID = 0;
+
+    private final int maxDiagrams;
+    private final long maxBytes;
+
+    /**
+     * @param maxDiagrams - Maximum number of diagrams to keep loaded, or 0 for
+     * no limit
+     * @param maxBytes - Maximum estimated memory used by all loaded diagrams,
+     * or 0 for no limit
+     */
+    protected DiagramEvictionPolicy(int maxDiagrams, long maxBytes)
+    {
+        this.maxDiagrams = maxDiagrams;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Creates a policy which discards the least recently used diagrams first.
+     */
+    public static DiagramEvictionPolicy createLRU(int maxDiagrams, long maxBytes)
+    {
+        return new LeastRecentlyUsed(maxDiagrams, maxBytes);
+    }
+
+    /**
+     * Creates a policy which discards the least frequently used diagrams first.
+     */
+    public static DiagramEvictionPolicy createLFU(int maxDiagrams, long maxBytes)
+    {
+        return new LeastFrequentlyUsed(maxDiagrams, maxBytes);
+    }
+
+    public int getMaxDiagrams()
+    {
+        return maxDiagrams;
+    }
+
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    /**
+     * @param numDiagrams - Number of diagrams currently loaded
+     * @param numBytes - Estimated memory used by the loaded diagrams
+     * @return true if diagrams must be discarded to stay within this policy
+     */
+    public boolean isOverBudget(int numDiagrams, long numBytes)
+    {
+        return (maxDiagrams > 0 && numDiagrams > maxDiagrams)
+            || (maxBytes > 0 && numBytes > maxBytes);
+    }
+
+    /**
+     * Orders diagrams by how eagerly they should be discarded.  Diagrams
+     * which compare lower are discarded first.
+     */
+    @Override
+    abstract public int compare(Usage u1, Usage u2);
+
+    /**
+     * Makes a rough estimate of the memory retained by a diagram.  The default
+     * implementation counts elements and the size of their attributes.
+     *
+     * @param diagram - Completely loaded diagram
+     * @return Approximate size in bytes
+     */
+    public long estimateSize(SVGDiagram diagram)
+    {
+        SVGRoot root = diagram.getRoot();
+        return root == null ? 0 : estimateSize(root);
+    }
+
+    private long estimateSize(SVGElement ele)
+    {
+        //Element, its attribute maps and its track manager
+        long size = 512;
+
+        size += estimateSize(ele, ele.getInlineAttributes(), true);
+        size += estimateSize(ele, ele.getPresentationAttributes(), false);
+
+        ArrayList<SVGElement> children = new ArrayList<SVGElement>();
+        ele.getChildren(children);
+        for (SVGElement child : children)
+        {
+            size += estimateSize(child);
+        }
+        return size;
+    }
+
+    private long estimateSize(SVGElement ele, Set<String> names, boolean inline)
+    {
+        long size = 0;
+        for (String name : names)
+        {
+            StyleAttribute attr = inline
+                ? ele.getStyleAbsolute(name) : ele.getPresAbsolute(name);
+            String value = attr == null ? null : attr.getStringValue();
+
+            //Map entry and attribute, then the string value plus any geometry
+            // or numbers parsed from it
+            size += 96 + (value == null ? 0 : 6L * value.length());
+        }
+        return size;
+    }
+
+    /**
+     * Book keeping on how a loaded diagram has been used.  Values are updated
+     * without locking and so are only approximate when several threads use the
+     * same universe.
+     */
+    public static class Usage implements Serializable
+    {
+        public static final long serialVersionUID = 0;
+
+        final URI uri;
+        final long size;
+        volatile long lastAccess;
+        final LongAdder accessCount = new LongAdder();
+
+        Usage(URI uri, long size, long lastAccess)
+        {
+            this.uri = uri;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+
+        void touch(long time)
+        {
+            lastAccess = time;
+            accessCount.increment();
+        }
+
+        Usage resize(long newSize)
+        {
+            Usage usage = new Usage(uri, newSize, lastAccess);
+            usage.accessCount.add(accessCount.sum());
+            return usage;
+        }
+
+        /**
+         * @return URI of the diagram
+         */
+        public URI getURI()
+        {
+            return uri;
+        }
+
+        /**
+         * @return Estimated memory used by the diagram
+         */
+        public long getSize()
+        {
+            return size;
+        }
+
+        /**
+         * @return Logical time of last access.  Increases with every load of,
+         * or successful lookup of, any diagram of the universe.
+         */
+        public long getLastAccess()
+        {
+            return lastAccess;
+        }
+
+        /**
+         * @return Number of times the diagram has been looked up since it was
+         * loaded
+         */
+        public long getAccessCount()
+        {
+            return accessCount.sum();
+        }
+    }
+
+    static class LeastRecentlyUsed extends DiagramEvictionPolicy
+    {
+        public static final long serialVersionUID = 0;
+
+        LeastRecentlyUsed(int maxDiagrams, long maxBytes)
+        {
+            super(maxDiagrams, maxBytes);
+        }
+
+        @Override
+        public int compare(Usage u1, Usage u2)
+        {
+            return Long.compare(u1.lastAccess, u2.lastAccess);
+        }
+    }
+
+    static class LeastFrequentlyUsed extends DiagramEvictionPolicy
+    {
+        public static final long serialVersionUID = 0;
+
+        LeastFrequentlyUsed(int maxDiagrams, long maxBytes)
+        {
+            super(maxDiagrams, maxBytes);
+        }
+
+        @Override
+        public int compare(Usage u1, Usage u2)
+        {
+            int cmp = Long.compare(u1.getAccessCount(), u2.getAccessCount());
+            return cmp != 0 ? cmp : Long.compare(u1.lastAccess, u2.lastAccess);
+        }
+    }
+}
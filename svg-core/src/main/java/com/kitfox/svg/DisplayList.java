@@ -0,0 +1,522 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+package com.kitfox.svg;
+
+import com.kitfox.svg.animation.TrackBase;
+import com.kitfox.svg.xml.StyleAttribute;
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.swing.JComponent;
+
+/**
+ * A flattened list of the drawing operations needed to render a diagram.
+ * Styles, paints, strokes, clip paths and references are resolved once when
+ * the list is compiled, so replaying it spends its time in Java2D rather than
+ * walking the document.
+ *
+ * <p>Elements that are rendered through offscreen buffers, such as those with
+ * masks or filters, and images, are kept as references to the element and
+ * drawn from the document when the list is replayed.</p>
+ *
+ * <p>A list may be replayed by several threads at once.  Elements drawn from
+ * the document are drawn one at a time.</p>
+ *
+ * @see SVGDiagram#compile()
+ * @author kitfox
+ */
+public class DisplayList
+{
+    private final SVGDiagram diagram;
+    private final Op[] ops;
+
+    //State of the diagram when compiled
+    private final int modificationCount;
+    private final Rectangle deviceViewport;
+    private final double curTime;
+    private final TrackBase[] tracks;
+    private final String[] trackValues;
+
+    private DisplayList(SVGDiagram diagram, Op[] ops, TrackBase[] tracks, String[] trackValues)
+    {
+        this.diagram = diagram;
+        this.ops = ops;
+        this.modificationCount = diagram.modificationCount.get();
+        this.deviceViewport = new Rectangle(diagram.getDeviceViewport());
+        this.curTime = diagram.getUniverse().getCurTime();
+        this.tracks = tracks;
+        this.trackValues = trackValues;
+    }
+
+    static DisplayList compile(SVGDiagram diagram) throws SVGException
+    {
+        Builder builder = new Builder();
+        SVGRoot root = diagram.getRoot();
+        if (root != null)
+        {
+            root.compile(builder);
+        }
+
+        ArrayList<TrackBase> tracks = new ArrayList<>();
+        ArrayList<String> values = new ArrayList<>();
+        if (root != null)
+        {
+            double curTime = diagram.getUniverse().getCurTime();
+            StyleAttribute attrib = new StyleAttribute();
+            collectTracks(root, curTime, attrib, tracks, values);
+        }
+
+        return new DisplayList(diagram, builder.ops.toArray(new Op[builder.ops.size()]),
+            tracks.toArray(new TrackBase[tracks.size()]), values.toArray(new String[values.size()]));
+    }
+
+    private static void collectTracks(SVGElement ele, double curTime, StyleAttribute attrib,
+        ArrayList<TrackBase> tracks, ArrayList<String> values) throws SVGException
+    {
+        for (Iterator<TrackBase> it = ele.trackManager.iterator(); it.hasNext();)
+        {
+            TrackBase track = it.next();
+            tracks.add(track);
+            values.add(getTrackValue(track, curTime, attrib));
+        }
+
+        for (int i = 0; i < ele.getNumChildren(); ++i)
+        {
+            collectTracks(ele.getChild(i), curTime, attrib, tracks, values);
+        }
+    }
+
+    private static String getTrackValue(TrackBase track, double curTime, StyleAttribute attrib)
+        throws SVGException
+    {
+        attrib.setName(track.getAttribName());
+        attrib.setStringValue("");
+        return track.getValue(attrib, curTime) ? attrib.getStringValue() : null;
+    }
+
+    /**
+     * Checks whether the diagram still renders the way it did when this list
+     * was compiled.  The list becomes invalid when an element of the diagram
+     * is changed, when the device viewport changes, or when the current time
+     * of the universe changes the value of an animation track.
+     *
+     * @return true if replaying this list draws the diagram as it is now
+     * @throws com.kitfox.svg.SVGException
+     */
+    public boolean isValid() throws SVGException
+    {
+        if (diagram.modificationCount.get() != modificationCount
+            || !deviceViewport.equals(diagram.getDeviceViewport()))
+        {
+            return false;
+        }
+
+        double time = diagram.getUniverse().getCurTime();
+        if (time == curTime)
+        {
+            return true;
+        }
+
+        StyleAttribute attrib = new StyleAttribute();
+        for (int i = 0; i < tracks.length; ++i)
+        {
+            String value = getTrackValue(tracks[i], time, attrib);
+            if (value == null ? trackValues[i] != null : !value.equals(trackValues[i]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of operations in this list
+     */
+    public int getNumOperations()
+    {
+        return ops.length;
+    }
+
+    /**
+     * Draws the diagram by replaying this list
+     * @param g
+     * @throws com.kitfox.svg.SVGException
+     */
+    public void render(Graphics2D g) throws SVGException
+    {
+        render(null, g);
+    }
+
+    public void render(JComponent c, Graphics2D g) throws SVGException
+    {
+        AffineTransform baseXform = g.getTransform();
+        Shape baseClip = g.getClip();
+        Composite baseComposite = g.getComposite();
+        Paint basePaint = g.getPaint();
+
+        //Operations entirely outside the clip are skipped
+        Rectangle2D clipBounds = baseClip == null ? null : baseClip.getBounds2D();
+
+        AffineTransform xform = new AffineTransform();
+        Shape curClip = null;
+
+        try
+        {
+            for (Op op : ops)
+            {
+                if (clipBounds != null && op.bounds != null && !op.bounds.intersects(clipBounds))
+                {
+                    continue;
+                }
+
+                if (op.clip != curClip)
+                {
+                    g.setTransform(baseXform);
+                    g.setClip(baseClip);
+                    if (op.clip != null)
+                    {
+                        g.clip(op.clip);
+                    }
+                    curClip = op.clip;
+                }
+
+                xform.setTransform(baseXform);
+                xform.concatenate(op.transform);
+                g.setTransform(xform);
+
+                op.paint(g, baseComposite, c);
+            }
+        }
+        finally
+        {
+            g.setTransform(baseXform);
+            g.setClip(baseClip);
+            g.setComposite(baseComposite);
+            g.setPaint(basePaint);
+        }
+    }
+
+    /**
+     * A single drawing operation.  The transform maps from the coordinates of
+     * the operation to those of the diagram, and the clip and bounds are in
+     * diagram coordinates.
+     */
+    abstract static class Op
+    {
+        final AffineTransform transform;
+        final Shape clip;
+        //Null if not known
+        final Rectangle2D bounds;
+
+        Op(AffineTransform transform, Shape clip, Rectangle2D bounds)
+        {
+            this.transform = transform;
+            this.clip = clip;
+            this.bounds = bounds;
+        }
+
+        /**
+         * @param target component being drawn to, or null
+         */
+        abstract void paint(Graphics2D g, Composite baseComposite, JComponent target) throws SVGException;
+    }
+
+    /**
+     * Fills a shape with a paint.  Also used for strokes, which are
+     * converted to outlines when compiled.
+     */
+    static class FillOp extends Op
+    {
+        final Shape shape;
+        final Paint paint;
+        final float opacity;
+
+        FillOp(AffineTransform transform, Shape clip, Shape shape, Paint paint, float opacity)
+        {
+            super(transform, clip, transform.createTransformedShape(shape.getBounds2D()).getBounds2D());
+            this.shape = shape;
+            this.paint = paint;
+            this.opacity = opacity;
+        }
+
+        @Override
+        void paint(Graphics2D g, Composite baseComposite, JComponent target)
+        {
+            g.setComposite(opacity < 1f
+                ? AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity)
+                : baseComposite);
+            g.setPaint(paint);
+            g.fill(shape);
+        }
+    }
+
+    /**
+     * Strokes a shape with vector-effect set to non-scaling-stroke.  The
+     * outline depends on the transform of the target, so is made when the
+     * operation is replayed.
+     */
+    static class DeviceStrokeOp extends Op
+    {
+        final ShapeElement element;
+        final Shape shape;
+        final BasicStroke stroke;
+        final Paint paint;
+        final float opacity;
+
+        DeviceStrokeOp(AffineTransform transform, Shape clip, ShapeElement element, Shape shape, BasicStroke stroke, Paint paint, float opacity)
+        {
+            super(transform, clip, null);
+            this.element = element;
+            this.shape = shape;
+            this.stroke = stroke;
+            this.paint = paint;
+            this.opacity = opacity;
+        }
+
+        @Override
+        void paint(Graphics2D g, Composite baseComposite, JComponent target)
+        {
+            AffineTransform xform = g.getTransform();
+            Shape strokeShape = element.diagram.getStrokeCache().getStrokedShape(element, shape, stroke, xform);
+
+            //Outline is in device space, less the translation
+            g.setTransform(AffineTransform.getTranslateInstance(xform.getTranslateX(), xform.getTranslateY()));
+            g.setComposite(opacity < 1f
+                ? AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity)
+                : baseComposite);
+            g.setPaint(paint);
+            g.fill(strokeShape);
+        }
+    }
+
+    /**
+     * Renders an element from the document.  Since rendering changes state
+     * held by elements, only one element of a universe is rendered at a time,
+     * under the universe's render lock.
+     */
+    static class ElementOp extends Op
+    {
+        final RenderableElement element;
+        //Pairs of elements and the parent contexts they were compiled in
+        final SVGElement[] contexts;
+
+        ElementOp(AffineTransform transform, Shape clip, Rectangle2D bounds, RenderableElement element, SVGElement[] contexts)
+        {
+            super(transform, clip, bounds);
+            this.element = element;
+            this.contexts = contexts;
+        }
+
+        @Override
+        void paint(Graphics2D g, Composite baseComposite, JComponent target) throws SVGException
+        {
+            g.setComposite(baseComposite);
+            SVGDiagram diagram = element.diagram;
+            ReentrantLock lock = diagram.getUniverse().renderLock;
+            lock.lock();
+            //Only read while the element is drawn, so the lock keeps other
+            // replays from changing it
+            JComponent oldTarget = diagram.renderTarget;
+            diagram.renderTarget = target;
+            try
+            {
+                for (int i = 0; i < contexts.length; i += 2)
+                {
+                    contexts[i].pushParentContext(contexts[i + 1]);
+                }
+                try
+                {
+                    element.render(g);
+                }
+                finally
+                {
+                    for (int i = contexts.length - 2; i >= 0; i -= 2)
+                    {
+                        contexts[i].popParentContext();
+                    }
+                }
+            }
+            finally
+            {
+                diagram.renderTarget = oldTarget;
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Collects operations while elements are compiled.  Mirrors the state
+     * elements change on a Graphics2D while rendering.
+     */
+    static class Builder
+    {
+        final ArrayList<Op> ops = new ArrayList<>();
+
+        //Both are replaced rather than modified, so may be shared by ops
+        private AffineTransform transform = new AffineTransform();
+        private Shape clip;
+
+        private final ArrayDeque<Object[]> savedStates = new ArrayDeque<>();
+        private final ArrayList<SVGElement> contexts = new ArrayList<>();
+
+        AffineTransform getTransform()
+        {
+            return new AffineTransform(transform);
+        }
+
+        void setTransform(AffineTransform xform)
+        {
+            transform = new AffineTransform(xform);
+        }
+
+        void transform(AffineTransform xform)
+        {
+            AffineTransform newXform = new AffineTransform(transform);
+            newXform.concatenate(xform);
+            transform = newXform;
+        }
+
+        void translate(double x, double y)
+        {
+            transform(AffineTransform.getTranslateInstance(x, y));
+        }
+
+        void scale(double x, double y)
+        {
+            transform(AffineTransform.getScaleInstance(x, y));
+        }
+
+        void rotate(double theta)
+        {
+            transform(AffineTransform.getRotateInstance(theta));
+        }
+
+        /**
+         * Intersects the clip with a shape in the current coordinates
+         */
+        void clip(Shape shape)
+        {
+            Shape newClip = transform.createTransformedShape(shape);
+            if (clip != null)
+            {
+                Area area = new Area(clip);
+                area.intersect(new Area(newClip));
+                newClip = area;
+            }
+            clip = newClip;
+        }
+
+        /**
+         * Saves the transform and clip, to be restored by restore()
+         */
+        void save()
+        {
+            savedStates.push(new Object[]{transform, clip});
+        }
+
+        void restore()
+        {
+            Object[] state = savedStates.pop();
+            transform = (AffineTransform)state[0];
+            clip = (Shape)state[1];
+        }
+
+        void pushParentContext(SVGElement element, SVGElement context)
+        {
+            contexts.add(element);
+            contexts.add(context);
+        }
+
+        void popParentContext()
+        {
+            contexts.remove(contexts.size() - 1);
+            contexts.remove(contexts.size() - 1);
+        }
+
+        void addFill(Shape shape, Paint paint, float opacity)
+        {
+            ops.add(new FillOp(transform, clip, copyShape(shape), paint, opacity));
+        }
+
+        void addDeviceStroke(ShapeElement element, Shape shape, BasicStroke stroke, Paint paint, float opacity)
+        {
+            ops.add(new DeviceStrokeOp(transform, clip, element, copyShape(shape), stroke, paint, opacity));
+        }
+
+        /**
+         * @param element - Element to be drawn from the document
+         * @param localBounds - Area the element draws to in the current
+         * coordinates, or null if not known
+         */
+        void addElement(RenderableElement element, Rectangle2D localBounds)
+        {
+            Rectangle2D bounds = localBounds == null ? null
+                : transform.createTransformedShape(localBounds).getBounds2D();
+            ops.add(new ElementOp(transform, clip, bounds, element,
+                contexts.toArray(new SVGElement[contexts.size()])));
+        }
+
+        /**
+         * Elements keep simple shapes in fields they update when rebuilt, so
+         * these are copied to keep the list unchanged.
+         */
+        private static Shape copyShape(Shape shape)
+        {
+            if (shape instanceof RectangularShape)
+            {
+                return (Shape)((RectangularShape)shape).clone();
+            }
+            if (shape instanceof Line2D)
+            {
+                return (Shape)((Line2D)shape).clone();
+            }
+            return shape;
+        }
+    }
+}
@@ -106,6 +106,14 @@ public class Ellipse extends ShapeElement
         finishLayer(g);
     }
 
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        beginLayer(builder);
+        compileShape(builder, ellipse);
+        finishLayer(builder);
+    }
+
     @Override
     public Shape getShape()
     {
@@ -3,6 +3,7 @@ package com.kitfox.svg;
 import com.kitfox.svg.xml.StyleAttribute;
 
 import java.awt.Rectangle;
+import java.awt.image.BufferedImageOp;
 import java.awt.image.ConvolveOp;
 import java.awt.image.Kernel;
 import java.util.Arrays;
@@ -12,11 +13,17 @@ public class FeGaussianBlur extends FilterEffects
 {
     public static final String TAG_NAME = "fegaussianblur";
 
+    /**
+     * Deviation in pixels at and above which the blur is approximated with
+     * box blurs rather than convolved with a Gaussian kernel
+     */
+    public static final float BOX_BLUR_SIGMA = 2f;
+
     private float[] stdDeviation;
     private float xCurrent;
     private float yCurrent;
-    private ConvolveOp xBlur;
-    private ConvolveOp yBlur;
+    private BufferedImageOp xBlur;
+    private BufferedImageOp yBlur;
 
     @Override
     public String getTagName()
@@ -57,11 +64,43 @@ public class FeGaussianBlur extends FilterEffects
 
     public FilterOp getGaussianBlurFilter(Rectangle inputBounds, float sigma, boolean horizontal)
     {
+        if (sigma >= BOX_BLUR_SIGMA)
+        {
+            //The kernel grows with sigma, so large blurs use box blurs
+            // whose cost does not
+            BufferedImageOp current = horizontal ? xBlur : yBlur;
+            GaussianBlurOp op;
+            if (current instanceof GaussianBlurOp && ((GaussianBlurOp) current).getSigma() == sigma)
+            {
+                op = (GaussianBlurOp) current;
+            } else
+            {
+                op = new GaussianBlurOp(sigma, horizontal);
+                if (horizontal)
+                {
+                    xBlur = op;
+                } else
+                {
+                    yBlur = op;
+                }
+            }
+
+            Rectangle dstBounds = new Rectangle(inputBounds);
+            if (horizontal)
+            {
+                dstBounds.grow(op.getExtent(), 0);
+            } else
+            {
+                dstBounds.grow(0, op.getExtent());
+            }
+            return new FilterOp(op, dstBounds);
+        }
+
         int multiplier = 2;
         float radius = 2f * sigma + 1;
         int size = (int) Math.ceil(radius * multiplier) + 1;
-        if (horizontal && (xBlur == null || xCurrent != sigma)
-            || !horizontal && (yBlur == null || yCurrent != sigma))
+        if (horizontal && (!(xBlur instanceof ConvolveOp) || xCurrent != sigma)
+            || !horizontal && (!(yBlur instanceof ConvolveOp) || yCurrent != sigma))
         {
             if (horizontal)
             {
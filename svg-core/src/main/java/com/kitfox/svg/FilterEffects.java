@@ -37,7 +37,9 @@ package com.kitfox.svg;
 
 import com.kitfox.svg.xml.StyleAttribute;
 
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.net.URI;
 import java.net.URL;
@@ -58,8 +60,16 @@ public abstract class FilterEffects extends SVGElement
     public static final int FP_FILL_PAINT = 4;
     public static final int FP_STROKE_PAINT = 5;
     public static final int FP_CUSTOM = 5;
-    private int filterPrimitiveTypeIn;
-    private String filterPrimitiveRefIn;
+    public static final String IN_SOURCE_GRAPHIC = "SourceGraphic";
+    public static final String IN_SOURCE_ALPHA = "SourceAlpha";
+    public static final String IN_BACKGROUND_IMAGE = "BackgroundImage";
+    public static final String IN_BACKGROUND_ALPHA = "BackgroundAlpha";
+    public static final String IN_FILL_PAINT = "FillPaint";
+    public static final String IN_STROKE_PAINT = "StrokePaint";
+    //Inputs and result name, or null if not specified
+    String in;
+    String in2;
+    String result;
     float x = 0f;
     float y = 0f;
     float width = 1f;
@@ -99,7 +109,13 @@ public abstract class FilterEffects extends SVGElement
     {
         super.build();
 
-        /*StyleAttribute sty = new StyleAttribute();
+        StyleAttribute sty = new StyleAttribute();
+
+        in = getPres(sty.setName("in")) ? sty.getStringValue() : null;
+        in2 = getPres(sty.setName("in2")) ? sty.getStringValue() : null;
+        result = getPres(sty.setName("result")) ? sty.getStringValue() : null;
+
+        /*
           String strn;
         
          if (getPres(sty.setName("filterUnits")))
@@ -142,6 +158,174 @@ public abstract class FilterEffects extends SVGElement
         return null;
     }
 
+    /**
+     * @return the name of the first input, or null to read the result of the
+     * previous primitive
+     */
+    public String getIn()
+    {
+        return in;
+    }
+
+    /**
+     * @return the name of the second input, or null if not specified
+     */
+    public String getIn2()
+    {
+        return in2;
+    }
+
+    /**
+     * @return the name other primitives can refer to the result by, or null
+     */
+    public String getResult()
+    {
+        return result;
+    }
+
+    /**
+     * @return the number of inputs this primitive reads.  The first is named
+     * by in, and the second by in2.
+     */
+    public int getNumInputs()
+    {
+        return 1;
+    }
+
+    /**
+     * Returns the region of the result that may be non-transparent.  The
+     * default grows the input by the bounds required by getOperations().
+     *
+     * @param inputBounds Region of each input that may be non-transparent, in
+     * device coordinates
+     * @param xScale Horizontal scale from user to device space
+     * @param yScale Vertical scale from user to device space
+     * @return the region, which is empty if the result is fully transparent
+     */
+    public Rectangle getResultBounds(Rectangle[] inputBounds, float xScale, float yScale)
+    {
+        Rectangle bounds = new Rectangle();
+        for (Rectangle input : inputBounds)
+        {
+            Rectangle grown = grow(input, xScale, yScale);
+            if (bounds.isEmpty())
+            {
+                bounds = grown;
+            } else if (!grown.isEmpty())
+            {
+                bounds.add(grown);
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns the region of an input needed to compute a region of the
+     * result.  The default grows the region by the bounds required by
+     * getOperations().
+     *
+     * @param region Region of the result, in device coordinates
+     * @param input Index of the input
+     * @param xScale Horizontal scale from user to device space
+     * @param yScale Vertical scale from user to device space
+     * @return the region of the input
+     */
+    public Rectangle getInputBounds(Rectangle region, int input, float xScale, float yScale)
+    {
+        return grow(region, xScale, yScale);
+    }
+
+    private Rectangle grow(Rectangle bounds, float xScale, float yScale)
+    {
+        Rectangle grown = new Rectangle(bounds);
+        if (bounds.isEmpty())
+        {
+            return grown;
+        }
+
+        List<FilterOp> ops = getOperations(bounds, xScale, yScale);
+        if (ops != null)
+        {
+            for (FilterOp op : ops)
+            {
+                if (op != null)
+                {
+                    grown.add(op.requiredImageBounds);
+                }
+            }
+        }
+        return grown;
+    }
+
+    /**
+     * Computes a region of the result of this primitive.  Pixels outside
+     * each input buffer are transparent, and the buffers cover at least the
+     * part of getInputBounds() that may be non-transparent.  Inputs must not
+     * be modified, but may be returned as the result.  Buffers that are
+     * created should be borrowed from the ImagePool.
+     *
+     * The default applies the operations of getOperations() in turn.
+     *
+     * @param inputs Buffer for each input
+     * @param region Region of the result needed, in device coordinates
+     * @param xScale Horizontal scale from user to device space
+     * @param yScale Vertical scale from user to device space
+     * @return the result, covering at least the part of region that may be
+     * non-transparent
+     * @throws com.kitfox.svg.SVGException
+     */
+    public FilterBuffer filter(FilterBuffer[] inputs, Rectangle region, float xScale, float yScale) throws SVGException
+    {
+        FilterBuffer src = inputs[0];
+        if (src.isEmpty())
+        {
+            return src;
+        }
+
+        //Only the part of the input near the region affects it
+        Rectangle bounds = grow(src.bounds, xScale, yScale)
+            .intersection(getInputBounds(region, 0, xScale, yScale));
+        List<FilterOp> ops = bounds.isEmpty() ? null : getOperations(bounds, xScale, yScale);
+        if (ops == null || ops.stream().allMatch(op -> op == null))
+        {
+            return src;
+        }
+
+        BufferedImage img = src.image;
+        boolean owned = false;
+        if (!bounds.equals(src.bounds))
+        {
+            //Pad the input so that the result can spread beyond it
+            img = ImagePool.borrow(bounds.width, bounds.height, true);
+            Graphics2D g = img.createGraphics();
+            g.drawImage(src.image, src.bounds.x - bounds.x, src.bounds.y - bounds.y, null);
+            g.dispose();
+            owned = true;
+        }
+
+        for (FilterOp filterOp : ops)
+        {
+            if (filterOp == null)
+            {
+                continue;
+            }
+
+            BufferedImage filtered = null;
+            if (filterOp.op.getBounds2D(img).equals(img.getRaster().getBounds()))
+            {
+                filtered = ImagePool.borrow(img.getWidth(), img.getHeight(), img.isAlphaPremultiplied());
+            }
+            filtered = filterOp.op.filter(img, filtered);
+            if (owned)
+            {
+                ImagePool.release(img);
+            }
+            img = filtered;
+            owned = true;
+        }
+        return new FilterBuffer(img, bounds);
+    }
+
     public float getX()
     {
         return x;
@@ -261,6 +445,33 @@ public abstract class FilterEffects extends SVGElement
         return stateChange;
     }
 
+    /**
+     * A region of the result of a primitive, or of one of the standard
+     * inputs, in device coordinates
+     */
+    public static class FilterBuffer
+    {
+        //Image holding the region, or null if the buffer is empty
+        public final BufferedImage image;
+        public final Rectangle bounds;
+        //Primitives still to read the buffer
+        int users;
+
+        public FilterBuffer(BufferedImage image, Rectangle bounds)
+        {
+            this.image = image;
+            this.bounds = bounds;
+        }
+
+        /**
+         * @return true if the buffer is fully transparent, and has no image
+         */
+        public boolean isEmpty()
+        {
+            return image == null;
+        }
+    }
+
     public static class FilterOp {
         public final BufferedImageOp op;
         public final Rectangle requiredImageBounds;
@@ -0,0 +1,395 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+package com.kitfox.svg;
+
+import com.kitfox.svg.FilterEffects.FilterBuffer;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates the primitives of a filter as a graph connected by their in, in2
+ * and result attributes.  Only the primitives the last one depends on are
+ * run, and each only over the part of its result that is needed and may be
+ * non-transparent.  Intermediate buffers are borrowed from the ImagePool
+ * and returned once their last reader has run.  Primitives that do not
+ * depend on each other are run in parallel.
+ *
+ * @author kitfox
+ */
+class FilterGraph
+{
+    //Inputs that are not the result of a primitive
+    static final int SOURCE_GRAPHIC = -1;
+    static final int SOURCE_ALPHA = -2;
+    //Standard inputs that are not supported, and are treated as transparent
+    static final int UNSUPPORTED = -3;
+
+    /**
+     * Paints the element the filter applies to
+     */
+    interface Source
+    {
+        /**
+         * @param bounds Region to paint, in device coordinates
+         * @return premultiplied image of the region
+         */
+        BufferedImage paint(Rectangle bounds) throws SVGException;
+    }
+
+    private final List<FilterEffects> primitives;
+    //Index of the primitive or source each input of a primitive reads
+    private final int[][] inputs;
+    //Length of the longest chain of primitives ending in each primitive
+    private final int[] levels;
+
+    FilterGraph(Filter filter)
+    {
+        primitives = new ArrayList<>(filter.filterEffects);
+        int count = primitives.size();
+        inputs = new int[count][];
+        levels = new int[count];
+
+        HashMap<String, Integer> results = new HashMap<>();
+        for (int i = 0; i < count; i++)
+        {
+            FilterEffects primitive = primitives.get(i);
+            int numInputs = primitive.getNumInputs();
+            inputs[i] = new int[numInputs];
+            for (int j = 0; j < numInputs; j++)
+            {
+                int input = resolve(j == 0 ? primitive.getIn() : primitive.getIn2(), results, i);
+                inputs[i][j] = input;
+                if (input >= 0)
+                {
+                    levels[i] = Math.max(levels[i], levels[input] + 1);
+                }
+            }
+
+            if (primitive.getResult() != null)
+            {
+                results.put(primitive.getResult(), i);
+            }
+        }
+    }
+
+    /**
+     * @return the input a name refers to from the primitive at index
+     */
+    private static int resolve(String name, HashMap<String, Integer> results, int index)
+    {
+        if (name != null)
+        {
+            switch (name)
+            {
+                case FilterEffects.IN_SOURCE_GRAPHIC:
+                    return SOURCE_GRAPHIC;
+                case FilterEffects.IN_SOURCE_ALPHA:
+                    return SOURCE_ALPHA;
+                case FilterEffects.IN_BACKGROUND_IMAGE:
+                case FilterEffects.IN_BACKGROUND_ALPHA:
+                case FilterEffects.IN_FILL_PAINT:
+                case FilterEffects.IN_STROKE_PAINT:
+                    return UNSUPPORTED;
+            }
+
+            Integer result = results.get(name);
+            if (result != null)
+            {
+                return result;
+            }
+            //References to missing results are treated as if no input had
+            // been specified
+        }
+        return index == 0 ? SOURCE_GRAPHIC : index - 1;
+    }
+
+    /**
+     * Runs the filter.
+     *
+     * @param sourceBounds Region of the element, in device coordinates
+     * @param limit Region outside of which the result is not needed, or null
+     * for the whole result
+     * @param xScale Horizontal scale from user to device space
+     * @param yScale Vertical scale from user to device space
+     * @param source Paints the element
+     * @return the result, which is owned by the caller
+     */
+    FilterBuffer apply(Rectangle sourceBounds, Rectangle limit, float xScale, float yScale,
+                       Source source) throws SVGException
+    {
+        int count = primitives.size();
+        if (count == 0)
+        {
+            return new FilterBuffer(null, new Rectangle());
+        }
+
+        //Where each result may be non-transparent
+        Rectangle[] content = new Rectangle[count];
+        for (int i = 0; i < count; i++)
+        {
+            Rectangle[] inputBounds = new Rectangle[inputs[i].length];
+            for (int j = 0; j < inputBounds.length; j++)
+            {
+                int input = inputs[i][j];
+                inputBounds[j] = input >= 0 ? content[input]
+                    : input == UNSUPPORTED ? new Rectangle() : sourceBounds;
+            }
+            content[i] = primitives.get(i).getResultBounds(inputBounds, xScale, yScale);
+        }
+
+        //The part of each result that is needed
+        Rectangle[] regions = new Rectangle[count];
+        regions[count - 1] = limit == null ? content[count - 1] : limit;
+        Rectangle sourceRegion = null;
+        int[] users = new int[count];
+        int graphicUsers = 0;
+        int alphaUsers = 0;
+        for (int i = count - 1; i >= 0; i--)
+        {
+            if (regions[i] == null)
+            {
+                continue;
+            }
+            regions[i] = regions[i].intersection(content[i]);
+            if (regions[i].isEmpty())
+            {
+                continue;
+            }
+
+            for (int j = 0; j < inputs[i].length; j++)
+            {
+                int input = inputs[i][j];
+                if (input == UNSUPPORTED)
+                {
+                    continue;
+                }
+
+                Rectangle needed = primitives.get(i).getInputBounds(regions[i], j, xScale, yScale);
+                if (input >= 0)
+                {
+                    regions[input] = union(regions[input], needed);
+                    users[input]++;
+                } else
+                {
+                    sourceRegion = union(sourceRegion, needed);
+                    if (input == SOURCE_GRAPHIC)
+                    {
+                        graphicUsers++;
+                    } else
+                    {
+                        alphaUsers++;
+                    }
+                }
+            }
+        }
+
+        FilterBuffer empty = new FilterBuffer(null, new Rectangle());
+        FilterBuffer graphic = empty;
+        FilterBuffer alpha = empty;
+        if (sourceRegion != null)
+        {
+            sourceRegion = sourceRegion.intersection(sourceBounds);
+            if (!sourceRegion.isEmpty())
+            {
+                graphic = new FilterBuffer(source.paint(sourceRegion), sourceRegion);
+                if (alphaUsers > 0)
+                {
+                    alpha = new FilterBuffer(toAlpha(graphic.image), sourceRegion);
+                    alpha.users = alphaUsers;
+                }
+                graphic.users = graphicUsers + 1;
+                release(graphic);
+            }
+        }
+
+        FilterBuffer[] results = new FilterBuffer[count];
+        int maxLevel = 0;
+        for (int level : levels)
+        {
+            maxLevel = Math.max(maxLevel, level);
+        }
+
+        for (int level = 0; level <= maxLevel; level++)
+        {
+            List<Integer> ready = new ArrayList<>();
+            for (int i = 0; i < count; i++)
+            {
+                if (levels[i] != level || regions[i] == null)
+                {
+                    continue;
+                }
+                if (regions[i].isEmpty())
+                {
+                    results[i] = empty;
+                } else
+                {
+                    ready.add(i);
+                }
+            }
+
+            List<FilterBuffer[]> args = new ArrayList<>();
+            for (int i : ready)
+            {
+                FilterBuffer[] args1 = new FilterBuffer[inputs[i].length];
+                for (int j = 0; j < args1.length; j++)
+                {
+                    int input = inputs[i][j];
+                    args1[j] = input >= 0 ? results[input]
+                        : input == SOURCE_GRAPHIC ? graphic
+                        : input == SOURCE_ALPHA ? alpha : empty;
+                }
+                args.add(args1);
+            }
+
+            FilterBuffer[] computed = run(ready, args, regions, xScale, yScale);
+
+            for (int k = 0; k < ready.size(); k++)
+            {
+                int i = ready.get(k);
+                results[i] = computed[k];
+                //The last result is kept for the caller
+                computed[k].users += i == count - 1 ? 1 : users[i];
+            }
+            for (FilterBuffer[] args1 : args)
+            {
+                for (FilterBuffer buffer : args1)
+                {
+                    release(buffer);
+                }
+            }
+        }
+
+        return results[count - 1] == null ? empty : results[count - 1];
+    }
+
+    /**
+     * Runs primitives that do not depend on each other
+     */
+    private FilterBuffer[] run(List<Integer> ready, List<FilterBuffer[]> args, Rectangle[] regions,
+                               float xScale, float yScale) throws SVGException
+    {
+        FilterBuffer[] computed = new FilterBuffer[ready.size()];
+        if (ready.size() == 1)
+        {
+            int i = ready.get(0);
+            computed[0] = primitives.get(i).filter(args.get(0), regions[i], xScale, yScale);
+            return computed;
+        }
+
+        List<Callable<FilterBuffer>> tasks = new ArrayList<>();
+        for (int k = 0; k < ready.size(); k++)
+        {
+            int i = ready.get(k);
+            FilterBuffer[] args1 = args.get(k);
+            tasks.add(() -> primitives.get(i).filter(args1, regions[i], xScale, yScale));
+        }
+
+        List<Future<FilterBuffer>> futures = ForkJoinPool.commonPool().invokeAll(tasks);
+        SVGException failure = null;
+        for (int k = 0; k < futures.size(); k++)
+        {
+            try
+            {
+                computed[k] = futures.get(k).get();
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                failure = new SVGException(e);
+            } catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                failure = cause instanceof SVGException ? (SVGException) cause : new SVGException(cause);
+            }
+        }
+
+        if (failure != null)
+        {
+            throw failure;
+        }
+        return computed;
+    }
+
+    /**
+     * Returns a buffer's image to the pool once it has no users left
+     */
+    private static void release(FilterBuffer buffer)
+    {
+        if (!buffer.isEmpty() && --buffer.users == 0)
+        {
+            ImagePool.release(buffer.image);
+        }
+    }
+
+    private static Rectangle union(Rectangle a, Rectangle b)
+    {
+        if (a == null || a.isEmpty())
+        {
+            return b;
+        }
+        return b.isEmpty() ? a : a.union(b);
+    }
+
+    /**
+     * @return a copy of a premultiplied image with the color removed
+     */
+    private static BufferedImage toAlpha(BufferedImage img)
+    {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        BufferedImage alpha = ImagePool.borrow(width, height, true);
+        WritableRaster src = img.getRaster();
+        WritableRaster dst = alpha.getRaster();
+        int[] line = new int[width];
+        for (int y = 0; y < height; y++)
+        {
+            src.getDataElements(0, y, width, 1, line);
+            for (int x = 0; x < width; x++)
+            {
+                line[x] &= 0xff000000;
+            }
+            dst.setDataElements(0, y, width, 1, line);
+        }
+        return alpha;
+    }
+}
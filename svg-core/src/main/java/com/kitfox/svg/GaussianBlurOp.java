@@ -0,0 +1,371 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+package com.kitfox.svg;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Blurs an image along one axis with three successive box blurs, as the SVG
+ * specification suggests for feGaussianBlur when the standard deviation is 2
+ * or more.  The box width d = floor(sigma * 3 * sqrt(2 * pi) / 4 + 0.5) gives
+ * a variance within the rounding of d of the Gaussian's, and a response that
+ * stays within about 3% of the true Gaussian.  Each box is a running sum, so
+ * the cost per pixel does not depend on sigma.
+ *
+ * Pixels outside the image are treated as transparent.  The blur is done on
+ * premultiplied ARGB values; other image types are converted first.  Lines
+ * are split across the common ForkJoinPool when the image is large enough.
+ *
+ * @author kitfox
+ */
+public class GaussianBlurOp implements BufferedImageOp
+{
+    //Smallest number of pixels worth handing to another thread
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private final float sigma;
+    private final boolean horizontal;
+    //Extent of each box before and after the output pixel
+    private final int[] before = new int[3];
+    private final int[] after = new int[3];
+    //Normalizes the sum of the three boxes
+    private final double scale;
+
+    /**
+     * @param sigma Standard deviation of the blur in pixels
+     * @param horizontal Blur along rows if true, columns otherwise
+     */
+    public GaussianBlurOp(float sigma, boolean horizontal)
+    {
+        this.sigma = sigma;
+        this.horizontal = horizontal;
+
+        int d = Math.max(1, (int) Math.floor(sigma * 3 * Math.sqrt(2 * Math.PI) / 4 + 0.5));
+        if ((d & 1) == 1)
+        {
+            //Three boxes of size d centered on the output pixel
+            for (int i = 0; i < 3; i++)
+            {
+                before[i] = after[i] = d / 2;
+            }
+            scale = 1.0 / ((double) d * d * d);
+        } else
+        {
+            //Two boxes of size d centered on the pixel boundaries to either
+            // side, and one of size d + 1 centered on the pixel
+            before[0] = d / 2;
+            after[0] = d / 2 - 1;
+            before[1] = d / 2 - 1;
+            after[1] = d / 2;
+            before[2] = after[2] = d / 2;
+            scale = 1.0 / ((double) d * d * (d + 1));
+        }
+    }
+
+    public float getSigma()
+    {
+        return sigma;
+    }
+
+    public boolean isHorizontal()
+    {
+        return horizontal;
+    }
+
+    /**
+     * @return the distance in pixels the blur spreads an opaque pixel
+     */
+    public int getExtent()
+    {
+        return before[0] + before[1] + before[2];
+    }
+
+    @Override
+    public BufferedImage filter(BufferedImage src, BufferedImage dst)
+    {
+        if (dst == null)
+        {
+            dst = createCompatibleDestImage(src, null);
+        } else if (dst.getWidth() != src.getWidth() || dst.getHeight() != src.getHeight())
+        {
+            throw new IllegalArgumentException("Source and destination sizes differ");
+        }
+
+        if (isPacked(src) && isPacked(dst))
+        {
+            blur(src.getRaster(), dst.getRaster());
+            return dst;
+        }
+
+        BufferedImage buf = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+        copy(src, buf);
+        blur(buf.getRaster(), buf.getRaster());
+        copy(buf, dst);
+        return dst;
+    }
+
+    private static boolean isPacked(BufferedImage img)
+    {
+        return img.getType() == BufferedImage.TYPE_INT_ARGB_PRE
+            && img.getRaster().getDataBuffer() instanceof DataBufferInt
+            && img.getSampleModel() instanceof SinglePixelPackedSampleModel;
+    }
+
+    private static void copy(BufferedImage src, BufferedImage dst)
+    {
+        Graphics2D g = dst.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+    }
+
+    private void blur(WritableRaster src, WritableRaster dst)
+    {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        if (width == 0 || height == 0)
+        {
+            return;
+        }
+
+        Lines lines = new Lines(this, src, dst, horizontal ? height : width, horizontal ? width : height);
+        if ((long) width * height < PARALLEL_THRESHOLD)
+        {
+            lines.compute();
+        } else
+        {
+            ForkJoinPool.commonPool().invoke(lines);
+        }
+    }
+
+    /**
+     * Blurs a range of rows or columns, splitting it among threads
+     */
+    private static class Lines extends RecursiveAction
+    {
+        public static final long serialVersionUID = 0;
+
+        final int[] before;
+        final int[] after;
+        final double scale;
+        final int[] srcData;
+        final int[] dstData;
+        final int srcOffset, srcLineStride, srcPixelStride;
+        final int dstOffset, dstLineStride, dstPixelStride;
+        final int length;
+        final int from, to;
+
+        Lines(GaussianBlurOp op, WritableRaster src, WritableRaster dst, int numLines, int length)
+        {
+            boolean horizontal = op.horizontal;
+            before = op.before;
+            after = op.after;
+            scale = op.scale;
+            this.length = length;
+            from = 0;
+            to = numLines;
+
+            srcData = ((DataBufferInt) src.getDataBuffer()).getData();
+            int srcStride = ((SinglePixelPackedSampleModel) src.getSampleModel()).getScanlineStride();
+            srcOffset = offset(src);
+            srcLineStride = horizontal ? srcStride : 1;
+            srcPixelStride = horizontal ? 1 : srcStride;
+
+            dstData = ((DataBufferInt) dst.getDataBuffer()).getData();
+            int dstStride = ((SinglePixelPackedSampleModel) dst.getSampleModel()).getScanlineStride();
+            dstOffset = offset(dst);
+            dstLineStride = horizontal ? dstStride : 1;
+            dstPixelStride = horizontal ? 1 : dstStride;
+        }
+
+        Lines(Lines parent, int from, int to)
+        {
+            before = parent.before;
+            after = parent.after;
+            scale = parent.scale;
+            srcData = parent.srcData;
+            dstData = parent.dstData;
+            srcOffset = parent.srcOffset;
+            srcLineStride = parent.srcLineStride;
+            srcPixelStride = parent.srcPixelStride;
+            dstOffset = parent.dstOffset;
+            dstLineStride = parent.dstLineStride;
+            dstPixelStride = parent.dstPixelStride;
+            length = parent.length;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((long) (to - from) * length >= 2 * PARALLEL_THRESHOLD && to - from > 1)
+            {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Lines(this, from, mid), new Lines(this, mid, to));
+                return;
+            }
+
+            int[] line = new int[length];
+            int[] result = new int[length];
+            long[] a = new long[length];
+            long[] b = new long[length];
+            for (int i = from; i < to; i++)
+            {
+                int src = srcOffset + i * srcLineStride;
+                for (int j = 0; j < length; j++)
+                {
+                    line[j] = srcData[src + j * srcPixelStride];
+                }
+
+                //Alpha first, so that colors can be kept within it
+                for (int shift = 24; shift >= 0; shift -= 8)
+                {
+                    for (int j = 0; j < length; j++)
+                    {
+                        a[j] = (line[j] >>> shift) & 0xff;
+                    }
+                    box(a, b, before[0], after[0]);
+                    box(b, a, before[1], after[1]);
+                    box(a, b, before[2], after[2]);
+
+                    for (int j = 0; j < length; j++)
+                    {
+                        int value = (int) Math.min(255, b[j] * scale + 0.5);
+                        if (shift == 24)
+                        {
+                            result[j] = value << 24;
+                        } else
+                        {
+                            //Channels are rounded separately, so a
+                            // premultiplied color may come out above alpha
+                            result[j] |= Math.min(value, result[j] >>> 24) << shift;
+                        }
+                    }
+                }
+
+                int dst = dstOffset + i * dstLineStride;
+                for (int j = 0; j < length; j++)
+                {
+                    dstData[dst + j * dstPixelStride] = result[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Sums each window of in from before values ahead of to after values past
+     * each position.  Values outside the line count as zero.
+     */
+    private static void box(long[] in, long[] out, int before, int after)
+    {
+        int length = in.length;
+        long sum = 0;
+        for (int j = 0; j <= after && j < length; j++)
+        {
+            sum += in[j];
+        }
+        for (int i = 0; i < length; i++)
+        {
+            out[i] = sum;
+            int next = i + after + 1;
+            if (next < length)
+            {
+                sum += in[next];
+            }
+            int last = i - before;
+            if (last >= 0)
+            {
+                sum -= in[last];
+            }
+        }
+    }
+
+    private static int offset(WritableRaster raster)
+    {
+        SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        return raster.getDataBuffer().getOffset()
+            + sm.getOffset(raster.getMinX() - raster.getSampleModelTranslateX(),
+                           raster.getMinY() - raster.getSampleModelTranslateY());
+    }
+
+    @Override
+    public Rectangle2D getBounds2D(BufferedImage src)
+    {
+        return src.getRaster().getBounds();
+    }
+
+    @Override
+    public BufferedImage createCompatibleDestImage(BufferedImage src, ColorModel destCM)
+    {
+        if (destCM == null)
+        {
+            destCM = src.getColorModel();
+        }
+        return new BufferedImage(destCM,
+                                 destCM.createCompatibleWritableRaster(src.getWidth(), src.getHeight()),
+                                 destCM.isAlphaPremultiplied(), null);
+    }
+
+    @Override
+    public Point2D getPoint2D(Point2D srcPt, Point2D dstPt)
+    {
+        if (dstPt == null)
+        {
+            dstPt = new Point2D.Float();
+        }
+        dstPt.setLocation(srcPt);
+        return dstPt;
+    }
+
+    @Override
+    public RenderingHints getRenderingHints()
+    {
+        return null;
+    }
+}
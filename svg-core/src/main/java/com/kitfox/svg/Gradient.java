@@ -37,11 +37,15 @@ package com.kitfox.svg;
 
 import com.kitfox.svg.xml.StyleAttribute;
 import java.awt.Color;
+import java.awt.Paint;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -70,6 +74,18 @@ abstract public class Gradient extends FillElement
     float[] stopFractions;
     Color[] stopColors;
 
+    /**
+     * Maximum number of paints kept for different bounding boxes
+     */
+    static final int MAX_CACHED_PAINTS = 64;
+
+    //Paints made by createPaint(), keyed by the bounding box they were made
+    // for, or by null if the gradient is in user space.  Valid for the stop
+    // arrays they were made from.
+    private transient LinkedHashMap<Rectangle2D, Paint> paintCache;
+    private transient float[] paintCacheFractions;
+    private transient Color[] paintCacheColors;
+
     /**
      * Creates a new instance of Gradient
      */
@@ -103,6 +119,7 @@ abstract public class Gradient extends FillElement
     protected void build() throws SVGException
     {
         super.build();
+        clearPaintCache();
 
         StyleAttribute sty = new StyleAttribute();
         String strn;
@@ -161,6 +178,86 @@ abstract public class Gradient extends FillElement
         }
     }
 
+    /**
+     * Returns the paint for a shape.  Gradients drawn with the same stops and
+     * attributes share paints: user space gradients create a single paint, and
+     * object bounding box gradients one for each bounding box.
+     */
+    @Override
+    public Paint getPaint(Rectangle2D bounds, AffineTransform xform)
+    {
+        float[] fractions = getStopFractions();
+        Color[] colors = getStopColors();
+        Rectangle2D key = gradientUnits == GU_USER_SPACE_ON_USE ? null : bounds;
+
+        synchronized (this)
+        {
+            if (paintCache == null)
+            {
+                paintCache = new LinkedHashMap<Rectangle2D, Paint>(16, .75f, true)
+                {
+                    public static final long serialVersionUID = 0;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Rectangle2D, Paint> eldest)
+                    {
+                        return size() > MAX_CACHED_PAINTS;
+                    }
+                };
+            }
+
+            //Stop arrays are rebuilt whenever the stops change
+            if (fractions != paintCacheFractions || colors != paintCacheColors)
+            {
+                paintCache.clear();
+                paintCacheFractions = fractions;
+                paintCacheColors = colors;
+            }
+
+            Paint paint = paintCache.get(key);
+            if (paint == null)
+            {
+                paint = createPaint(bounds, xform);
+                paintCache.put(key == null ? null
+                    : new Rectangle2D.Double(key.getX(), key.getY(), key.getWidth(), key.getHeight()),
+                    paint);
+            }
+            return paint;
+        }
+    }
+
+    /**
+     * Creates the paint for a shape.  Called by getPaint() when there is no
+     * cached paint for the shape's bounds.
+     *
+     * @param bounds - bounding box of shape being rendered
+     * @param xform - The current transformation that the shape is being
+     * rendered under.
+     * @return paint object
+     */
+    abstract protected Paint createPaint(Rectangle2D bounds, AffineTransform xform);
+
+    /**
+     * Discards cached paints.  Must be called when an attribute used by
+     * createPaint() changes.
+     */
+    protected synchronized void clearPaintCache()
+    {
+        if (paintCache != null)
+        {
+            paintCache.clear();
+        }
+    }
+
+    /**
+     * Called when one of the stops of this gradient is modified
+     */
+    void stopsChanged()
+    {
+        stopFractions = null;
+        stopColors = null;
+    }
+
     private void buildStops()
     {
         ArrayList<Stop> stopList = new ArrayList<Stop>(stops);
@@ -327,7 +424,7 @@ abstract public class Gradient extends FillElement
         if (getPres(sty.setName("gradientTransform")))
         {
             AffineTransform newVal = parseTransform(sty.getStringValue());
-            if (newVal != null && newVal.equals(gradientTransform))
+            if (newVal != null && !newVal.equals(gradientTransform))
             {
                 gradientTransform = newVal;
                 stateChange = true;
@@ -363,6 +460,10 @@ abstract public class Gradient extends FillElement
             }
         }
 
+        if (stateChange)
+        {
+            clearPaintCache();
+        }
         return stateChange;
     }
 }
@@ -36,7 +36,9 @@
 package com.kitfox.svg;
 
 import com.kitfox.svg.xml.StyleAttribute;
+import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
@@ -161,29 +163,17 @@ public class Group extends ShapeElement
             }
         }
         
-        //Do not process offscreen groups
+        //Offscreen children, including whole groups, are skipped
         boolean ignoreClip = diagram.ignoringClipHeuristic();
-//        if (!ignoreClip && outsideClip(g))
-//        {
-//            return;
-//        }
 
         beginLayer(g);
 
         Iterator<SVGElement> it = children.iterator();
 
-//        try
-//        {
-//            g.getClipBounds(clipBounds);
-//        }
-//        catch (Exception e)
-//        {
-//            //For some reason, getClipBounds can throw a null pointer exception for
-//            // some types of Graphics2D
-//            ignoreClip = true;
-//        }
-
-        Shape clip = g.getClip();
+        Shape clip = ignoreClip ? null : g.getClip();
+        Rectangle2D clipBounds = clip == null ? null : clip.getBounds2D();
+        float detailThreshold = diagram.getDetailThreshold();
+        AffineTransform deviceXform = detailThreshold > 0 ? g.getTransform() : null;
         while (it.hasNext())
         {
             SVGElement ele = it.next();
@@ -191,16 +181,15 @@ public class Group extends ShapeElement
             {
                 RenderableElement rendEle = (RenderableElement) ele;
 
-//                if (shapeEle == null) continue;
+                //Skip if clipping area is outside our bounds
+                if (clip != null && outsideClip(rendEle, clip, clipBounds))
+                {
+                    continue;
+                }
 
-                if (!(ele instanceof Group))
+                if (deviceXform != null && renderDetail(g, rendEle, deviceXform, detailThreshold))
                 {
-                    //Skip if clipping area is outside our bounds
-                    if (!ignoreClip && clip != null
-                        && !clip.intersects(rendEle.getBoundingBox()))
-                    {
-                        continue;
-                    }
+                    continue;
                 }
 
                 rendEle.render(g);
@@ -210,6 +199,159 @@ public class Group extends ShapeElement
         finishLayer(g);
     }
 
+    /**
+     * Tests whether a child draws nothing within the clip.  Its bounds are
+     * tested against the bounds of the clip first, and against the clip
+     * shape only when they reach past the edge of the clip bounds.
+     */
+    private static boolean outsideClip(RenderableElement child, Shape clip, Rectangle2D clipBounds) throws SVGException
+    {
+        Rectangle2D bounds = child.getRenderBounds();
+        if (bounds == null)
+        {
+            return false;
+        }
+
+        if (!bounds.intersects(clipBounds))
+        {
+            return true;
+        }
+
+        if (clip instanceof Rectangle2D || clipBounds.contains(bounds))
+        {
+            return false;
+        }
+        return !clip.intersects(bounds);
+    }
+
+    /**
+     * Draws a child that is smaller than the detail threshold as a box of
+     * its color.
+     *
+     * @return true if the child was drawn as a box
+     */
+    private static boolean renderDetail(Graphics2D g, RenderableElement child, AffineTransform deviceXform, float detailThreshold) throws SVGException
+    {
+        Rectangle2D bounds = child.getRenderBounds();
+        if (bounds == null)
+        {
+            return false;
+        }
+
+        //Size of the bounds in device space
+        double width = bounds.getWidth();
+        double height = bounds.getHeight();
+        double deviceWidth = Math.abs(deviceXform.getScaleX()) * width + Math.abs(deviceXform.getShearX()) * height;
+        double deviceHeight = Math.abs(deviceXform.getShearY()) * width + Math.abs(deviceXform.getScaleY()) * height;
+        if (deviceWidth >= detailThreshold || deviceHeight >= detailThreshold)
+        {
+            return false;
+        }
+
+        Color color = child.getDetailColor();
+        if (color != null)
+        {
+            Paint paint = g.getPaint();
+            g.setColor(color);
+            g.fill(bounds);
+            g.setPaint(paint);
+        }
+        return true;
+    }
+
+    @Override
+    Color computeDetailColor() throws SVGException
+    {
+        StyleAttribute styleAttrib = new StyleAttribute();
+        if (getStyle(styleAttrib.setName("display"))
+            && styleAttrib.getStringValue().equals("none"))
+        {
+            return null;
+        }
+
+        //Color of the first child that draws anything
+        for (SVGElement ele : children)
+        {
+            if (ele instanceof RenderableElement)
+            {
+                Color color = ((RenderableElement) ele).getDetailColor();
+                if (color != null)
+                {
+                    return color;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    Rectangle2D computeRenderBounds() throws SVGException
+    {
+        if (filter != null)
+        {
+            return null;
+        }
+
+        Rectangle2D retRect = null;
+        for (SVGElement ele : children)
+        {
+            if (ele instanceof RenderableElement)
+            {
+                Rectangle2D bounds = ((RenderableElement) ele).getRenderBounds();
+                if (bounds == null)
+                {
+                    return null;
+                }
+
+                if (retRect == null)
+                {
+                    retRect = new Rectangle2D.Double();
+                    retRect.setRect(bounds);
+                }
+                else
+                {
+                    retRect.add(bounds);
+                }
+            }
+        }
+
+        //If no contents, nothing is drawn
+        if (retRect == null)
+        {
+            retRect = new Rectangle2D.Double();
+        }
+
+        return boundsToParent(retRect);
+    }
+
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        StyleAttribute styleAttrib = new StyleAttribute();
+        if (getStyle(styleAttrib.setName("display")))
+        {
+            if (styleAttrib.getStringValue().equals("none"))
+            {
+                return;
+            }
+        }
+
+        beginLayer(builder);
+
+        //Offscreen children are skipped when the list is replayed, since
+        // the clip is not known yet
+        for (int i = 0; i < children.size(); ++i)
+        {
+            SVGElement ele = children.get(i);
+            if (ele instanceof RenderableElement)
+            {
+                ((RenderableElement) ele).compile(builder);
+            }
+        }
+
+        finishLayer(builder);
+    }
+
     /**
      * Retrieves the cached bounding box of this group
      */
@@ -315,7 +457,7 @@ public class Group extends ShapeElement
 
             if (updateVal && ele instanceof RenderableElement)
             {
-                ((RenderableElement) ele).setBufferImage(null);
+                ((RenderableElement) ele).invalidateLayer();
             }
 
             changeState = changeState || updateVal;
@@ -333,7 +475,7 @@ public class Group extends ShapeElement
 
         if (changeState)
         {
-            setBufferImage(null);
+            invalidateLayer();
         }
 
         return changeState;
@@ -0,0 +1,322 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+
+package com.kitfox.svg;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of ARGB images used as scratch buffers when rendering masks and
+ * filters, so that drawing them every frame does not allocate new rasters.
+ * Images are pooled in sizes rounded up to a multiple of BUCKET_SIZE, and
+ * are lent out as subimages of the requested size.  Pooled images are held
+ * through soft references so that they are freed under memory pressure,
+ * and the pool holds no more than its budget, give or take the rasters of
+ * releases that race each other.  Each size has its own lock, so threads
+ * rendering buffers of different sizes do not contend.
+ *
+ * @author kitfox
+ */
+class ImagePool
+{
+    /**
+     * Pooled images have dimensions that are a multiple of this
+     */
+    static final int BUCKET_SIZE = 32;
+
+    /**
+     * Largest number of bytes held by the pool
+     */
+    static final long BUDGET = 64L << 20;
+
+    private static final ColorModel COLOR_MODEL
+        = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).getColorModel();
+    private static final ColorModel COLOR_MODEL_PRE
+        = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE).getColorModel();
+
+    private static final ConcurrentHashMap<BucketKey, Bucket> buckets = new ConcurrentHashMap<>();
+    //Bytes held, including rasters whose references may have been cleared
+    private static final AtomicLong size = new AtomicLong();
+    //Held while purging, so that concurrent releases purge only once
+    private static final Object purgeLock = new Object();
+
+    private ImagePool()
+    {
+    }
+
+    /**
+     * Borrows a transparent image from the pool
+     *
+     * @param width Width of the image
+     * @param height Height of the image
+     * @param preMultiplied True for TYPE_INT_ARGB_PRE, false for
+     * TYPE_INT_ARGB
+     * @return the image.  Return it with release() when done with it.
+     */
+    static BufferedImage borrow(int width, int height, boolean preMultiplied)
+    {
+        if (width <= 0 || height <= 0)
+        {
+            //Fails as a new image would
+            return new BufferedImage(width, height, preMultiplied
+                ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_ARGB);
+        }
+
+        BucketKey key = new BucketKey(roundUp(width), roundUp(height), preMultiplied);
+        Bucket bucket = buckets.get(key);
+        WritableRaster raster = bucket == null ? null : bucket.take();
+
+        ColorModel colorModel = preMultiplied ? COLOR_MODEL_PRE : COLOR_MODEL;
+        if (raster == null)
+        {
+            raster = colorModel.createCompatibleWritableRaster(key.width, key.height);
+        }
+        else
+        {
+            //Clear the area being lent out
+            BufferedImage pooled = new BufferedImage(colorModel, raster, preMultiplied, null);
+            Graphics2D g = pooled.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, width, height);
+            g.dispose();
+        }
+
+        if (width != key.width || height != key.height)
+        {
+            raster = raster.createWritableChild(0, 0, width, height, 0, 0, null);
+        }
+        return new BufferedImage(colorModel, raster, preMultiplied, null);
+    }
+
+    /**
+     * Returns an image to the pool.  The image must not be used afterwards.
+     * Images that did not come from the pool are accepted if they are of
+     * a pooled type.
+     */
+    static void release(BufferedImage img)
+    {
+        if (img == null)
+        {
+            return;
+        }
+
+        int type = img.getType();
+        if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_ARGB_PRE)
+        {
+            return;
+        }
+
+        WritableRaster raster = img.getRaster();
+        while (raster.getParent() != null)
+        {
+            raster = (WritableRaster) raster.getParent();
+        }
+        if (raster.getMinX() != 0 || raster.getMinY() != 0
+            || raster.getWidth() % BUCKET_SIZE != 0 || raster.getHeight() % BUCKET_SIZE != 0)
+        {
+            return;
+        }
+
+        BucketKey key = new BucketKey(raster.getWidth(), raster.getHeight(),
+            type == BufferedImage.TYPE_INT_ARGB_PRE);
+        long bytes = key.getSize();
+        if (size.get() + bytes > BUDGET)
+        {
+            purge();
+            if (size.get() + bytes > BUDGET)
+            {
+                return;
+            }
+        }
+
+        //A bucket emptied by a purge is retired, so look it up again
+        Bucket bucket;
+        do
+        {
+            bucket = buckets.computeIfAbsent(key, Bucket::new);
+        }
+        while (!bucket.put(raster));
+    }
+
+    /**
+     * Drops rasters that have been reclaimed by the garbage collector, then
+     * the oldest rasters of each size if the pool is still over half its
+     * budget
+     */
+    private static void purge()
+    {
+        synchronized (purgeLock)
+        {
+            for (Bucket bucket : buckets.values())
+            {
+                bucket.dropCleared();
+            }
+
+            for (Iterator<Bucket> it = buckets.values().iterator(); it.hasNext() && size.get() > BUDGET / 2;)
+            {
+                if (it.next().trim())
+                {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static int roundUp(int value)
+    {
+        return Math.max(1, (value + BUCKET_SIZE - 1) / BUCKET_SIZE) * BUCKET_SIZE;
+    }
+
+    /**
+     * Pooled rasters of one size, most recently released first
+     */
+    private static class Bucket
+    {
+        final long bytes;
+        final ArrayDeque<SoftReference<WritableRaster>> rasters = new ArrayDeque<>();
+        //Set once the bucket is removed from the pool, after which nothing
+        // may be added to it
+        boolean retired;
+
+        Bucket(BucketKey key)
+        {
+            this.bytes = key.getSize();
+        }
+
+        synchronized WritableRaster take()
+        {
+            WritableRaster raster = null;
+            while (raster == null && !rasters.isEmpty())
+            {
+                raster = rasters.pop().get();
+                size.addAndGet(-bytes);
+            }
+            return raster;
+        }
+
+        /**
+         * @return false if the bucket is retired, in which case the raster
+         * was not added
+         */
+        synchronized boolean put(WritableRaster raster)
+        {
+            if (retired)
+            {
+                return false;
+            }
+            rasters.push(new SoftReference<>(raster));
+            size.addAndGet(bytes);
+            return true;
+        }
+
+        /**
+         * Drops rasters that have been reclaimed by the garbage collector
+         */
+        synchronized void dropCleared()
+        {
+            for (Iterator<SoftReference<WritableRaster>> it = rasters.iterator(); it.hasNext();)
+            {
+                if (it.next().get() == null)
+                {
+                    it.remove();
+                    size.addAndGet(-bytes);
+                }
+            }
+        }
+
+        /**
+         * Drops the oldest rasters while the pool is over half its budget
+         *
+         * @return true if the bucket is now empty and has been retired
+         */
+        synchronized boolean trim()
+        {
+            while (size.get() > BUDGET / 2 && !rasters.isEmpty())
+            {
+                rasters.removeLast();
+                size.addAndGet(-bytes);
+            }
+            retired = rasters.isEmpty();
+            return retired;
+        }
+    }
+
+    private static class BucketKey
+    {
+        final int width;
+        final int height;
+        final boolean preMultiplied;
+
+        BucketKey(int width, int height, boolean preMultiplied)
+        {
+            this.width = width;
+            this.height = height;
+            this.preMultiplied = preMultiplied;
+        }
+
+        long getSize()
+        {
+            return (long) width * height * 4;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof BucketKey))
+            {
+                return false;
+            }
+            BucketKey other = (BucketKey) obj;
+            return other.width == width && other.height == height
+                && other.preMultiplied == preMultiplied;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (width * 31 + height) * 2 + (preMultiplied ? 1 : 0);
+        }
+    }
+}
@@ -273,6 +273,14 @@ public class ImageSVG extends RenderableElement
         return boundsToParent(bounds);
     }
 
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        //Images are loaded by the universe, so are drawn when the list is
+        // replayed
+        builder.addElement(this, getRenderBounds());
+    }
+
     /**
      * Updates all attributes in this diagram associated with a time event. Ie,
      * all attributes with track information.
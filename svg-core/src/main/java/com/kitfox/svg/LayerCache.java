@@ -0,0 +1,213 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+
+package com.kitfox.svg;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the offscreen layers that masked and filtered elements of a diagram
+ * are rendered to, so that redrawing them after the view is panned or
+ * slightly zoomed does not run the filter chain again.  The least recently
+ * used layers are discarded once their size exceeds the budget of the
+ * diagram.
+ *
+ * @author kitfox
+ */
+class LayerCache
+{
+    /**
+     * Default memory budget, in bytes
+     */
+    static final long DEFAULT_BUDGET = 32L << 20;
+
+    /**
+     * Default relative change in scale a layer may be reused across
+     */
+    static final float DEFAULT_SCALE_TOLERANCE = .05f;
+
+    private long budget = DEFAULT_BUDGET;
+    private float scaleTolerance = DEFAULT_SCALE_TOLERANCE;
+    private long size;
+
+    //Most recently used last
+    private final LinkedHashMap<LayerKey, BufferPainter.Cache> entries = new LinkedHashMap<>(16, .75f, true);
+
+    synchronized long getBudget()
+    {
+        return budget;
+    }
+
+    synchronized void setBudget(long budget)
+    {
+        this.budget = Math.max(0, budget);
+        trim();
+    }
+
+    synchronized float getScaleTolerance()
+    {
+        return scaleTolerance;
+    }
+
+    synchronized void setScaleTolerance(float scaleTolerance)
+    {
+        this.scaleTolerance = Math.max(0, scaleTolerance);
+    }
+
+    /**
+     * Returns a layer pinned for drawing.  Its image is not returned to the
+     * pool, even if the layer is discarded, until it is unpinned.
+     *
+     * @param element element the layer was rendered from
+     * @param context use element the element was rendered under, or null
+     * @return the layer, or null if none is cached
+     */
+    synchronized BufferPainter.Cache get(RenderableElement element, SVGElement context)
+    {
+        BufferPainter.Cache layer = entries.get(new LayerKey(element, context));
+        if (layer != null)
+        {
+            layer.pin();
+        }
+        return layer;
+    }
+
+    /**
+     * Ends the use of a layer returned by get() or added by put()
+     */
+    synchronized void unpin(BufferPainter.Cache layer)
+    {
+        layer.unpin();
+    }
+
+    /**
+     * Adds a layer, replacing any layer of the same element and context.  A
+     * layer that is added is pinned, as if returned by get().
+     *
+     * @return false if the layer is too large to cache
+     */
+    synchronized boolean put(RenderableElement element, SVGElement context, BufferPainter.Cache layer)
+    {
+        if (layer.getSize() > budget)
+        {
+            remove(element);
+            return false;
+        }
+
+        BufferPainter.Cache old = entries.put(new LayerKey(element, context), layer);
+        if (old != null)
+        {
+            size -= old.getSize();
+            old.recycle();
+        }
+        size += layer.getSize();
+        layer.pin();
+        //The newest layer fits the budget, so is never trimmed
+        trim();
+        return true;
+    }
+
+    /**
+     * Discards all layers of an element
+     */
+    synchronized void remove(RenderableElement element)
+    {
+        Iterator<Map.Entry<LayerKey, BufferPainter.Cache>> it = entries.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<LayerKey, BufferPainter.Cache> entry = it.next();
+            if (entry.getKey().element == element)
+            {
+                size -= entry.getValue().getSize();
+                entry.getValue().recycle();
+                it.remove();
+            }
+        }
+    }
+
+    synchronized void clear()
+    {
+        for (BufferPainter.Cache layer : entries.values())
+        {
+            layer.recycle();
+        }
+        entries.clear();
+        size = 0;
+    }
+
+    private void trim()
+    {
+        Iterator<Map.Entry<LayerKey, BufferPainter.Cache>> it = entries.entrySet().iterator();
+        while (size > budget && it.hasNext())
+        {
+            BufferPainter.Cache layer = it.next().getValue();
+            size -= layer.getSize();
+            layer.recycle();
+            it.remove();
+        }
+    }
+
+    private static class LayerKey
+    {
+        final RenderableElement element;
+        final SVGElement context;
+
+        LayerKey(RenderableElement element, SVGElement context)
+        {
+            this.element = element;
+            this.context = context;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof LayerKey))
+            {
+                return false;
+            }
+            LayerKey other = (LayerKey) obj;
+            return other.element == element && other.context == context;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(element) * 31 + System.identityHashCode(context);
+        }
+    }
+}
@@ -106,6 +106,14 @@ public class Line extends ShapeElement
         finishLayer(g);
     }
 
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        beginLayer(builder);
+        compileShape(builder, line);
+        finishLayer(builder);
+    }
+
     @Override
     public Shape getShape()
     {
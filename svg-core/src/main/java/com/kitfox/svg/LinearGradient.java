@@ -99,7 +99,7 @@ public class LinearGradient extends Gradient
     }
 
     @Override
-    public Paint getPaint(Rectangle2D bounds, AffineTransform xform)
+    protected Paint createPaint(Rectangle2D bounds, AffineTransform xform)
     {
         MultipleGradientPaint.CycleMethod method;
         switch (spreadMethod)
@@ -220,6 +220,10 @@ public class LinearGradient extends Gradient
             }
         }
 
+        if (shapeChange)
+        {
+            clearPaintCache();
+        }
         return changeState || shapeChange;
     }
 }
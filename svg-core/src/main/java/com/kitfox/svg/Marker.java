@@ -157,6 +157,17 @@ public class Marker extends Group
         g.setTransform(oldXform);
     }
 
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        AffineTransform oldXform = builder.getTransform();
+        builder.transform(markerXform);
+
+        super.doCompile(builder);
+
+        builder.setTransform(oldXform);
+    }
+
     public void render(Graphics2D g, MarkerPos pos, float strokeWidth) throws SVGException
     {
         AffineTransform cacheXform = g.getTransform();
@@ -176,6 +187,25 @@ public class Marker extends Group
         g.setTransform(cacheXform);
     }
 
+    void compile(DisplayList.Builder builder, MarkerPos pos, float strokeWidth) throws SVGException
+    {
+        AffineTransform cacheXform = builder.getTransform();
+
+        builder.translate(pos.x, pos.y);
+        if (markerUnitsStrokeWidth)
+        {
+            builder.scale(strokeWidth, strokeWidth);
+        }
+
+        builder.rotate(Math.atan2(pos.dy, pos.dx));
+
+        builder.transform(markerXform);
+
+        super.doCompile(builder);
+
+        builder.setTransform(cacheXform);
+    }
+
     @Override
     public Shape getShape()
     {
@@ -190,6 +220,13 @@ public class Marker extends Group
         return markerXform.createTransformedShape(rect).getBounds2D();
     }
 
+    @Override
+    Rectangle2D computeRenderBounds() throws SVGException
+    {
+        //Drawn at each vertex of the shapes that use it
+        return null;
+    }
+
     /**
      * Updates all attributes in this diagram associated with a time event. Ie,
      * all attributes with track information.
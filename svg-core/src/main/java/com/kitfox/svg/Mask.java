@@ -68,6 +68,11 @@ public class Mask extends Group
     {
     }
 
+    @Override
+    void compile(DisplayList.Builder builder)
+    {
+    }
+
     public Composite createMaskComposite()
     {
         return new MaskComposite();
@@ -89,15 +94,10 @@ public class Mask extends Group
         if (boundingBox)
         {
             element.doPick(point, true, retVec);
-        } else
+        } else if (isVisible(point))
         {
-            Rectangle pickPoint = new Rectangle((int) point.getX(), (int) point.getY(), 1, 1);
-            BufferedImage img = BufferPainter.paintToBuffer(null, new AffineTransform(), pickPoint, this, Color.BLACK);
             // Only try picking the element if the picked point is visible.
-            if (luminanceToAlpha(img.getRGB(0, 0)) > 0)
-            {
-                element.doPick(point, false, retVec);
-            }
+            element.doPick(point, false, retVec);
         }
     }
 
@@ -109,24 +109,57 @@ public class Mask extends Group
         if (boundingBox)
         {
             element.doPick(pickArea, ltw,true, retVec);
-        } else
+        } else if (isVisible(pickArea, ltw, element))
         {
-            // Clip with the element bounds to avoid creating a larger buffer than needed.
-            Area transformedBounds = new Area(ltw.createTransformedShape(element.getBoundingBox()));
-            transformedBounds.intersect(new Area(pickArea));
-            if (transformedBounds.isEmpty()) return;
+            element.doPick(pickArea, ltw, false, retVec);
+        }
+    }
 
-            Rectangle pickRect = transformedBounds.getBounds();
-            if (pickRect.isEmpty()) return;
+    /**
+     * @param point Point in the coordinates of the masked element's parent
+     * @return true if the mask lets the masked element show at the point
+     */
+    boolean isVisible(Point2D point) throws SVGException
+    {
+        Rectangle pickPoint = new Rectangle((int) point.getX(), (int) point.getY(), 1, 1);
+        BufferedImage img = BufferPainter.paintToBuffer(null, new AffineTransform(), pickPoint, this, Color.BLACK);
+        boolean visible = luminanceToAlpha(img.getRGB(0, 0)) > 0;
+        ImagePool.release(img);
+        return visible;
+    }
 
-            BufferedImage maskArea = BufferPainter.paintToBuffer(null, ltw, pickRect,this, Color.BLACK);
+    /**
+     * @param pickArea Area in world coordinates
+     * @param ltw Transform from the coordinates of the masked element's parent
+     * to world coordinates
+     * @param element The masked element
+     * @return true if the mask lets any part of the element in pickArea show
+     */
+    boolean isVisible(Rectangle2D pickArea, AffineTransform ltw, RenderableElement element) throws SVGException
+    {
+        if (pickArea.isEmpty()) return false;
 
-            // Pick if any pixel in the pick area is visible.
-            if (hasVisiblePixel(maskArea))
-            {
-                element.doPick(pickArea, ltw, false, retVec);
-            }
-        }
+        // Clip with the element bounds to avoid creating a larger buffer than needed.
+        Area transformedBounds = new Area(ltw.createTransformedShape(element.getBoundingBox()));
+        transformedBounds.intersect(new Area(pickArea));
+        if (transformedBounds.isEmpty()) return false;
+
+        Rectangle pickRect = transformedBounds.getBounds();
+        if (pickRect.isEmpty()) return false;
+
+        BufferedImage maskArea = BufferPainter.paintToBuffer(null, ltw, pickRect,this, Color.BLACK);
+
+        // Pick if any pixel in the pick area is visible.
+        boolean visible = hasVisiblePixel(maskArea);
+        ImagePool.release(maskArea);
+        return visible;
+    }
+
+    @Override
+    Rectangle2D computeRenderBounds() throws SVGException
+    {
+        //Never drawn directly
+        return null;
     }
 
     private boolean hasVisiblePixel(BufferedImage img)
@@ -35,6 +35,7 @@
  */
 package com.kitfox.svg;
 
+import com.kitfox.svg.pathcmd.PackedPath;
 import com.kitfox.svg.xml.StyleAttribute;
 import java.awt.Graphics2D;
 import java.awt.Shape;
@@ -52,8 +53,9 @@ public class Path extends ShapeElement
 //    PathCommand[] commands = null;
     int fillRule = GeneralPath.WIND_NON_ZERO;
     String d = "";
+    //Parsed form of d, shared with other paths using the same data
+    PackedPath pathData;
 //    ExtendedGeneralPath path;
-    GeneralPath path;
 
     /**
      * Creates a new instance of Rect
@@ -84,27 +86,44 @@ public class Path extends ShapeElement
             d = sty.getStringValue();
         }
 
-        path = buildPath(d, fillRule);
+        pathData = parsePackedPath(d);
+    }
+
+    private GeneralPath getPath()
+    {
+        return pathData.getShape(fillRule);
     }
 
     @Override
     protected void doRender(Graphics2D g) throws SVGException
     {
         beginLayer(g);
-        renderShape(g, path);
+        renderShape(g, getPath());
         finishLayer(g);
     }
 
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        beginLayer(builder);
+        compileShape(builder, getPath());
+        finishLayer(builder);
+    }
+
     @Override
     public Shape getShape()
     {
-        return shapeToParent(path);
+        GeneralPath path = getPath();
+        Shape shape = shapeToParent(path);
+        //The path is shared by every element with the same geometry, so
+        // callers get their own copy
+        return shape == path ? new GeneralPath(path) : shape;
     }
 
     @Override
     public Rectangle2D getBoundingBox() throws SVGException
     {
-        return boundsToParent(includeStrokeInBounds(path.getBounds2D()));
+        return boundsToParent(includeStrokeInBounds(getPath().getBounds2D()));
     }
 
     /**
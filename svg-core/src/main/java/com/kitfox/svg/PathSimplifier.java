@@ -0,0 +1,223 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+
+package com.kitfox.svg;
+
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+/**
+ * Reduces paths to polygons with fewer vertices, for drawing at scales
+ * where the detail they lose is too small to see.  Curves are flattened and
+ * each subpath is simplified with the Douglas-Peucker algorithm.
+ *
+ * @author kitfox
+ */
+class PathSimplifier
+{
+    //Coordinates of the current subpath
+    private double[] points = new double[64];
+    private int numPoints;
+    private boolean[] keep = new boolean[32];
+    private int[] stack = new int[64];
+
+    private PathSimplifier()
+    {
+    }
+
+    /**
+     * @param shape Shape to simplify
+     * @param tolerance Maximum distance the outline may move
+     * @return a polygonal path no further than tolerance from the shape
+     */
+    static Path2D simplify(Shape shape, double tolerance)
+    {
+        PathSimplifier simplifier = new PathSimplifier();
+        Path2D.Float path = new Path2D.Float();
+
+        //Split the tolerance between flattening and simplifying
+        PathIterator it = shape.getPathIterator(null, tolerance / 2);
+        path.setWindingRule(it.getWindingRule());
+        double[] coords = new double[6];
+        for (; !it.isDone(); it.next())
+        {
+            switch (it.currentSegment(coords))
+            {
+                case PathIterator.SEG_MOVETO:
+                    simplifier.emit(path, tolerance / 2, false);
+                    simplifier.add(coords[0], coords[1]);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    simplifier.add(coords[0], coords[1]);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    simplifier.emit(path, tolerance / 2, true);
+                    break;
+            }
+        }
+        simplifier.emit(path, tolerance / 2, false);
+
+        return path;
+    }
+
+    private void add(double x, double y)
+    {
+        if (numPoints * 2 == points.length)
+        {
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        points[numPoints * 2] = x;
+        points[numPoints * 2 + 1] = y;
+        ++numPoints;
+    }
+
+    /**
+     * Appends the simplified current subpath to a path and starts a new one
+     */
+    private void emit(Path2D path, double tolerance, boolean closed)
+    {
+        if (numPoints == 0)
+        {
+            return;
+        }
+
+        double startX = points[0];
+        double startY = points[1];
+        if (closed)
+        {
+            //Simplify the loop back to the start as well
+            add(startX, startY);
+        }
+
+        markVertices(tolerance);
+
+        path.moveTo(startX, startY);
+        int last = closed ? numPoints - 1 : numPoints;
+        for (int i = 1; i < last; ++i)
+        {
+            if (keep[i])
+            {
+                path.lineTo(points[i * 2], points[i * 2 + 1]);
+            }
+        }
+        if (closed)
+        {
+            path.closePath();
+        }
+
+        //A closed subpath continues from its start
+        numPoints = 0;
+        if (closed)
+        {
+            add(startX, startY);
+        }
+    }
+
+    /**
+     * Marks the vertices of the current subpath that must be kept
+     */
+    private void markVertices(double tolerance)
+    {
+        if (keep.length < numPoints)
+        {
+            keep = new boolean[numPoints * 2];
+        }
+        Arrays.fill(keep, 0, numPoints, false);
+        keep[0] = true;
+        keep[numPoints - 1] = true;
+
+        double toleranceSq = tolerance * tolerance;
+        int depth = 0;
+        stack[depth++] = 0;
+        stack[depth++] = numPoints - 1;
+        while (depth > 0)
+        {
+            int end = stack[--depth];
+            int start = stack[--depth];
+
+            //Find the vertex furthest from the segment joining the ends
+            double x0 = points[start * 2];
+            double y0 = points[start * 2 + 1];
+            double dx = points[end * 2] - x0;
+            double dy = points[end * 2 + 1] - y0;
+            double lengthSq = dx * dx + dy * dy;
+            double maxDistSq = toleranceSq;
+            int furthest = -1;
+            for (int i = start + 1; i < end; ++i)
+            {
+                double px = points[i * 2] - x0;
+                double py = points[i * 2 + 1] - y0;
+                double t = lengthSq == 0 ? 0 : (px * dx + py * dy) / lengthSq;
+                double distSq;
+                if (t <= 0)
+                {
+                    distSq = px * px + py * py;
+                }
+                else if (t >= 1)
+                {
+                    double ex = px - dx;
+                    double ey = py - dy;
+                    distSq = ex * ex + ey * ey;
+                }
+                else
+                {
+                    double cross = px * dy - py * dx;
+                    distSq = cross * cross / lengthSq;
+                }
+                if (distSq > maxDistSq)
+                {
+                    maxDistSq = distSq;
+                    furthest = i;
+                }
+            }
+
+            if (furthest != -1)
+            {
+                keep[furthest] = true;
+                if (depth + 4 > stack.length)
+                {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[depth++] = start;
+                stack[depth++] = furthest;
+                stack[depth++] = furthest;
+                stack[depth++] = end;
+            }
+        }
+    }
+}
@@ -46,6 +46,7 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.net.URI;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -67,6 +68,8 @@ public class PatternSVG extends FillElement
     AffineTransform patternXform = new AffineTransform();
     Rectangle2D.Float viewBox;
     Paint texPaint;
+    //Inputs the current tile was rendered from
+    private TileKey tileKey;
 
     /**
      * Creates a new instance of Gradient
@@ -187,6 +190,15 @@ public class PatternSVG extends FillElement
      */
     protected void preparePattern() throws SVGException
     {
+        //The tree is rebuilt on every paint of an icon, so only render the
+        // tile again when something it depends on has changed.  The tile
+        // cannot be recycled since paints made from it may still be in use.
+        TileKey key = new TileKey(this);
+        if (texPaint != null && key.equals(tileKey))
+        {
+            return;
+        }
+
         //For now, treat all fills as UserSpaceOnUse.  Otherwise, we'll need
         // a different paint for every object.
         int tileWidth = (int) width;
@@ -261,6 +273,7 @@ public class PatternSVG extends FillElement
             patternXform.scale(1 / stretchX, 1 / stretchY);
             texPaint = new PatternPaint(buf, patternXform);
         }
+        tileKey = key;
     }
 
     @Override
@@ -282,4 +295,54 @@ public class PatternSVG extends FillElement
         //Patterns don't change state
         return false;
     }
+
+    /**
+     * Attributes and document state a pattern tile is rendered from
+     */
+    private static final class TileKey
+    {
+        final int modificationCount;
+        final Rectangle2D deviceViewport;
+        final float x, y, width, height;
+        final Rectangle2D viewBox;
+        final AffineTransform patternXform;
+        final int numChildren;
+
+        TileKey(PatternSVG pattern)
+        {
+            modificationCount = pattern.diagram.getModificationCount();
+            deviceViewport = pattern.diagram.getDeviceViewport().getBounds();
+            x = pattern.x;
+            y = pattern.y;
+            width = pattern.width;
+            height = pattern.height;
+            viewBox = pattern.viewBox == null ? null : pattern.viewBox.getBounds2D();
+            patternXform = new AffineTransform(pattern.patternXform);
+            numChildren = pattern.children.size();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof TileKey))
+            {
+                return false;
+            }
+            TileKey other = (TileKey) obj;
+            return modificationCount == other.modificationCount
+                && x == other.x && y == other.y
+                && width == other.width && height == other.height
+                && numChildren == other.numChildren
+                && deviceViewport.equals(other.deviceViewport)
+                && Objects.equals(viewBox, other.viewBox)
+                && patternXform.equals(other.patternXform);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(modificationCount, x, y, width, height,
+                numChildren, deviceViewport, viewBox, patternXform);
+        }
+    }
 }
@@ -0,0 +1,723 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+
+package com.kitfox.svg;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bounding volume hierarchy over the pickable elements of a diagram.  Lets
+ * SVGDiagram.pick() find the elements under a point or area without
+ * descending every group; exact containment tests are only run on the
+ * elements whose bounds are hit.
+ *
+ * <p>The index is built on first use.  Elements report changes to it through
+ * the diagram.  Changed elements have their bounds recomputed and the
+ * hierarchy refitted the next time it is queried, while adding or removing
+ * elements causes it to be rebuilt.</p>
+ *
+ * @author kitfox
+ */
+class PickIndex
+{
+    /**
+     * Maximum number of elements in a leaf of the hierarchy
+     */
+    static final int LEAF_SIZE = 8;
+
+    private final SVGDiagram diagram;
+
+    //Pending changes
+    private boolean valid;
+    private boolean refitAll;
+    private final Set<SVGElement> changed = Collections.newSetFromMap(new IdentityHashMap<SVGElement, Boolean>());
+
+    //Groups in document order
+    private final ArrayList<Scope> scopes = new ArrayList<>();
+    private final IdentityHashMap<SVGElement, Scope> scopeMap = new IdentityHashMap<>();
+    //Pickable leaf elements in document order
+    private Entry[] entries = new Entry[0];
+    private final IdentityHashMap<SVGElement, Entry> entryMap = new IdentityHashMap<>();
+
+    //Nodes of the hierarchy.  Node 0 is the root, and the children of a node
+    // are stored next to each other.  Children are always stored after
+    // their parents.
+    private int numNodes;
+    private double[] nodeBounds = new double[0];
+    private int[] nodeChild = new int[0];
+    private int[] nodeStart = new int[0];
+    private int[] nodeEnd = new int[0];
+    //Indices of entries, ordered so that each node covers a range
+    private int[] items = new int[0];
+
+    PickIndex(SVGDiagram diagram)
+    {
+        this.diagram = diagram;
+    }
+
+    /**
+     * Called when an element is added or removed
+     */
+    synchronized void invalidate()
+    {
+        valid = false;
+    }
+
+    /**
+     * Called when an element may have changed its geometry or transform
+     */
+    synchronized void elementChanged(SVGElement element)
+    {
+        if (!valid || refitAll)
+        {
+            return;
+        }
+
+        changed.add(element);
+        if (changed.size() > entries.length / 2)
+        {
+            //Cheaper to refit everything
+            refitAll = true;
+            changed.clear();
+        }
+    }
+
+    /**
+     * Called when animation may have changed any element
+     */
+    synchronized void diagramChanged()
+    {
+        refitAll = true;
+        changed.clear();
+    }
+
+    synchronized void pick(Point2D point, boolean boundingBox, List<List<SVGElement>> retVec) throws SVGException
+    {
+        update();
+
+        double x = point.getX();
+        double y = point.getY();
+        int[] candidates = query(x, y, x, y);
+
+        IdentityHashMap<Scope, Boolean> scopeResults = new IdentityHashMap<>();
+        Point2D.Double localPoint = new Point2D.Double();
+        for (int idx : candidates)
+        {
+            Entry entry = entries[idx];
+            if (!isPickable(entry.scope, point, boundingBox, scopeResults)
+                || !isPickable(entry.element, entry.scope, elementTransform(entry), point, boundingBox))
+            {
+                continue;
+            }
+
+            entry.scope.toLocal(point, localPoint);
+            entry.element.doPick(localPoint, boundingBox, retVec);
+        }
+    }
+
+    synchronized void pick(Rectangle2D pickArea, boolean boundingBox, List<List<SVGElement>> retVec) throws SVGException
+    {
+        update();
+
+        int[] candidates = query(pickArea.getMinX(), pickArea.getMinY(), pickArea.getMaxX(), pickArea.getMaxY());
+
+        IdentityHashMap<Scope, Boolean> scopeResults = new IdentityHashMap<>();
+        for (int idx : candidates)
+        {
+            Entry entry = entries[idx];
+            if (!isPickable(entry.scope, pickArea, boundingBox, scopeResults)
+                || !isPickable(entry.element, entry.scope, elementTransform(entry), pickArea, boundingBox))
+            {
+                continue;
+            }
+
+            entry.element.doPick(pickArea, entry.scope.ltw, boundingBox, retVec);
+        }
+    }
+
+    /**
+     * @return transform from the coordinates the clip path of an entry is
+     * defined in to world coordinates
+     */
+    private AffineTransform elementTransform(Entry entry)
+    {
+        if (entry.element.xform == null)
+        {
+            return entry.scope.ltw;
+        }
+        AffineTransform xform = new AffineTransform(entry.scope.ltw);
+        xform.concatenate(entry.element.xform);
+        return xform;
+    }
+
+    /**
+     * Tests the masks and clip paths of a group and its ancestors
+     */
+    private boolean isPickable(Scope scope, Object pickArea, boolean boundingBox, IdentityHashMap<Scope, Boolean> scopeResults) throws SVGException
+    {
+        if (scope.element == null)
+        {
+            return true;
+        }
+
+        Boolean result = scopeResults.get(scope);
+        if (result == null)
+        {
+            result = isPickable(scope.parent, pickArea, boundingBox, scopeResults)
+                && (pickArea instanceof Point2D
+                    ? isPickable(scope.element, scope.parent, scope.ltw, (Point2D)pickArea, boundingBox)
+                    : isPickable(scope.element, scope.parent, scope.ltw, (Rectangle2D)pickArea, boundingBox));
+            scopeResults.put(scope, result);
+        }
+        return result;
+    }
+
+    /**
+     * Tests whether the mask and clip path of an element let a point through.
+     * Like the mask, clip paths are ignored when picking bounding boxes.
+     *
+     * @param element Element to test
+     * @param parent Scope the element is in
+     * @param elementXform Transform from the coordinates the clip path is
+     * defined in to world coordinates
+     */
+    private boolean isPickable(RenderableElement element, Scope parent, AffineTransform elementXform, Point2D point, boolean boundingBox) throws SVGException
+    {
+        if (boundingBox)
+        {
+            return true;
+        }
+
+        if (element.cachedMask != null)
+        {
+            Point2D.Double localPoint = new Point2D.Double();
+            parent.toLocal(point, localPoint);
+            if (!element.cachedMask.isVisible(localPoint))
+            {
+                return false;
+            }
+        }
+
+        Shape clip = element.getClipPath();
+        if (clip != null)
+        {
+            Point2D.Double localPoint = new Point2D.Double();
+            try
+            {
+                elementXform.inverseTransform(point, localPoint);
+            } catch (NoninvertibleTransformException ex)
+            {
+                throw new SVGException(ex);
+            }
+            if (!clip.contains(localPoint))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isPickable(RenderableElement element, Scope parent, AffineTransform elementXform, Rectangle2D pickArea, boolean boundingBox) throws SVGException
+    {
+        if (boundingBox)
+        {
+            return true;
+        }
+
+        if (element.cachedMask != null
+            && !element.cachedMask.isVisible(pickArea, parent.ltw, element))
+        {
+            return false;
+        }
+
+        Shape clip = element.getClipPath();
+        if (clip != null
+            && !elementXform.createTransformedShape(clip).intersects(pickArea))
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Brings the index up to date with the document
+     */
+    private void update() throws SVGException
+    {
+        if (valid && scopes.size() > 1 && scopes.get(1).isViewChanged())
+        {
+            //Root was laid out for a different viewport
+            refitAll = true;
+        }
+
+        if (!valid)
+        {
+            build();
+        }
+        else if (refitAll)
+        {
+            for (int i = 1; i < scopes.size(); ++i)
+            {
+                scopes.get(i).computeTransform();
+            }
+            for (Entry entry : entries)
+            {
+                entry.computeBounds();
+            }
+            refitNodes();
+        }
+        else if (!changed.isEmpty())
+        {
+            refit();
+        }
+
+        refitAll = false;
+        changed.clear();
+    }
+
+    private void refit() throws SVGException
+    {
+        for (SVGElement element : changed)
+        {
+            Scope scope = scopeMap.get(element);
+            if (scope != null)
+            {
+                for (int i = scope.index; i < scope.endScope; ++i)
+                {
+                    scopes.get(i).computeTransform();
+                }
+                for (int i = scope.startEntry; i < scope.endEntry; ++i)
+                {
+                    entries[i].computeBounds();
+                }
+                continue;
+            }
+
+            Entry entry = entryMap.get(element);
+            if (entry != null)
+            {
+                entry.computeBounds();
+                continue;
+            }
+
+            //Element is not drawn directly, but may be referenced by
+            // anything, such as by a use element or a style sheet
+            for (Entry other : entries)
+            {
+                other.computeBounds();
+            }
+            break;
+        }
+        refitNodes();
+    }
+
+    private void build() throws SVGException
+    {
+        scopes.clear();
+        scopeMap.clear();
+        entryMap.clear();
+
+        ArrayList<Entry> entryList = new ArrayList<>();
+        Scope top = new Scope(null, null, 0, 0);
+        scopes.add(top);
+        SVGRoot root = diagram.getRoot();
+        if (root != null)
+        {
+            addElement(root, top, entryList);
+        }
+        top.endScope = scopes.size();
+        top.endEntry = entryList.size();
+        entries = entryList.toArray(new Entry[entryList.size()]);
+
+        int numEntries = entries.length;
+        items = new int[numEntries];
+        for (int i = 0; i < numEntries; ++i)
+        {
+            items[i] = i;
+        }
+
+        int capacity = Math.max(1, 4 * numEntries / LEAF_SIZE + 2);
+        nodeBounds = new double[capacity * 4];
+        nodeChild = new int[capacity];
+        nodeStart = new int[capacity];
+        nodeEnd = new int[capacity];
+        numNodes = 1;
+        buildNode(0, 0, numEntries);
+
+        valid = true;
+    }
+
+    private void addElement(RenderableElement element, Scope parent, ArrayList<Entry> entryList) throws SVGException
+    {
+        if (element instanceof Mask)
+        {
+            //Masks are never picked
+            return;
+        }
+
+        if (element instanceof Group)
+        {
+            Scope scope = new Scope(parent, element, scopes.size(), entryList.size());
+            scopes.add(scope);
+            scopeMap.put(element, scope);
+            scope.computeTransform();
+
+            for (SVGElement child : element.children)
+            {
+                if (child instanceof RenderableElement)
+                {
+                    addElement((RenderableElement) child, scope, entryList);
+                }
+            }
+
+            scope.endScope = scopes.size();
+            scope.endEntry = entryList.size();
+            return;
+        }
+
+        Entry entry = new Entry(element, parent);
+        entryList.add(entry);
+        entryMap.put(element, entry);
+        entry.computeBounds();
+    }
+
+    private void buildNode(int node, int start, int end)
+    {
+        nodeStart[node] = start;
+        nodeEnd[node] = end;
+        nodeChild[node] = -1;
+        computeLeafBounds(node);
+
+        if (end - start <= LEAF_SIZE)
+        {
+            return;
+        }
+
+        //Split at the median center along the longer side
+        int base = node * 4;
+        int axis = nodeBounds[base + 2] - nodeBounds[base] >= nodeBounds[base + 3] - nodeBounds[base + 1] ? 0 : 1;
+        int mid = (start + end) >>> 1;
+        select(start, end, mid, axis);
+
+        if (numNodes + 2 > nodeChild.length)
+        {
+            int capacity = nodeChild.length * 2 + 2;
+            nodeBounds = Arrays.copyOf(nodeBounds, capacity * 4);
+            nodeChild = Arrays.copyOf(nodeChild, capacity);
+            nodeStart = Arrays.copyOf(nodeStart, capacity);
+            nodeEnd = Arrays.copyOf(nodeEnd, capacity);
+        }
+        int child = numNodes;
+        numNodes += 2;
+        nodeChild[node] = child;
+        buildNode(child, start, mid);
+        buildNode(child + 1, mid, end);
+    }
+
+    /**
+     * Partially sorts items so that the item at index k has the median center
+     * along an axis, with lower items before it and higher ones after
+     */
+    private void select(int start, int end, int k, int axis)
+    {
+        int lo = start;
+        int hi = end - 1;
+        while (lo < hi)
+        {
+            double pivot = entries[items[(lo + hi) >>> 1]].center(axis);
+            int i = lo;
+            int j = hi;
+            while (i <= j)
+            {
+                while (entries[items[i]].center(axis) < pivot)
+                {
+                    ++i;
+                }
+                while (entries[items[j]].center(axis) > pivot)
+                {
+                    --j;
+                }
+                if (i <= j)
+                {
+                    int tmp = items[i];
+                    items[i] = items[j];
+                    items[j] = tmp;
+                    ++i;
+                    --j;
+                }
+            }
+            if (k <= j)
+            {
+                hi = j;
+            }
+            else if (k >= i)
+            {
+                lo = i;
+            }
+            else
+            {
+                break;
+            }
+        }
+    }
+
+    private void computeLeafBounds(int node)
+    {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = nodeStart[node]; i < nodeEnd[node]; ++i)
+        {
+            Entry entry = entries[items[i]];
+            minX = Math.min(minX, entry.minX);
+            minY = Math.min(minY, entry.minY);
+            maxX = Math.max(maxX, entry.maxX);
+            maxY = Math.max(maxY, entry.maxY);
+        }
+        int base = node * 4;
+        nodeBounds[base] = minX;
+        nodeBounds[base + 1] = minY;
+        nodeBounds[base + 2] = maxX;
+        nodeBounds[base + 3] = maxY;
+    }
+
+    /**
+     * Recomputes the bounds of all nodes after entries have moved
+     */
+    private void refitNodes()
+    {
+        for (int node = numNodes - 1; node >= 0; --node)
+        {
+            int child = nodeChild[node];
+            if (child == -1)
+            {
+                computeLeafBounds(node);
+                continue;
+            }
+
+            int base = node * 4;
+            int c0 = child * 4;
+            int c1 = c0 + 4;
+            nodeBounds[base] = Math.min(nodeBounds[c0], nodeBounds[c1]);
+            nodeBounds[base + 1] = Math.min(nodeBounds[c0 + 1], nodeBounds[c1 + 1]);
+            nodeBounds[base + 2] = Math.max(nodeBounds[c0 + 2], nodeBounds[c1 + 2]);
+            nodeBounds[base + 3] = Math.max(nodeBounds[c0 + 3], nodeBounds[c1 + 3]);
+        }
+    }
+
+    /**
+     * @return indices of the entries whose bounds touch an area, in document
+     * order
+     */
+    private int[] query(double minX, double minY, double maxX, double maxY)
+    {
+        int[] result = new int[16];
+        int numResults = 0;
+
+        int[] stack = new int[64];
+        int depth = 0;
+        stack[depth++] = 0;
+        while (depth > 0)
+        {
+            int node = stack[--depth];
+            int base = node * 4;
+            if (nodeBounds[base] > maxX || nodeBounds[base + 2] < minX
+                || nodeBounds[base + 1] > maxY || nodeBounds[base + 3] < minY)
+            {
+                continue;
+            }
+
+            int child = nodeChild[node];
+            if (child != -1)
+            {
+                if (depth + 2 > stack.length)
+                {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[depth++] = child;
+                stack[depth++] = child + 1;
+                continue;
+            }
+
+            for (int i = nodeStart[node]; i < nodeEnd[node]; ++i)
+            {
+                Entry entry = entries[items[i]];
+                if (entry.minX > maxX || entry.maxX < minX
+                    || entry.minY > maxY || entry.maxY < minY)
+                {
+                    continue;
+                }
+                if (numResults == result.length)
+                {
+                    result = Arrays.copyOf(result, numResults * 2);
+                }
+                result[numResults++] = items[i];
+            }
+        }
+
+        result = Arrays.copyOf(result, numResults);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * A group, and the transform from the coordinates of its children to
+     * world coordinates
+     */
+    private static class Scope
+    {
+        final Scope parent;
+        //Null for the scope the root element is in
+        final RenderableElement element;
+        final AffineTransform ltw = new AffineTransform();
+        AffineTransform inverse;
+        //View transform of the root element when ltw was computed
+        AffineTransform viewXform;
+        //Range of groups and entries within this group
+        final int index;
+        final int startEntry;
+        int endScope;
+        int endEntry;
+
+        Scope(Scope parent, RenderableElement element, int index, int startEntry)
+        {
+            this.parent = parent;
+            this.element = element;
+            this.index = index;
+            this.startEntry = startEntry;
+        }
+
+        void computeTransform()
+        {
+            ltw.setTransform(parent.ltw);
+            if (element instanceof SVGRoot)
+            {
+                viewXform = new AffineTransform(((SVGRoot) element).viewXform);
+                ltw.concatenate(viewXform);
+            }
+            if (element.xform != null)
+            {
+                ltw.concatenate(element.xform);
+            }
+            inverse = null;
+        }
+
+        boolean isViewChanged()
+        {
+            return viewXform != null && !viewXform.equals(((SVGRoot) element).viewXform);
+        }
+
+        void toLocal(Point2D point, Point2D localPoint) throws SVGException
+        {
+            if (inverse == null)
+            {
+                try
+                {
+                    inverse = ltw.createInverse();
+                } catch (NoninvertibleTransformException ex)
+                {
+                    throw new SVGException(ex);
+                }
+            }
+            inverse.transform(point, localPoint);
+        }
+    }
+
+    /**
+     * A pickable element and its bounds in world coordinates
+     */
+    private static class Entry
+    {
+        final RenderableElement element;
+        final Scope scope;
+        double minX;
+        double minY;
+        double maxX;
+        double maxY;
+
+        Entry(RenderableElement element, Scope scope)
+        {
+            this.element = element;
+            this.scope = scope;
+        }
+
+        void computeBounds() throws SVGException
+        {
+            Rectangle2D bounds = element.getBoundingBox();
+            if (element instanceof ShapeElement)
+            {
+                Shape shape = ((ShapeElement) element).getShape();
+                if (shape != null)
+                {
+                    bounds = bounds == null ? shape.getBounds2D() : bounds.createUnion(shape.getBounds2D());
+                }
+            }
+
+            if (bounds == null)
+            {
+                //Always test
+                minX = minY = Double.NEGATIVE_INFINITY;
+                maxX = maxY = Double.POSITIVE_INFINITY;
+                return;
+            }
+
+            Rectangle2D world = scope.ltw.createTransformedShape(bounds).getBounds2D();
+            minX = world.getMinX();
+            minY = world.getMinY();
+            maxX = world.getMaxX();
+            maxY = world.getMaxY();
+        }
+
+        double center(int axis)
+        {
+            double center = axis == 0 ? (minX + maxX) / 2 : (minY + maxY) / 2;
+            return Double.isNaN(center) ? 0 : center;
+        }
+    }
+}
@@ -35,8 +35,8 @@
  */
 package com.kitfox.svg;
 
+import com.kitfox.svg.pathcmd.PackedPath;
 import com.kitfox.svg.xml.StyleAttribute;
-import com.kitfox.svg.xml.XMLParseUtil;
 import java.awt.Graphics2D;
 import java.awt.Shape;
 import java.awt.geom.GeneralPath;
@@ -52,7 +52,8 @@ public class Polyline extends ShapeElement
     
     int fillRule = GeneralPath.WIND_NON_ZERO;
     String pointsStrn = "";
-    GeneralPath path;
+    //Parsed form of points, shared with other elements using the same list
+    PackedPath pathData;
 
     /**
      * Creates a new instance of Rect
@@ -87,34 +88,44 @@ public class Polyline extends ShapeElement
 
     protected void buildPath()
     {
-        float[] points = XMLParseUtil.parseFloatList(pointsStrn);
-        path = new GeneralPath(fillRule, points.length / 2);
+        pathData = PackedPath.forPoints(pointsStrn, false);
+    }
 
-        path.moveTo(points[0], points[1]);
-        for (int i = 2; i < points.length; i += 2)
-        {
-            path.lineTo(points[i], points[i + 1]);
-        }
+    private GeneralPath getPath()
+    {
+        return pathData.getShape(fillRule);
     }
 
     @Override
     protected void doRender(Graphics2D g) throws SVGException
     {
         beginLayer(g);
-        renderShape(g, path);
+        renderShape(g, getPath());
         finishLayer(g);
     }
 
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        beginLayer(builder);
+        compileShape(builder, getPath());
+        finishLayer(builder);
+    }
+
     @Override
     public Shape getShape()
     {
-        return shapeToParent(path);
+        GeneralPath path = getPath();
+        Shape shape = shapeToParent(path);
+        //The path is shared by every element with the same geometry, so
+        // callers get their own copy
+        return shape == path ? new GeneralPath(path) : shape;
     }
 
     @Override
     public Rectangle2D getBoundingBox() throws SVGException
     {
-        return boundsToParent(includeStrokeInBounds(path.getBounds2D()));
+        return boundsToParent(includeStrokeInBounds(getPath().getBounds2D()));
     }
 
     /**
@@ -109,7 +109,7 @@ public class RadialGradient extends Gradient
     }
 
     @Override
-    public Paint getPaint(Rectangle2D bounds, AffineTransform xform)
+    protected Paint createPaint(Rectangle2D bounds, AffineTransform xform)
     {
         MultipleGradientPaint.CycleMethod method;
         switch (spreadMethod)
@@ -237,6 +237,10 @@ public class RadialGradient extends Gradient
             }
         }
 
-        return changeState;
+        if (shapeChange)
+        {
+            clearPaintCache();
+        }
+        return changeState || shapeChange;
     }
 }
@@ -209,6 +209,14 @@ public class Rect extends ShapeElement
         finishLayer(g);
     }
 
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        beginLayer(builder);
+        compileShape(builder, rect);
+        finishLayer(builder);
+    }
+
     @Override
     public Shape getShape()
     {
@@ -36,6 +36,7 @@
 package com.kitfox.svg;
 
 import com.kitfox.svg.xml.StyleAttribute;
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
@@ -62,7 +63,9 @@ abstract public class RenderableElement extends TransformableElement
     public static final int VECTOR_EFFECT_NON_SCALING_STROKE = 1;
     int vectorEffect;
 
-    private BufferPainter.Cache bufferCache;
+    //Results of the last calls to computeRenderBounds() and computeDetailColor()
+    private volatile Cached<Rectangle2D> renderBounds;
+    private volatile Cached<Color> detailColor;
 
     /**
      * Creates a new instance of BoundedElement
@@ -76,14 +79,15 @@ abstract public class RenderableElement extends TransformableElement
         super(id, parent);
     }
 
-    BufferPainter.Cache getBufferCache()
-    {
-        return bufferCache;
-    }
-
-    void setBufferImage(BufferPainter.Cache bufferCache)
+    /**
+     * Discards the offscreen layers this element has been rendered to
+     */
+    void invalidateLayer()
     {
-        this.bufferCache = bufferCache;
+        if (diagram != null)
+        {
+            diagram.getLayerCache().remove(this);
+        }
     }
 
     @Override
@@ -144,6 +148,37 @@ abstract public class RenderableElement extends TransformableElement
 
     abstract protected void doRender(Graphics2D g) throws SVGException;
 
+    /**
+     * Adds the operations that render this element to a display list
+     * @param builder
+     * @throws com.kitfox.svg.SVGException
+     */
+    void compile(DisplayList.Builder builder) throws SVGException
+    {
+        if (BufferPainter.isBuffered(this))
+        {
+            //Buffers are rendered at the resolution of the target, so must
+            // be drawn when the list is replayed.  The render bounds cover
+            // the whole stroke, and are null if a filter may draw anywhere.
+            builder.addElement(this, getRenderBounds());
+        }
+        else
+        {
+            doCompile(builder);
+        }
+    }
+
+    /**
+     * Compiles this element as doRender() draws it.  Elements that do not
+     * override this are drawn from the document when the list is replayed.
+     * @param builder
+     * @throws com.kitfox.svg.SVGException
+     */
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        builder.addElement(this, null);
+    }
+
     void pick(Point2D point, boolean boundingBox, List<List<SVGElement>> retVec) throws SVGException
     {
         if (cachedMask != null)
@@ -171,6 +206,74 @@ abstract public class RenderableElement extends TransformableElement
     protected abstract void doPick(Rectangle2D pickArea, AffineTransform ltw, boolean boundingBox, List<List<SVGElement>> retVec) throws SVGException;
 
     abstract public Rectangle2D getBoundingBox() throws SVGException;
+
+    /**
+     * Returns conservative bounds of everything this element draws, in the
+     * coordinates of its parent.  Used to skip elements that lie outside
+     * the clip.  The result is cached until the diagram changes, and must
+     * not be modified.
+     *
+     * @return the bounds, or null if they cannot be determined
+     * @throws com.kitfox.svg.SVGException
+     */
+    Rectangle2D getRenderBounds() throws SVGException
+    {
+        if (diagram.parentContextDepth.get() != 0)
+        {
+            //Styles depend on the referencing element
+            return computeRenderBounds();
+        }
+
+        int count = diagram.geometryCount.get();
+        Cached<Rectangle2D> cache = renderBounds;
+        if (cache == null || cache.count != count)
+        {
+            cache = new Cached<>(count, computeRenderBounds());
+            renderBounds = cache;
+        }
+        return cache.value;
+    }
+
+    /**
+     * Calculates the value returned by getRenderBounds().  Filters may draw
+     * anywhere, so filtered elements are never skipped.
+     */
+    Rectangle2D computeRenderBounds() throws SVGException
+    {
+        return filter == null ? getBoundingBox() : null;
+    }
+
+    /**
+     * Returns the color this element is drawn as when it is smaller than the
+     * detail threshold of the diagram.  Cached until the diagram changes.
+     *
+     * @return the color, or null to draw nothing
+     * @throws com.kitfox.svg.SVGException
+     */
+    Color getDetailColor() throws SVGException
+    {
+        if (diagram.parentContextDepth.get() != 0)
+        {
+            return computeDetailColor();
+        }
+
+        int count = diagram.geometryCount.get();
+        Cached<Color> cache = detailColor;
+        if (cache == null || cache.count != count)
+        {
+            cache = new Cached<>(count, computeDetailColor());
+            detailColor = cache;
+        }
+        return cache.value;
+    }
+
+    /**
+     * Calculates the value returned by getDetailColor()
+     */
+    Color computeDetailColor() throws SVGException
+    {
+        return null;
+    }
     /*
      public void loaderStartElement(SVGLoaderHelper helper, Attributes attrs, SVGElement parent)
      {
@@ -193,35 +296,10 @@ abstract public class RenderableElement extends TransformableElement
             g.transform(xform);
         }
 
-        StyleAttribute styleAttrib = new StyleAttribute();
-
-        //Get clipping path
-//        StyleAttribute styleAttrib = getStyle("clip-path", false);
-        Shape clipPath = null;
-        int clipPathUnits = ClipPath.CP_USER_SPACE_ON_USE;
-        if (getStyle(styleAttrib.setName("clip-path"), false)
-             && !"none".equals(styleAttrib.getStringValue()))
-        {
-            URI uri = styleAttrib.getURIValue(getXMLBase());
-            if (uri != null)
-            {
-                ClipPath ele = (ClipPath) diagram.getUniverse().getElement(uri);
-                clipPath = ele.getClipPathShape();
-                clipPathUnits = ele.getClipPathUnits();
-            }
-        }
-
         //Return if we're out of clipping range
+        Shape clipPath = getClipPath();
         if (clipPath != null)
         {
-            if (clipPathUnits == ClipPath.CP_OBJECT_BOUNDING_BOX && (this instanceof ShapeElement))
-            {
-                Rectangle2D rect = ((ShapeElement) this).getBoundingBox();
-                AffineTransform at = new AffineTransform();
-                at.scale(rect.getWidth(), rect.getHeight());
-                clipPath = at.createTransformedShape(clipPath);
-            }
-
             cachedClip = g.getClip();
             if (cachedClip == null)
             {
@@ -252,4 +330,79 @@ abstract public class RenderableElement extends TransformableElement
             g.setTransform(cachedXform);
         }
     }
+
+    /**
+     * Display list equivalent of beginLayer(Graphics2D)
+     * @param builder
+     * @throws com.kitfox.svg.SVGException
+     */
+    void beginLayer(DisplayList.Builder builder) throws SVGException
+    {
+        builder.save();
+        if (xform != null)
+        {
+            builder.transform(xform);
+        }
+
+        Shape clipPath = getClipPath();
+        if (clipPath != null)
+        {
+            builder.clip(clipPath);
+        }
+    }
+
+    void finishLayer(DisplayList.Builder builder)
+    {
+        builder.restore();
+    }
+
+    /**
+     * @return the shape of the clip-path applied to this element, in local
+     * coordinates, or null if there is none
+     */
+    Shape getClipPath() throws SVGException
+    {
+        StyleAttribute styleAttrib = new StyleAttribute();
+
+        //Get clipping path
+//        StyleAttribute styleAttrib = getStyle("clip-path", false);
+        Shape clipPath = null;
+        int clipPathUnits = ClipPath.CP_USER_SPACE_ON_USE;
+        if (getStyle(styleAttrib.setName("clip-path"), false)
+             && !"none".equals(styleAttrib.getStringValue()))
+        {
+            URI uri = styleAttrib.getURIValue(getXMLBase());
+            if (uri != null)
+            {
+                ClipPath ele = (ClipPath) diagram.getUniverse().getElement(uri);
+                clipPath = ele.getClipPathShape();
+                clipPathUnits = ele.getClipPathUnits();
+            }
+        }
+
+        if (clipPath != null && clipPathUnits == ClipPath.CP_OBJECT_BOUNDING_BOX && (this instanceof ShapeElement))
+        {
+            Rectangle2D rect = ((ShapeElement) this).getBoundingBox();
+            AffineTransform at = new AffineTransform();
+            at.scale(rect.getWidth(), rect.getHeight());
+            clipPath = at.createTransformedShape(clipPath);
+        }
+        return clipPath;
+    }
+
+    /**
+     * A value computed from the diagram, and the geometry count it was
+     * computed at
+     */
+    private static class Cached<T>
+    {
+        final int count;
+        final T value;
+
+        Cached(int count, T value)
+        {
+            this.count = count;
+            this.value = value;
+        }
+    }
 }
@@ -39,7 +39,6 @@ package com.kitfox.svg;
 import javax.swing.JComponent;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.Serializable;
@@ -47,6 +46,7 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -66,7 +66,7 @@ public class SVGDiagram implements Serializable
 
     SVGRoot root;
     final SVGUniverse universe;
-    private JComponent renderTarget;
+    JComponent renderTarget;
 
     /**
      * This is used by the SVGRoot to determine the width of the
@@ -80,6 +80,53 @@ public class SVGDiagram implements Serializable
      */
     protected boolean ignoreClipHeuristic = false;
 
+    /**
+     * Level of detail settings, in device pixels.  Zero disables each one.
+     */
+    private volatile float detailThreshold;
+    private volatile float greekingThreshold;
+    private volatile float simplifyTolerance;
+
+    /**
+     * Number of elements in this diagram currently rendered under a parent
+     * context other than their parent, as done by the use tag.  Computed
+     * styles are not cached while this is non-zero.
+     */
+    final AtomicInteger parentContextDepth = new AtomicInteger();
+
+    /**
+     * Incremented whenever an element of this diagram changes.  Used to tell
+     * when a compiled display list is out of date.
+     */
+    final AtomicInteger modificationCount = new AtomicInteger();
+
+    /**
+     * Incremented whenever an element of this diagram is changed or rebuilt.
+     * Unlike modificationCount, this also changes when the document is laid
+     * out again for a new viewport.  Cached bounds are keyed on it.
+     */
+    final AtomicInteger geometryCount = new AtomicInteger();
+
+    /**
+     * Result of the last call to compile()
+     */
+    private transient DisplayList displayList;
+
+    /**
+     * Stroked outlines of the shapes in this diagram
+     */
+    private transient StrokeCache strokeCache;
+
+    /**
+     * Offscreen layers of masked and filtered elements
+     */
+    private transient LayerCache layerCache;
+
+    /**
+     * Spatial index used by pick(), built on first use
+     */
+    private transient volatile PickIndex pickIndex;
+
     /**
      * URL which uniquely identifies this document
      */
@@ -125,6 +172,114 @@ public class SVGDiagram implements Serializable
         render(null, g);
     }
 
+    /**
+     * Resolves this diagram into a display list, which can be replayed to
+     * render it without walking the document.  The list from the previous
+     * call is returned if it is still valid.
+     *
+     * @return a display list drawing this diagram as it is now
+     * @throws com.kitfox.svg.SVGException
+     */
+    public DisplayList compile() throws SVGException
+    {
+        DisplayList list = displayList;
+        if (list == null || !list.isValid())
+        {
+            list = DisplayList.compile(this);
+            displayList = list;
+        }
+        return list;
+    }
+
+    synchronized StrokeCache getStrokeCache()
+    {
+        if (strokeCache == null)
+        {
+            strokeCache = new StrokeCache();
+        }
+        return strokeCache;
+    }
+
+    /**
+     * @return the number of bytes of memory that stroked outlines of shapes
+     * are allowed to use
+     */
+    public long getStrokeCacheBudget()
+    {
+        return getStrokeCache().getBudget();
+    }
+
+    /**
+     * Sets the number of bytes of memory that may be used to keep the stroked
+     * outlines of shapes, so that redrawing unchanged geometry does not need
+     * to stroke it again.  Least recently used outlines are discarded first.
+     * @param budget size in bytes, or 0 to disable caching of outlines
+     */
+    public void setStrokeCacheBudget(long budget)
+    {
+        getStrokeCache().setBudget(budget);
+    }
+
+    synchronized LayerCache getLayerCache()
+    {
+        if (layerCache == null)
+        {
+            layerCache = new LayerCache();
+        }
+        return layerCache;
+    }
+
+    /**
+     * @return the number of bytes of offscreen layers kept for reuse
+     */
+    public long getLayerCacheBudget()
+    {
+        return getLayerCache().getBudget();
+    }
+
+    /**
+     * Sets the memory budget for the offscreen layers that masked and
+     * filtered elements are rendered to.  Layers are reused while the view
+     * is panned, so that filters do not run on every frame.  The least
+     * recently used layers are discarded first.
+     *
+     * @param budget Size in bytes, or 0 to disable caching.  Defaults to 32 MB.
+     */
+    public void setLayerCacheBudget(long budget)
+    {
+        getLayerCache().setBudget(budget);
+    }
+
+    /**
+     * @return the change in scale offscreen layers are reused across
+     */
+    public float getLayerScaleTolerance()
+    {
+        return getLayerCache().getScaleTolerance();
+    }
+
+    /**
+     * Sets how far the drawing scale may change before the offscreen layer of
+     * a masked or filtered element is rendered again, rather than resampled.
+     *
+     * @param tolerance Relative change in scale, or 0 to only reuse layers
+     * when the scale is unchanged.  Defaults to 0.05.
+     */
+    public void setLayerScaleTolerance(float tolerance)
+    {
+        getLayerCache().setScaleTolerance(tolerance);
+    }
+
+    /**
+     * @return a counter that changes whenever an element of this diagram is
+     * modified or animated to a new state.  Can be used to tell when content
+     * derived from this diagram is out of date.
+     */
+    public int getModificationCount()
+    {
+        return modificationCount.get();
+    }
+
     /**
      * Searches thorough the scene graph for all RenderableElements that have
      * shapes that contain the passed point.
@@ -150,7 +305,7 @@ public class SVGDiagram implements Serializable
             retVec = new ArrayList<>();
         }
 
-        root.pick(point, boundingBox, retVec);
+        getPickIndex().pick(point, boundingBox, retVec);
 
         return retVec;
     }
@@ -167,11 +322,56 @@ public class SVGDiagram implements Serializable
             retVec = new ArrayList<>();
         }
 
-        root.pick(pickArea, new AffineTransform(), boundingBox, retVec);
+        getPickIndex().pick(pickArea, boundingBox, retVec);
 
         return retVec;
     }
 
+    private PickIndex getPickIndex()
+    {
+        PickIndex index = pickIndex;
+        if (index == null)
+        {
+            synchronized (this)
+            {
+                index = pickIndex;
+                if (index == null)
+                {
+                    index = new PickIndex(this);
+                    pickIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Called when the geometry, transform or style of an element may have
+     * changed
+     */
+    void elementChanged(SVGElement element)
+    {
+        geometryCount.incrementAndGet();
+        PickIndex index = pickIndex;
+        if (index != null)
+        {
+            index.elementChanged(element);
+        }
+    }
+
+    /**
+     * Called when an element is added to or removed from the document
+     */
+    void structureChanged()
+    {
+        geometryCount.incrementAndGet();
+        PickIndex index = pickIndex;
+        if (index != null)
+        {
+            index.invalidate();
+        }
+    }
+
     public SVGUniverse getUniverse()
     {
         return universe;
@@ -239,12 +439,79 @@ public class SVGDiagram implements Serializable
     {
         this.root = root;
         root.setDiagram(this);
+        structureChanged();
     }
 
     public boolean ignoringClipHeuristic() { return ignoreClipHeuristic; }
 
     public void setIgnoringClipHeuristic(boolean ignoreClipHeuristic) { this.ignoreClipHeuristic = ignoreClipHeuristic; }
 
+    /**
+     * @return the size below which elements are drawn as boxes
+     */
+    public float getDetailThreshold()
+    {
+        return detailThreshold;
+    }
+
+    /**
+     * Sets a size, in device pixels, below which elements and groups are
+     * drawn as a box filled with their color rather than in full.  Speeds up
+     * drawing documents with many small details when zoomed out.
+     *
+     * @param detailThreshold Size in pixels, or 0 to always draw elements in
+     * full.  Defaults to 0.
+     */
+    public void setDetailThreshold(float detailThreshold)
+    {
+        this.detailThreshold = Math.max(detailThreshold, 0);
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * @return the font size below which text is greeked
+     */
+    public float getGreekingThreshold()
+    {
+        return greekingThreshold;
+    }
+
+    /**
+     * Sets a font size, in device pixels, below which text is drawn as
+     * shaded boxes in place of its glyphs.
+     *
+     * @param greekingThreshold Font size in pixels, or 0 to always draw
+     * glyphs.  Defaults to 0.
+     */
+    public void setGreekingThreshold(float greekingThreshold)
+    {
+        this.greekingThreshold = Math.max(greekingThreshold, 0);
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * @return the distance paths may be moved by simplification
+     */
+    public float getSimplifyTolerance()
+    {
+        return simplifyTolerance;
+    }
+
+    /**
+     * Sets how far, in device pixels, path outlines may be moved when they
+     * are simplified for drawing.  Curves are flattened and vertices closer
+     * than this to the simplified outline are dropped.  Simplified paths are
+     * cached for each power of two of the drawing scale.
+     *
+     * @param simplifyTolerance Distance in pixels, or 0 to draw paths
+     * unchanged.  Defaults to 0.
+     */
+    public void setSimplifyTolerance(float simplifyTolerance)
+    {
+        this.simplifyTolerance = Math.max(simplifyTolerance, 0);
+        modificationCount.incrementAndGet();
+    }
+
     /**
      * Updates all attributes in this diagram associated with a time event.
      * Ie, all attributes with track information.
@@ -254,7 +521,16 @@ public class SVGDiagram implements Serializable
     public void updateTime(double curTime) throws SVGException
     {
         if (root == null) return;
-        root.updateTime(curTime);
+        if (root.updateTime(curTime))
+        {
+            modificationCount.incrementAndGet();
+            geometryCount.incrementAndGet();
+            PickIndex index = pickIndex;
+            if (index != null)
+            {
+                index.diagramChanged();
+            }
+        }
     }
 
     public Rectangle getDeviceViewport()
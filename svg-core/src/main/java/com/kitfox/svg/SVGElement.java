@@ -38,9 +38,10 @@ package com.kitfox.svg;
 import com.kitfox.svg.animation.AnimationElement;
 import com.kitfox.svg.animation.TrackBase;
 import com.kitfox.svg.animation.TrackManager;
-import com.kitfox.svg.pathcmd.BuildHistory;
+import com.kitfox.svg.pathcmd.PackedPath;
 import com.kitfox.svg.pathcmd.PathCommand;
 import com.kitfox.svg.pathcmd.PathParser;
+import com.kitfox.svg.xml.PropertyTable;
 import com.kitfox.svg.xml.StyleAttribute;
 import com.kitfox.svg.xml.StyleSheet;
 import com.kitfox.svg.xml.XMLParseUtil;
@@ -53,13 +54,11 @@ import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -80,13 +79,15 @@ abstract public class SVGElement implements Serializable
     protected String cssClass = null;
     /**
      * Styles defined for this element via the <b>style</b> attribute.
+     * @see #getInlineStyleTable()
      */
-    protected final HashMap<String, StyleAttribute> inlineStyles = new HashMap<>();
+    private final PropertyTable inlineStyles = new PropertyTable();
     /**
      * Presentation attributes set for this element. Ie, any attribute other
      * than the <b>style</b> attribute.
+     * @see #getPresentationAttributeTable()
      */
-    protected final HashMap<String, StyleAttribute> presAttribs = new HashMap<>();
+    private final PropertyTable presAttribs = new PropertyTable();
     /**
      * This element may override the URI we resolve against with an xml:base
      * attribute. If so, a copy is placed here. Otherwise, we defer to our
@@ -101,7 +102,23 @@ abstract public class SVGElement implements Serializable
      * Link to the universe we reside in
      */
     protected final TrackManager trackManager = new TrackManager();
-    boolean dirty = true;
+    /**
+     * Set when the styles this element inherits may have changed, and
+     * computedStyles must be discarded.
+     */
+    volatile boolean dirty = true;
+    /**
+     * Results of recursive style lookups, indexed by property.  Styles that
+     * could not be found are recorded as NO_STYLE.
+     */
+    private transient volatile ComputedStyles computedStyles;
+    private static final StyleAttribute NO_STYLE = new StyleAttribute();
+    /**
+     * Declarations of the style sheet rules that match this element.  Found
+     * when the element is built, and discarded when it is marked dirty.
+     */
+    private transient volatile PropertyTable sheetStyles;
+    private static final PropertyTable NO_SHEET_STYLES = new PropertyTable();
 
     /**
      * Creates a new instance of SVGElement
@@ -253,7 +270,7 @@ abstract public class SVGElement implements Serializable
         String style = attrs.getValue("style");
         if (style != null)
         {
-            HashMap<?, ?> map = XMLParseUtil.parseStyle(style, inlineStyles);
+            XMLParseUtil.parseStyle(style, inlineStyles);
         }
 
         String base = attrs.getValue("xml:base");
@@ -275,7 +292,7 @@ abstract public class SVGElement implements Serializable
             String name = attrs.getQName(i).intern();
             String value = attrs.getValue(i);
 
-            presAttribs.put(name, new StyleAttribute(name, value == null ? null : value.intern()));
+            presAttribs.put(new StyleAttribute(name, value == null ? null : value.intern()));
         }
     }
 
@@ -289,6 +306,7 @@ abstract public class SVGElement implements Serializable
             case AnimationElement.AT_XML:
                 presAttribs.remove(name);
         }
+        markDirty();
     }
 
     public void addAttribute(String name, int attribType, String value) throws SVGElementException
@@ -312,10 +330,12 @@ abstract public class SVGElement implements Serializable
         switch (attribType)
         {
             case AnimationElement.AT_CSS:
-                inlineStyles.put(name, new StyleAttribute(name, value));
+                inlineStyles.put(new StyleAttribute(name, value));
+                markDirty();
                 return;
             case AnimationElement.AT_XML:
-                presAttribs.put(name, new StyleAttribute(name, value));
+                presAttribs.put(new StyleAttribute(name, value));
+                markDirty();
                 return;
         }
 
@@ -337,6 +357,30 @@ abstract public class SVGElement implements Serializable
         throw new SVGElementException(this, "Invalid attribute type " + attribType);
     }
 
+    /**
+     * Subclasses that used to read the protected inlineStyles map should
+     * use this instead.  Changes made to the table directly do not mark
+     * computed styles as dirty; use addAttribute or setAttribute for that.
+     *
+     * @return the styles defined via the <b>style</b> attribute
+     */
+    protected PropertyTable getInlineStyleTable()
+    {
+        return inlineStyles;
+    }
+
+    /**
+     * Subclasses that used to read the protected presAttribs map should use
+     * this instead.  Changes made to the table directly do not mark computed
+     * styles as dirty; use addAttribute or setAttribute for that.
+     *
+     * @return the presentation attributes of this element
+     */
+    protected PropertyTable getPresentationAttributeTable()
+    {
+        return presAttribs;
+    }
+
     /**
      * @return a set of Strings that correspond to CSS attributes on this element
      */
@@ -366,10 +410,26 @@ abstract public class SVGElement implements Serializable
         child.parent = this;
         child.setDiagram(diagram);
 
+        //While a document is being parsed, SVGLoader invalidates the whole
+        // tree once it is complete instead
+        boolean loading = helper != null;
+        if (!loading)
+        {
+            childrenChanged(child);
+            if (diagram != null)
+            {
+                diagram.structureChanged();
+            }
+        }
+
         //Add info to track if we've scanned animation element
         if (child instanceof AnimationElement)
         {
             trackManager.addTrackElement((AnimationElement) child);
+            if (!loading)
+            {
+                markDirty();
+            }
         }
     }
 
@@ -390,6 +450,65 @@ abstract public class SVGElement implements Serializable
         }
 
         children.remove(child);
+        child.markDirty();
+        if (hasStructuralSelectors())
+        {
+            markDirty();
+        }
+        if (diagram != null)
+        {
+            diagram.structureChanged();
+        }
+    }
+
+    /**
+     * Invalidates styles after a child is added.  Rules such as :first-child
+     * or a + b may now match the siblings of the child differently, so when
+     * the sheet has them all children of this element are invalidated.
+     */
+    private void childrenChanged(SVGElement child)
+    {
+        if (hasStructuralSelectors())
+        {
+            markDirty();
+        }
+        else
+        {
+            child.markDirty();
+        }
+    }
+
+    private boolean hasStructuralSelectors()
+    {
+        SVGRoot root = getRoot();
+        StyleSheet ss = root == null ? null : root.getStyleSheet();
+        return ss != null && ss.hasStructuralSelectors();
+    }
+
+    /**
+     * Discards the computed styles of this element and all its descendants.
+     * Called whenever something they inherit from may have changed.
+     */
+    protected void markDirty()
+    {
+        clearComputedStyles();
+        //The pick index refits the whole subtree of a changed element, so
+        // the diagram is only told once
+        if (diagram != null)
+        {
+            diagram.modificationCount.incrementAndGet();
+            diagram.elementChanged(this);
+        }
+    }
+
+    private void clearComputedStyles()
+    {
+        dirty = true;
+        sheetStyles = null;
+        for (int i = 0; i < children.size(); ++i)
+        {
+            children.get(i).clearComputedStyles();
+        }
     }
 
     /**
@@ -447,6 +566,10 @@ abstract public class SVGElement implements Serializable
             xmlBase = sty.getURIValue();
         }
 
+        //Match style sheet rules now, rather than on each style lookup
+        sheetStyles = resolveSheetStyles();
+        dirty = true;
+
         //Build children
         for (int i = 0; i < children.size(); ++i)
         {
@@ -455,6 +578,33 @@ abstract public class SVGElement implements Serializable
         }
     }
 
+    /**
+     * @return the CSS class list of this element, or null if it has none
+     */
+    public String getCssClass()
+    {
+        return cssClass;
+    }
+
+    private PropertyTable getSheetStyles()
+    {
+        PropertyTable styles = sheetStyles;
+        if (styles == null)
+        {
+            styles = resolveSheetStyles();
+            sheetStyles = styles;
+        }
+        return styles;
+    }
+
+    private PropertyTable resolveSheetStyles()
+    {
+        SVGRoot root = getRoot();
+        StyleSheet ss = root == null ? null : root.getStyleSheet();
+        PropertyTable styles = ss == null ? null : ss.getStyles(this);
+        return styles == null ? NO_SHEET_STYLES : styles;
+    }
+
     public URI getXMLBase()
     {
         return xmlBase != null ? xmlBase
@@ -468,7 +618,8 @@ abstract public class SVGElement implements Serializable
     {
         return id;
     }
-    LinkedList<SVGElement> contexts = new LinkedList<>();
+    //Created when the first context is pushed
+    LinkedList<SVGElement> contexts;
 
     /**
      * Hack to allow nodes to temporarily change their parents. The Use tag will
@@ -477,17 +628,29 @@ abstract public class SVGElement implements Serializable
      */
     protected void pushParentContext(SVGElement context)
     {
+        if (contexts == null)
+        {
+            contexts = new LinkedList<>();
+        }
         contexts.addLast(context);
+        if (diagram != null)
+        {
+            diagram.parentContextDepth.incrementAndGet();
+        }
     }
 
     protected SVGElement popParentContext()
     {
+        if (diagram != null)
+        {
+            diagram.parentContextDepth.decrementAndGet();
+        }
         return (SVGElement) contexts.removeLast();
     }
 
     protected SVGElement getParentContext()
     {
-        return contexts.isEmpty() ? null : (SVGElement) contexts.getLast();
+        return contexts == null || contexts.isEmpty() ? null : (SVGElement) contexts.getLast();
     }
 
     public SVGRoot getRoot()
@@ -518,21 +681,21 @@ abstract public class SVGElement implements Serializable
         {
             case AnimationElement.AT_CSS:
             {
-                styAttr = (StyleAttribute) inlineStyles.get(name);
+                styAttr = inlineStyles.get(name);
                 break;
             }
             case AnimationElement.AT_XML:
             {
-                styAttr = (StyleAttribute) presAttribs.get(name);
+                styAttr = presAttribs.get(name);
                 break;
             }
             case AnimationElement.AT_AUTO:
             {
-                styAttr = (StyleAttribute) inlineStyles.get(name);
+                styAttr = inlineStyles.get(name);
 
                 if (styAttr == null)
                 {
-                    styAttr = (StyleAttribute) presAttribs.get(name);
+                    styAttr = presAttribs.get(name);
                 }
                 break;
             }
@@ -557,6 +720,7 @@ abstract public class SVGElement implements Serializable
         }
 
         styAttr.setStringValue(value);
+        markDirty();
     }
 
     public boolean getStyle(StyleAttribute attrib, boolean recursive) throws SVGException
@@ -580,13 +744,140 @@ abstract public class SVGElement implements Serializable
      */
     public boolean getStyle(StyleAttribute attrib, boolean recursive, boolean evalAnimation)
             throws SVGException
+    {
+        //Only full lookups of known properties outside of a use context are
+        // cached
+        int index = attrib.getPropertyIndex();
+        if (index == -1 || !recursive || !evalAnimation || diagram == null
+            || diagram.parentContextDepth.get() != 0)
+        {
+            return lookupStyle(attrib, recursive, evalAnimation);
+        }
+
+        ComputedStyles computed = computedStyles;
+        if (computed == null || dirty)
+        {
+            dirty = false;
+            computed = ComputedStyles.EMPTY;
+            computedStyles = computed;
+        }
+
+        StyleAttribute style = computed.get(index);
+        if (style == null)
+        {
+            String styName = attrib.getName();
+            boolean found = lookupStyle(attrib, true, true);
+            if (isStyleAnimated(styName))
+            {
+                return found;
+            }
+
+            if (found)
+            {
+                //Refer to the stored attribute the value came from if there
+                // is one, so its parsed values are shared
+                style = attrib.getSource();
+                if (style == null)
+                {
+                    style = new StyleAttribute(styName, attrib.getStringValue());
+                }
+            }
+            else
+            {
+                style = NO_STYLE;
+            }
+            computedStyles = computed.with(index, style);
+            return found;
+        }
+
+        if (style == NO_STYLE)
+        {
+            attrib.setStringValue("");
+            return false;
+        }
+        attrib.setValue(style);
+        return true;
+    }
+
+    /**
+     * Immutable table of computed styles, sorted by property index.  Adding a
+     * style creates a new table, so readers never need to lock.
+     */
+    private static final class ComputedStyles
+    {
+        static final ComputedStyles EMPTY = new ComputedStyles(new short[0], new StyleAttribute[0]);
+
+        final short[] indices;
+        final StyleAttribute[] styles;
+
+        ComputedStyles(short[] indices, StyleAttribute[] styles)
+        {
+            this.indices = indices;
+            this.styles = styles;
+        }
+
+        StyleAttribute get(int index)
+        {
+            int pos = Arrays.binarySearch(indices, (short)index);
+            return pos < 0 ? null : styles[pos];
+        }
+
+        ComputedStyles with(int index, StyleAttribute style)
+        {
+            int pos = Arrays.binarySearch(indices, (short)index);
+            if (pos >= 0)
+            {
+                StyleAttribute[] newStyles = styles.clone();
+                newStyles[pos] = style;
+                return new ComputedStyles(indices, newStyles);
+            }
+
+            pos = -pos - 1;
+            int size = indices.length;
+            short[] newIndices = new short[size + 1];
+            StyleAttribute[] newStyles = new StyleAttribute[size + 1];
+            System.arraycopy(indices, 0, newIndices, 0, pos);
+            System.arraycopy(styles, 0, newStyles, 0, pos);
+            newIndices[pos] = (short)index;
+            newStyles[pos] = style;
+            System.arraycopy(indices, pos, newIndices, pos + 1, size - pos);
+            System.arraycopy(styles, pos, newStyles, pos + 1, size - pos);
+            return new ComputedStyles(newIndices, newStyles);
+        }
+    }
+
+    /**
+     * @return true if this element or any of its ancestors has an animation
+     * track for the named style
+     */
+    private boolean isStyleAnimated(String styName)
+    {
+        for (SVGElement ele = this; ele != null; ele = ele.parent)
+        {
+            if (ele.trackManager.getTrack(styName, AnimationElement.AT_AUTO) != null)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean lookupStyle(StyleAttribute attrib, boolean recursive, boolean evalAnimation)
+            throws SVGException
     {
         String styName = attrib.getName();
 
         //Check for local inline styles
-        StyleAttribute styAttr = (StyleAttribute)inlineStyles.get(styName);
+        StyleAttribute styAttr = inlineStyles.get(attrib);
 
-        attrib.setStringValue(styAttr == null ? "" : styAttr.getStringValue());
+        if (styAttr == null)
+        {
+            attrib.setStringValue("");
+        }
+        else
+        {
+            attrib.setValue(styAttr);
+        }
 
         //Evalutate corresponding track, if one exists
         if (evalAnimation)
@@ -605,11 +896,27 @@ abstract public class SVGElement implements Serializable
             return true;
         }
 
+        //Check for style sheet rules, which take precedence over
+        // presentation attributes
+        StyleAttribute sheetAttr = getSheetStyles().get(attrib);
+        if (sheetAttr != null)
+        {
+            attrib.setValue(sheetAttr);
+            return true;
+        }
+
 
         //Check for presentation attribute
-        StyleAttribute presAttr = (StyleAttribute)presAttribs.get(styName);
+        StyleAttribute presAttr = presAttribs.get(attrib);
 
-        attrib.setStringValue(presAttr == null ? "" : presAttr.getStringValue());
+        if (presAttr == null)
+        {
+            attrib.setStringValue("");
+        }
+        else
+        {
+            attrib.setValue(presAttr);
+        }
 
         //Evalutate corresponding track, if one exists
         if (evalAnimation)
@@ -628,17 +935,6 @@ abstract public class SVGElement implements Serializable
             return true;
         }
 
-        //Check for style sheet
-        SVGRoot root = getRoot();
-        if (root != null)
-        {
-            StyleSheet ss = root.getStyleSheet();
-            if (ss != null)
-            {
-                return ss.getStyle(attrib, getTagName(), cssClass);
-            }
-        }
-
         //If we're recursive, check parents
         if (recursive)
         {
@@ -666,7 +962,7 @@ abstract public class SVGElement implements Serializable
     public StyleAttribute getStyleAbsolute(String styName)
     {
         //Check for local inline styles
-        return (StyleAttribute) inlineStyles.get(styName);
+        return inlineStyles.get(styName);
     }
 
     /**
@@ -681,10 +977,17 @@ abstract public class SVGElement implements Serializable
         String presName = attrib.getName();
 
         //Make sure we have a corresponding presentation attribute
-        StyleAttribute presAttr = (StyleAttribute) presAttribs.get(presName);
+        StyleAttribute presAttr = presAttribs.get(attrib);
 
         //Copy presentation value directly
-        attrib.setStringValue(presAttr == null ? "" : presAttr.getStringValue());
+        if (presAttr == null)
+        {
+            attrib.setStringValue("");
+        }
+        else
+        {
+            attrib.setValue(presAttr);
+        }
 
         //Evalutate corresponding track, if one exists
         TrackBase track = trackManager.getTrack(presName, AnimationElement.AT_XML);
@@ -712,122 +1015,195 @@ abstract public class SVGElement implements Serializable
     public StyleAttribute getPresAbsolute(String styName)
     {
         //Check for local inline styles
-        return (StyleAttribute) presAttribs.get(styName);
+        return presAttribs.get(styName);
     }
 
-    private static final Pattern TRANSFORM_PATTERN = Pattern.compile("\\w+\\([^)]*\\)");
+    //Transforms already parsed, keyed by their source string.  Emptied when
+    // it grows past TRANSFORM_CACHE_SIZE entries.
+    private static final int TRANSFORM_CACHE_SIZE = 4096;
+    private static final ConcurrentHashMap<String, AffineTransform> transformCache = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AffineTransform> singleTransformCache = new ConcurrentHashMap<>();
+
     static protected AffineTransform parseTransform(String val) throws SVGException
     {
-        final Matcher matchExpression = TRANSFORM_PATTERN.matcher("");
+        return new AffineTransform(lookupTransform(val, transformCache, false));
+    }
 
-        AffineTransform retXform = new AffineTransform();
+    static public AffineTransform parseSingleTransform(String val) throws SVGException
+    {
+        return new AffineTransform(lookupTransform(val, singleTransformCache, true));
+    }
 
-        matchExpression.reset(val);
-        while (matchExpression.find())
+    private static AffineTransform lookupTransform(String val, ConcurrentHashMap<String, AffineTransform> cache, boolean single) throws SVGException
+    {
+        AffineTransform xform = cache.get(val);
+        if (xform == null)
         {
-            retXform.concatenate(parseSingleTransform(matchExpression.group()));
+            xform = new AffineTransform();
+            scanTransform(val, xform, single);
+            if (cache.size() >= TRANSFORM_CACHE_SIZE)
+            {
+                cache.clear();
+            }
+            cache.put(val, xform);
         }
-
-        return retXform;
+        return xform;
     }
 
-    private static final Pattern WORD_PATTERN = Pattern.compile("([a-zA-Z]+|-?\\d+(\\.\\d+)?([eE]-?\\d+)?|-?\\.\\d+([eE]-?\\d+)?)");
-    static public AffineTransform parseSingleTransform(String val) throws SVGException
+    /**
+     * Parses a transform list in a single pass, applying each transform
+     * function to xform as it is read.
+     *
+     * @param val - Transform list, eg "translate(10 20) rotate(45)"
+     * @param xform - Transform to concatenate the parsed functions onto
+     * @param single - If true, only the first function is read and the
+     * parentheses around its arguments are optional
+     */
+    private static void scanTransform(String val, AffineTransform xform, boolean single) throws SVGException
     {
-        final Matcher matchWord = WORD_PATTERN.matcher("");
+        double[] terms = new double[6];
+        int len = val.length();
+        int pos = 0;
+        while (true)
+        {
+            //Function name
+            while (pos < len && !isAsciiLetter(val.charAt(pos)))
+            {
+                pos++;
+            }
+            if (pos == len)
+            {
+                return;
+            }
+            int nameStart = pos;
+            while (pos < len && isAsciiLetter(val.charAt(pos)))
+            {
+                pos++;
+            }
+            int nameLen = pos - nameStart;
 
-        AffineTransform retXform = new AffineTransform();
+            while (pos < len && Character.isWhitespace(val.charAt(pos)))
+            {
+                pos++;
+            }
+            if (pos < len && val.charAt(pos) == '(')
+            {
+                pos++;
+            }
+            else if (!single)
+            {
+                //Not a function call
+                continue;
+            }
 
-        matchWord.reset(val);
-        if (!matchWord.find())
-        {
-            //Return identity transformation if no data present (eg, empty string)
-            return retXform;
-        }
+            //Arguments
+            int numTerms = 0;
+            while (pos < len && val.charAt(pos) != ')')
+            {
+                int end = XMLParseUtil.scanNumberEnd(val, pos);
+                if (end == -1)
+                {
+                    pos++;
+                    continue;
+                }
+                if (numTerms < terms.length)
+                {
+                    terms[numTerms] = XMLParseUtil.parseDouble(val, pos, end);
+                }
+                numTerms++;
+                pos = end;
+            }
+            if (pos == len && !single)
+            {
+                //Unterminated function call
+                return;
+            }
+            pos++;
 
-        String function = matchWord.group().toLowerCase();
+            applyTransform(val, nameStart, nameLen, terms, numTerms, xform);
+            if (single)
+            {
+                return;
+            }
+        }
+    }
 
-        LinkedList<String> termList = new LinkedList<>();
-        while (matchWord.find())
+    private static void applyTransform(String val, int nameStart, int nameLen, double[] terms, int numTerms, AffineTransform xform) throws SVGException
+    {
+        if (isFunction(val, nameStart, nameLen, "matrix"))
         {
-            termList.add(matchWord.group());
+            checkTerms(numTerms, 6, "matrix");
+            xform.concatenate(new AffineTransform(terms[0], terms[1], terms[2], terms[3], terms[4], terms[5]));
         }
-
-
-        double[] terms = new double[termList.size()];
-        Iterator<String> it = termList.iterator();
-        int count = 0;
-        while (it.hasNext())
+        else if (isFunction(val, nameStart, nameLen, "translate"))
         {
-            terms[count++] = XMLParseUtil.parseDouble(it.next());
+            checkTerms(numTerms, 1, "translate");
+            xform.translate(terms[0], numTerms == 1 ? 0 : terms[1]);
         }
-
-        //Calculate transformation
-        switch (function) {
-            case "matrix":
-                retXform.setTransform(terms[0], terms[1], terms[2], terms[3], terms[4], terms[5]);
-                break;
-            case "translate":
-                if (terms.length == 1)
-                {
-                    retXform.setToTranslation(terms[0], 0);
-                } else
-                {
-                    retXform.setToTranslation(terms[0], terms[1]);
-                }   break;
-            case "scale":
-                if (terms.length > 1)
-                {
-                    retXform.setToScale(terms[0], terms[1]);
-                } else
-                {
-                    retXform.setToScale(terms[0], terms[0]);
-                }   break;
-            case "rotate":
-                if (terms.length > 2)
-                {
-                    retXform.setToRotation(Math.toRadians(terms[0]), terms[1], terms[2]);
-                } else
-                {
-                    retXform.setToRotation(Math.toRadians(terms[0]));
-                }   break;
-            case "skewx":
-                retXform.setToShear(Math.toRadians(terms[0]), 0.0);
-                break;
-            case "skewy":
-                retXform.setToShear(0.0, Math.toRadians(terms[0]));
-                break;
-            default:
-                throw new SVGException("Unknown transform type");
+        else if (isFunction(val, nameStart, nameLen, "scale"))
+        {
+            checkTerms(numTerms, 1, "scale");
+            xform.scale(terms[0], numTerms == 1 ? terms[0] : terms[1]);
+        }
+        else if (isFunction(val, nameStart, nameLen, "rotate"))
+        {
+            checkTerms(numTerms, 1, "rotate");
+            if (numTerms > 2)
+            {
+                xform.rotate(Math.toRadians(terms[0]), terms[1], terms[2]);
+            }
+            else
+            {
+                xform.rotate(Math.toRadians(terms[0]));
+            }
+        }
+        else if (isFunction(val, nameStart, nameLen, "skewx"))
+        {
+            checkTerms(numTerms, 1, "skewX");
+            xform.shear(Math.toRadians(terms[0]), 0.0);
+        }
+        else if (isFunction(val, nameStart, nameLen, "skewy"))
+        {
+            checkTerms(numTerms, 1, "skewY");
+            xform.shear(0.0, Math.toRadians(terms[0]));
+        }
+        else
+        {
+            throw new SVGException("Unknown transform type");
         }
-
-        return retXform;
     }
 
-    static protected PathCommand[] parsePathList(String list)
+    private static boolean isAsciiLetter(char ch)
     {
-        return new PathParser(list).parsePathCommand();
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
     }
 
-    static protected GeneralPath buildPath(String text, int windingRule)
+    private static boolean isFunction(String val, int nameStart, int nameLen, String function)
     {
-        PathCommand[] commands = parsePathList(text);
+        return nameLen == function.length() && val.regionMatches(true, nameStart, function, 0, nameLen);
+    }
 
-        int numKnots = 2;
-        for (PathCommand command : commands) {
-            numKnots += command.getNumKnotsAdded();
+    private static void checkTerms(int numTerms, int required, String function) throws SVGException
+    {
+        if (numTerms < required)
+        {
+            throw new SVGException("Too few arguments for transform " + function);
         }
+    }
 
+    static protected PathCommand[] parsePathList(String list)
+    {
+        return new PathParser(list).parsePathCommand();
+    }
 
-        GeneralPath path = new GeneralPath(windingRule, numKnots);
-
-        BuildHistory hist = new BuildHistory();
-
-        for (PathCommand cmd : commands) {
-            cmd.appendPath(path, hist);
-        }
+    static protected PackedPath parsePackedPath(String list)
+    {
+        return PackedPath.forPathData(list);
+    }
 
-        return path;
+    static protected GeneralPath buildPath(String text, int windingRule)
+    {
+        return parsePackedPath(text).buildPath(windingRule);
     }
 
     /**
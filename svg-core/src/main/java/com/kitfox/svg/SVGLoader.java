@@ -251,6 +251,8 @@ public class SVGLoader extends DefaultHandler {
                 parent.loaderAddChild(helper, svgEle);
             } else {
                 diagram.setRoot((SVGRoot) svgEle);
+                //Discard any styles computed before the tree was complete
+                svgEle.markDirty();
             }
 
         } catch (SVGElementException | SVGParseException e) {
@@ -86,6 +86,8 @@ public class SVGRoot extends Group
     final Rectangle2D.Float clipRect = new Rectangle2D.Float();
 
     private StyleSheet styleSheet;
+    //Rules of every style element in the document, gathered on first use
+    private transient StyleSheet documentStyleSheet;
     
     /** Creates a new instance of SVGRoot */
     public SVGRoot()
@@ -101,6 +103,9 @@ public class SVGRoot extends Group
     @Override
     public void build() throws SVGException
     {
+        //Style elements may have changed since the sheet was gathered
+        documentStyleSheet = null;
+
         super.build();
         
         StyleAttribute sty = new StyleAttribute();
@@ -253,18 +258,38 @@ public class SVGRoot extends Group
     @Override
     protected void doRender(Graphics2D g) throws SVGException
     {
-        prepareViewport();
-        
-        Rectangle targetViewport = g.getClipBounds();
-//
-//        if (targetViewport == null)
-//        {
-//            Dimension size = Toolkit.getDefaultToolkit().getScreenSize();
-//            targetViewport = new Rectangle(0, 0, size.width, size.height);
-//        }
-//        clipRect.setRect(targetViewport);
+        layoutViewport();
 
+        AffineTransform cachedXform = g.getTransform();
+        g.transform(viewXform);
+        
+        super.doRender(g);
         
+        g.setTransform(cachedXform);
+    }
+
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        layoutViewport();
+
+        AffineTransform cachedXform = builder.getTransform();
+        builder.transform(viewXform);
+
+        super.doCompile(builder);
+
+        builder.setTransform(cachedXform);
+    }
+
+    /**
+     * Fits the view box to the device viewport, updating clipRect and
+     * viewXform
+     */
+    private void layoutViewport()
+    {
+        prepareViewport();
+
+        Rectangle targetViewport;
         Rectangle deviceViewport = diagram.getDeviceViewport();
         if (width != null && height != null)
         {
@@ -299,13 +324,6 @@ public class SVGRoot extends Group
         clipRect.setRect(targetViewport);
 
         viewXform.setTransform(calcViewportTransform(targetViewport));
-        
-        AffineTransform cachedXform = g.getTransform();
-        g.transform(viewXform);
-        
-        super.doRender(g);
-        
-        g.setTransform(cachedXform);
     }
 
     public AffineTransform calcViewportTransform(Rectangle targetViewport)
@@ -371,6 +389,13 @@ public class SVGRoot extends Group
         Rectangle2D bbox = super.getBoundingBox();
         return viewXform.createTransformedShape(bbox).getBounds2D();
     }
+
+    @Override
+    Rectangle2D computeRenderBounds() throws SVGException
+    {
+        //View transform is only known once the viewport is laid out
+        return null;
+    }
     
     public float getDeviceWidth()
     {
@@ -462,27 +487,45 @@ public class SVGRoot extends Group
     }
 
     /**
-     * @return the styleSheet
+     * @return the styleSheet set for this document, or if none has been set,
+     * the rules of all style elements in the document combined in document
+     * order.  Null if there are no rules.
      */
     public StyleSheet getStyleSheet()
     {
-        if (styleSheet == null)
+        if (styleSheet != null)
+        {
+            return styleSheet;
+        }
+
+        StyleSheet sheet = documentStyleSheet;
+        if (sheet == null)
         {
-            for (int i = 0; i < getNumChildren(); ++i)
+            sheet = new StyleSheet();
+            addStyleSheets(this, sheet);
+            documentStyleSheet = sheet;
+        }
+        return sheet.isEmpty() ? null : sheet;
+    }
+
+    private static void addStyleSheets(SVGElement ele, StyleSheet sheet)
+    {
+        for (int i = 0; i < ele.getNumChildren(); ++i)
+        {
+            SVGElement child = ele.getChild(i);
+            if (child instanceof Style)
             {
-                SVGElement ele = getChild(i);
-                if (ele instanceof Style)
+                StyleSheet childSheet = ((Style)child).getStyleSheet();
+                if (childSheet != null)
                 {
-                    return ((Style)ele).getStyleSheet();
-                }
-                else if (ele instanceof Defs)
-                {
-                    return ((Defs)ele).getStyleSheet();
+                    sheet.addStyleSheet(childSheet);
                 }
             }
+            else
+            {
+                addStyleSheets(child, sheet);
+            }
         }
-        
-        return styleSheet;
     }
 
     /**
@@ -37,6 +37,7 @@ package com.kitfox.svg;
 
 import com.kitfox.svg.app.beans.SVGIcon;
 import com.kitfox.svg.util.Base64InputStream;
+import com.kitfox.svg.xml.StyleAttribute;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeListener;
@@ -56,7 +57,21 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
@@ -75,6 +90,14 @@ import org.xml.sax.XMLReader;
  * to reference one another. The SVG universe provides a container for all these
  * files and the means for them to relate to each other.
  *
+ * <p>A universe may be shared between threads. If several threads ask for the
+ * same document at once, only one of them parses it while the others wait for
+ * the result. Diagrams only become visible to other threads once they have been
+ * completely built.</p>
+ *
+ * <p>By default documents stay loaded until they are removed.  Setting a
+ * {@link DiagramEvictionPolicy} limits how many diagrams are kept.</p>
+ *
  * @author Mark McKay
  * @author <a href="mailto:mark@kitfox.com">Mark McKay</a>
  */
@@ -88,16 +111,54 @@ public class SVGUniverse implements Serializable
      * documents loaded from URLs will reflect their URLs and URIs for documents
      * initiated from streams will have the scheme <i>svgSalamander</i>.
      */
-    final HashMap<URI, SVGDiagram> loadedDocs = new HashMap<URI, SVGDiagram>();
-    final HashMap<String, Font> loadedFonts = new HashMap<String, Font>();
-    final HashMap<URL, SoftReference<BufferedImage>> loadedImages = new HashMap<URL, SoftReference<BufferedImage>>();
+    final ConcurrentHashMap<URI, SVGDiagram> loadedDocs = new ConcurrentHashMap<URI, SVGDiagram>();
+    final ConcurrentHashMap<String, Font> loadedFonts = new ConcurrentHashMap<String, Font>();
+    final ConcurrentHashMap<URL, SoftReference<BufferedImage>> loadedImages = new ConcurrentHashMap<URL, SoftReference<BufferedImage>>();
+    /**
+     * Documents which are currently being parsed, keyed by their URI.  Only
+     * the thread performing the load may see the partially built diagram.
+     */
+    transient private ConcurrentHashMap<URI, PendingLoad> pendingLoads = new ConcurrentHashMap<URI, PendingLoad>();
+    /**
+     * Load each thread is currently blocked on.  Used to detect documents that
+     * reference each other while being loaded on different threads.
+     */
+    transient private ConcurrentHashMap<Thread, PendingLoad> waitingLoads = new ConcurrentHashMap<Thread, PendingLoad>();
+    /**
+     * Usage of each loaded document, used to pick documents to evict.
+     */
+    final ConcurrentHashMap<URI, DiagramEvictionPolicy.Usage> docUsage = new ConcurrentHashMap<URI, DiagramEvictionPolicy.Usage>();
+    /**
+     * URIs of the other documents each loaded document links to with href
+     * attributes.  Documents that are linked to are never evicted.
+     */
+    final ConcurrentHashMap<URI, Set<URI>> docReferences = new ConcurrentHashMap<URI, Set<URI>>();
+    private DiagramEvictionPolicy evictionPolicy = null;
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    /**
+     * Logical clock stamped on each diagram access for the eviction policy.
+     */
+    private final AtomicLong accessClock = new AtomicLong();
+    /**
+     * Held while elements are drawn from a display list, since drawing
+     * changes state held by elements.  Unlike the universe's monitor, it is
+     * never taken by threads loading documents.
+     */
+    final ReentrantLock renderLock = new ReentrantLock();
+    /**
+     * Held while documents are evicted.  Kept apart from the universe's
+     * monitor, which callers may hold.
+     */
+    private final ReentrantLock trimLock = new ReentrantLock();
     public static final String INPUTSTREAM_SCHEME = "svgSalamander";
     /**
      * Current time in this universe. Used for resolving attributes that are
      * influenced by track information. Time is in milliseconds. Time 0
      * corresponds to the time of 0 in each member diagram.
      */
-    protected double curTime = 0.0;
+    protected volatile double curTime = 0.0;
     private boolean verbose = false;
 
     //If true, <imageSVG> elements will only load image data that is included using inline data: uris
@@ -126,6 +187,8 @@ public class SVGUniverse implements Serializable
     public void clear()
     {
         loadedDocs.clear();
+        docUsage.clear();
+        docReferences.clear();
         loadedFonts.clear();
         loadedImages.clear();
     }
@@ -162,7 +225,12 @@ public class SVGUniverse implements Serializable
      */
     void registerFont(Font font)
     {
-        loadedFonts.put(font.getFontFace().getFontFamily(), font);
+        String family = font.getFontFace().getFontFamily();
+        if (family == null)
+        {
+            return;
+        }
+        loadedFonts.put(family, font);
     }
 
     public Font getDefaultFont()
@@ -175,6 +243,10 @@ public class SVGUniverse implements Serializable
 
     public Font getFont(String fontName)
     {
+        if (fontName == null)
+        {
+            return null;
+        }
         return (Font) loadedFonts.get(fontName);
     }
 
@@ -200,21 +272,19 @@ public class SVGUniverse implements Serializable
                     
                     BufferedImage img = ImageIO.read(bais);
 
+                    SoftReference<BufferedImage> ref = new SoftReference<BufferedImage>(img);
                     URL url;
                     int urlIdx = 0;
                     while (true)
                     {
                         url = new URL("inlineImage", "localhost", "img" + urlIdx);
-                        if (!loadedImages.containsKey(url))
+                        if (loadedImages.putIfAbsent(url, ref) == null)
                         {
                             break;
                         }
                         urlIdx++;
                     }
 
-                    SoftReference<BufferedImage> ref = new SoftReference<BufferedImage>(img);
-                    loadedImages.put(url, ref);
-
                     return url;
                 } catch (IOException ex)
                 {
@@ -265,7 +335,7 @@ public class SVGUniverse implements Serializable
                 BufferedImage img = ImageIO.read(imageURL);
                 ref = new SoftReference<BufferedImage>(img);
             }
-            loadedImages.put(imageURL, ref);
+            loadedImages.putIfAbsent(imageURL, ref);
         } catch (Exception e)
         {
             Logger.getLogger(SVGConst.SVG_LOGGER).log(Level.WARNING,
@@ -365,7 +435,8 @@ public class SVGUniverse implements Serializable
             //Strip fragment from URI
             URI xmlBase = new URI(path.getScheme(), path.getSchemeSpecificPart(), null);
 
-            SVGDiagram dia = (SVGDiagram) loadedDocs.get(xmlBase);
+            SVGDiagram dia = lookupDiagram(xmlBase, loadIfAbsent);
+            recordLookup(xmlBase, dia);
             if (dia == null && loadIfAbsent)
             {
 //System.err.println("SVGUnivserse: " + xmlBase.toString());
@@ -373,11 +444,11 @@ public class SVGUniverse implements Serializable
                 URL url = xmlBase.toURL();
 
                 loadSVG(url, false);
-                dia = (SVGDiagram) loadedDocs.get(xmlBase);
-                if (dia == null)
-                {
-                    return null;
-                }
+                dia = lookupDiagram(xmlBase, true);
+            }
+            if (dia == null)
+            {
+                return null;
             }
 
             String fragment = path.getFragment();
@@ -406,7 +477,8 @@ public class SVGUniverse implements Serializable
             return null;
         }
 
-        SVGDiagram dia = (SVGDiagram) loadedDocs.get(xmlBase);
+        SVGDiagram dia = lookupDiagram(xmlBase, loadIfAbsent);
+        recordLookup(xmlBase, dia);
         if (dia != null || !loadIfAbsent)
         {
             return dia;
@@ -429,7 +501,7 @@ public class SVGUniverse implements Serializable
 
 
             loadSVG(url, false);
-            dia = (SVGDiagram) loadedDocs.get(xmlBase);
+            dia = lookupDiagram(xmlBase, true);
             return dia;
         } catch (Exception e)
         {
@@ -487,28 +559,77 @@ public class SVGUniverse implements Serializable
         try
         {
             URI uri = new URI(docRoot.toString());
-            if (loadedDocs.containsKey(uri) && !forceLoad)
-            {
-                return uri;
-            }
-
-            InputStream is = docRoot.openStream();
-            URI result = loadSVG(uri, new InputSource(createDocumentInputStream(is)));
-            is.close();
-            return result;
+            return loadDocument(uri, forceLoad, docRoot, null);
         } catch (URISyntaxException ex)
         {
             Logger.getLogger(SVGConst.SVG_LOGGER).log(Level.WARNING,
                 "Could not parse", ex);
-        } catch (IOException e)
-        {
-            Logger.getLogger(SVGConst.SVG_LOGGER).log(Level.WARNING,
-                "Could not parse", e);
         }
 
         return null;
     }
 
+    public CompletableFuture<URI> loadSVGAsync(URL docRoot, Executor executor)
+    {
+        return loadSVGAsync(docRoot, false, executor);
+    }
+
+    /**
+     * Loads an SVG file on the given executor.  Works like
+     * {@link #loadSVG(URL, boolean)}, except that the caller is not blocked
+     * while the document is read and parsed.
+     *
+     * @param docRoot - URL to the location where this SVG file can be found.
+     * @param forceLoad - if true, ignore cached diagram and reload
+     * @param executor - Executor to perform the load on
+     * @return - Future of the URI that refers to the loaded document.  If the
+     * document cannot be loaded, the future completes exceptionally with an
+     * SVGException describing the failure.
+     */
+    public CompletableFuture<URI> loadSVGAsync(final URL docRoot, final boolean forceLoad, Executor executor)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            try
+            {
+                URI uri = new URI(docRoot.toString());
+                return readDocument(uri, forceLoad, docRoot, null);
+            } catch (URISyntaxException ex)
+            {
+                throw new CompletionException(new SVGException("Could not parse " + docRoot, ex));
+            } catch (SVGException ex)
+            {
+                throw new CompletionException(ex);
+            }
+        }, executor);
+    }
+
+    /**
+     * Loads a batch of SVG files in parallel.  Each document is loaded on the
+     * executor by {@link #loadSVGAsync(URL, Executor)}.  A document which
+     * fails to load does not stop the others from loading.
+     *
+     * @param docRoots - URLs of the SVG files to load
+     * @param executor - Executor to perform the loads on.  A thread pool or an
+     * executor starting a new (virtual) thread per task both work.
+     * @return - Future that completes once every document has either loaded
+     * or failed.  It maps each URL to the already completed future of its
+     * load, which can be queried for the document URI or the failure.
+     */
+    public CompletableFuture<Map<URL, CompletableFuture<URI>>> loadAll(Collection<URL> docRoots, Executor executor)
+    {
+        final Map<URL, CompletableFuture<URI>> loads = new LinkedHashMap<URL, CompletableFuture<URI>>();
+        for (URL docRoot : docRoots)
+        {
+            if (!loads.containsKey(docRoot))
+            {
+                loads.put(docRoot, loadSVGAsync(docRoot, executor));
+            }
+        }
+
+        return CompletableFuture.allOf(loads.values().toArray(new CompletableFuture<?>[loads.size()]))
+            .handle((ignored, ex) -> loads);
+    }
+
     public URI loadSVG(InputStream is, String name) throws IOException
     {
         return loadSVG(is, name, false);
@@ -526,7 +647,7 @@ public class SVGUniverse implements Serializable
             return uri;
         }
 
-        return loadSVG(uri, new InputSource(createDocumentInputStream(is)));
+        return loadDocument(uri, forceLoad, null, new InputSource(createDocumentInputStream(is)));
     }
 
     public URI loadSVG(Reader reader, String name)
@@ -574,7 +695,7 @@ public class SVGUniverse implements Serializable
             return uri;
         }
 
-        return loadSVG(uri, new InputSource(reader));
+        return loadDocument(uri, forceLoad, null, new InputSource(reader));
     }
 
     /**
@@ -622,17 +743,173 @@ public class SVGUniverse implements Serializable
     }
 
     protected URI loadSVG(URI xmlBase, InputSource is)
+    {
+        return loadDocument(xmlBase, true, null, is);
+    }
+
+    /**
+     * Returns the diagram loaded at the given base URI.  The thread that is
+     * currently loading a document sees its partially built diagram so that
+     * the document can refer to elements within itself.  Other threads only
+     * ever see completely built diagrams.
+     *
+     * @param xmlBase - URI of the document, without fragment
+     * @param waitForLoad - if true and the document is being loaded by another
+     * thread, block until that load has finished
+     * @return The diagram, or null if it is not (yet) loaded
+     */
+    private SVGDiagram lookupDiagram(URI xmlBase, boolean waitForLoad)
+    {
+        PendingLoad load = pendingLoads.get(xmlBase);
+        if (load != null && load.owner == Thread.currentThread())
+        {
+            return load.diagram;
+        }
+
+        SVGDiagram dia = loadedDocs.get(xmlBase);
+        if (dia != null || load == null || !waitForLoad)
+        {
+            return dia;
+        }
+
+        return awaitLoad(xmlBase, load);
+    }
+
+    /**
+     * Blocks until a load running on another thread completes.
+     *
+     * @return The loaded diagram, or null if the load failed, was interrupted
+     * or would deadlock
+     */
+    private SVGDiagram awaitLoad(URI xmlBase, PendingLoad load)
+    {
+        Thread self = Thread.currentThread();
+        waitingLoads.put(self, load);
+        try
+        {
+            //Follow the chain of threads we would be waiting on.  If it leads
+            // back to us, the documents reference each other and are being
+            // loaded on different threads.
+            PendingLoad blocker = load;
+            for (int i = 0; blocker != null && i <= waitingLoads.size(); ++i)
+            {
+                if (blocker.owner == self)
+                {
+                    Logger.getLogger(SVGConst.SVG_LOGGER).log(Level.WARNING,
+                        "Circular reference while loading " + xmlBase);
+                    return null;
+                }
+                blocker = waitingLoads.get(blocker.owner);
+            }
+
+            load.done.await();
+        } catch (InterruptedException e)
+        {
+            self.interrupt();
+            return null;
+        } finally
+        {
+            waitingLoads.remove(self);
+        }
+
+        return loadedDocs.get(xmlBase);
+    }
+
+    /**
+     * Loads a document, logging any failure.
+     *
+     * @return The URI of the loaded document, or null if it could not be loaded
+     * @see #readDocument(URI, boolean, URL, InputSource)
+     */
+    private URI loadDocument(URI xmlBase, boolean forceLoad, URL docRoot, InputSource is)
+    {
+        try
+        {
+            return readDocument(xmlBase, forceLoad, docRoot, is);
+        } catch (SVGException e)
+        {
+            Logger.getLogger(SVGConst.SVG_LOGGER).log(Level.WARNING,
+                e.getMessage(), e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Loads a document unless it is already present.  If another thread is
+     * already loading the same document, waits for it to finish instead of
+     * parsing the document a second time.
+     *
+     * @param xmlBase - URI of the document
+     * @param forceLoad - if true, ignore cached diagram and reload
+     * @param docRoot - URL to read the document from if is is null
+     * @param is - Source of the document, or null to read from docRoot
+     * @return The URI of the loaded document
+     * @throws SVGException if the document could not be loaded
+     */
+    private URI readDocument(URI xmlBase, boolean forceLoad, URL docRoot, InputSource is) throws SVGException
     {
         xmlBase = cleanUri(xmlBase);
-        
-        
+        if (!forceLoad && loadedDocs.containsKey(xmlBase))
+        {
+            return xmlBase;
+        }
+
+        PendingLoad load = new PendingLoad(Thread.currentThread());
+        PendingLoad inFlight = pendingLoads.putIfAbsent(xmlBase, load);
+        if (inFlight != null)
+        {
+            if (inFlight.owner == load.owner)
+            {
+                //Document refers to itself while being loaded
+                return xmlBase;
+            }
+            if (awaitLoad(xmlBase, inFlight) == null)
+            {
+                throw new SVGException("Could not load SVG " + xmlBase);
+            }
+            return xmlBase;
+        }
+
+        try
+        {
+            if (!forceLoad && loadedDocs.containsKey(xmlBase))
+            {
+                //Finished by another thread before we claimed it
+                return xmlBase;
+            }
+
+            if (is != null)
+            {
+                return parseDocument(xmlBase, is, load);
+            }
+
+            InputStream in = docRoot.openStream();
+            try
+            {
+                return parseDocument(xmlBase, new InputSource(createDocumentInputStream(in)), load);
+            } finally
+            {
+                in.close();
+            }
+        } catch (IOException e)
+        {
+            throw new SVGException("Could not parse " + xmlBase, e);
+        } finally
+        {
+            pendingLoads.remove(xmlBase, load);
+            load.done.countDown();
+        }
+    }
+
+    private URI parseDocument(URI xmlBase, InputSource is, PendingLoad load) throws SVGException
+    {
         // Use an instance of ourselves as the SAX event handler
         SVGLoader handler = new SVGLoader(xmlBase, this, verbose);
 
-        //Place this docment in the universe before it is completely loaded
-        // so that the load process can refer to references within it's current
-        // document
-        loadedDocs.put(xmlBase, handler.getLoadedDiagram());
+        //Make this docment visible to the loading thread before it is
+        // completely loaded so that the load process can refer to references
+        // within it's current document
+        load.diagram = handler.getLoadedDiagram();
 
         try
         {
@@ -651,21 +928,20 @@ public class SVGUniverse implements Serializable
             reader.parse(is);
 
             handler.getLoadedDiagram().updateTime(curTime);
+            loadedDocs.put(xmlBase, handler.getLoadedDiagram());
+            documentLoaded(xmlBase, handler.getLoadedDiagram());
             return xmlBase;
         } catch (SAXParseException sex)
         {
-            Logger.getLogger(SVGConst.SVG_LOGGER).log(Level.WARNING,
-                "Error processing " + xmlBase, sex);
-
-            loadedDocs.remove(xmlBase);
-            return null;
+            removeDocument(xmlBase);
+            throw new SVGException("Error processing " + xmlBase, sex);
         } catch (Throwable e)
         {
-            Logger.getLogger(SVGConst.SVG_LOGGER).log(Level.WARNING,
-                "Could not load SVG " + xmlBase, e);
+            //Keep whatever could be built
+            loadedDocs.put(xmlBase, handler.getLoadedDiagram());
+            documentLoaded(xmlBase, handler.getLoadedDiagram());
+            throw new SVGException("Could not load SVG " + xmlBase, e);
         }
-
-        return null;
     }
 
     /**
@@ -685,6 +961,224 @@ public class SVGUniverse implements Serializable
     {
         uri = cleanUri(uri);
         loadedDocs.remove(uri);
+        docUsage.remove(uri);
+        docReferences.remove(uri);
+    }
+
+    /**
+     * @return the policy limiting the number of loaded diagrams, or null if
+     * documents stay loaded until removed.
+     */
+    public DiagramEvictionPolicy getEvictionPolicy()
+    {
+        return evictionPolicy;
+    }
+
+    /**
+     * Limits the loaded diagrams according to the given policy.  Diagrams
+     * exceeding the new limits are evicted immediately.
+     *
+     * @param evictionPolicy - Policy to apply, or null to keep all documents
+     */
+    public void setEvictionPolicy(DiagramEvictionPolicy evictionPolicy)
+    {
+        this.evictionPolicy = evictionPolicy;
+        if (evictionPolicy != null)
+        {
+            //Sizes are only estimated while a policy is set
+            for (DiagramEvictionPolicy.Usage usage : docUsage.values())
+            {
+                SVGDiagram dia = loadedDocs.get(usage.getURI());
+                if (dia != null)
+                {
+                    docUsage.replace(usage.getURI(), usage, usage.resize(evictionPolicy.estimateSize(dia)));
+                }
+            }
+        }
+        trimDocuments(null);
+    }
+
+    /**
+     * @return number of lookups of a diagram which found it already loaded
+     */
+    public long getCacheHits()
+    {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return number of lookups of a diagram which did not find it loaded
+     */
+    public long getCacheMisses()
+    {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * @return number of diagrams discarded by the eviction policy
+     */
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    private void recordLookup(URI xmlBase, SVGDiagram dia)
+    {
+        if (dia == null)
+        {
+            cacheMisses.increment();
+            return;
+        }
+
+        cacheHits.increment();
+        DiagramEvictionPolicy.Usage usage = docUsage.get(xmlBase);
+        if (usage != null)
+        {
+            usage.touch(accessClock.incrementAndGet());
+        }
+        addInFlightReference(xmlBase);
+    }
+
+    /**
+     * Records that the documents this thread is currently loading refer to
+     * the given document, so that it is not evicted before they are done.
+     */
+    private void addInFlightReference(URI xmlBase)
+    {
+        if (pendingLoads.isEmpty())
+        {
+            return;
+        }
+
+        Thread self = Thread.currentThread();
+        for (Map.Entry<URI, PendingLoad> entry : pendingLoads.entrySet())
+        {
+            if (entry.getValue().owner == self && !entry.getKey().equals(xmlBase))
+            {
+                entry.getValue().references.add(xmlBase);
+            }
+        }
+    }
+
+    /**
+     * Records book keeping for a document which has just been added to
+     * loadedDocs, then evicts other documents if that puts us over budget.
+     */
+    private void documentLoaded(URI xmlBase, SVGDiagram dia)
+    {
+        Set<URI> refs = new HashSet<URI>();
+        if (dia.getRoot() != null)
+        {
+            collectReferences(dia.getRoot(), xmlBase, refs);
+        }
+        docReferences.put(xmlBase, refs);
+
+        DiagramEvictionPolicy policy = evictionPolicy;
+        long size = policy == null ? 0 : policy.estimateSize(dia);
+        docUsage.put(xmlBase, new DiagramEvictionPolicy.Usage(xmlBase, size, accessClock.incrementAndGet()));
+
+        addInFlightReference(xmlBase);
+        trimDocuments(xmlBase);
+    }
+
+    private void collectReferences(SVGElement ele, URI xmlBase, Set<URI> refs)
+    {
+        addReference(ele, "xlink:href", xmlBase, refs);
+        addReference(ele, "href", xmlBase, refs);
+
+        List<SVGElement> children = ele.getChildren(null);
+        for (SVGElement child : children)
+        {
+            collectReferences(child, xmlBase, refs);
+        }
+    }
+
+    private void addReference(SVGElement ele, String name, URI xmlBase, Set<URI> refs)
+    {
+        StyleAttribute attr = ele.getPresAbsolute(name);
+        String href = attr == null ? null : attr.getStringValue();
+        if (href == null || href.length() == 0 || href.charAt(0) == '#' || href.startsWith("data:"))
+        {
+            return;
+        }
+
+        try
+        {
+            URI uri = cleanUri(ele.getXMLBase().resolve(href));
+            URI docUri = new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null);
+            if (!docUri.equals(xmlBase))
+            {
+                refs.add(docUri);
+            }
+        } catch (URISyntaxException | IllegalArgumentException | NullPointerException e)
+        {
+            //Not a link to another document
+        }
+    }
+
+    /**
+     * Evicts documents until the loaded diagrams fit within the eviction
+     * policy.  Documents referenced by other loaded documents, or by
+     * documents that are still being loaded, are kept.
+     *
+     * @param keep - Document which should not be evicted, or null
+     */
+    private void trimDocuments(URI keep)
+    {
+        DiagramEvictionPolicy policy = evictionPolicy;
+        if (policy == null)
+        {
+            return;
+        }
+
+        trimLock.lock();
+        try
+        {
+            int numDiagrams = loadedDocs.size();
+            long bytes = 0;
+            for (DiagramEvictionPolicy.Usage usage : docUsage.values())
+            {
+                bytes += usage.getSize();
+            }
+            if (!policy.isOverBudget(numDiagrams, bytes))
+            {
+                return;
+            }
+
+            Set<URI> pinned = new HashSet<URI>();
+            for (Map.Entry<URI, Set<URI>> entry : docReferences.entrySet())
+            {
+                pinned.addAll(entry.getValue());
+            }
+            for (Map.Entry<URI, PendingLoad> entry : pendingLoads.entrySet())
+            {
+                pinned.add(entry.getKey());
+                pinned.addAll(entry.getValue().references);
+            }
+
+            //Documents only referenced by ones evicted here stay until the
+            // next trim
+            PriorityQueue<DiagramEvictionPolicy.Usage> victims = new PriorityQueue<DiagramEvictionPolicy.Usage>(policy);
+            for (DiagramEvictionPolicy.Usage usage : docUsage.values())
+            {
+                if (!usage.getURI().equals(keep) && !pinned.contains(usage.getURI()))
+                {
+                    victims.add(usage);
+                }
+            }
+
+            while (policy.isOverBudget(numDiagrams, bytes) && !victims.isEmpty())
+            {
+                DiagramEvictionPolicy.Usage victim = victims.poll();
+                removeDocument(victim.getURI());
+                evictions.increment();
+                numDiagrams--;
+                bytes -= victim.getSize();
+            }
+        } finally
+        {
+            trimLock.unlock();
+        }
     }
     
     public boolean isVerbose()
@@ -715,6 +1209,14 @@ public class SVGUniverse implements Serializable
         return universe;
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        changes = new PropertyChangeSupport(this);
+        pendingLoads = new ConcurrentHashMap<URI, PendingLoad>();
+        waitingLoads = new ConcurrentHashMap<Thread, PendingLoad>();
+    }
+
     /**
      * @return the imageDataInlineOnly
      */
@@ -730,4 +1232,21 @@ public class SVGUniverse implements Serializable
     {
         this.imageDataInlineOnly = imageDataInlineOnly;
     }
+
+    /**
+     * A document that is in the process of being loaded.
+     */
+    private static class PendingLoad
+    {
+        final Thread owner;
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile SVGDiagram diagram;
+        //Documents looked up or loaded while this one was being parsed
+        final Set<URI> references = ConcurrentHashMap.newKeySet();
+
+        PendingLoad(Thread owner)
+        {
+            this.owner = owner;
+        }
+    }
 }
@@ -44,9 +44,11 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Graphics2D;
+import java.awt.MultipleGradientPaint;
 import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.net.URI;
@@ -71,6 +73,15 @@ abstract public class ShapeElement extends RenderableElement
      */
     protected float strokeWidthScalar = 1f;
 
+    /**
+     * Incremented each time this element is built, so that cached stroke
+     * outlines of its old geometry are not reused
+     */
+    int geometryVersion;
+
+    //Simplified outline last drawn by renderShape()
+    private volatile SimplifiedShape simplifiedShape;
+
     /** Creates a new instance of ShapeElement */
     public ShapeElement() {
     }
@@ -78,6 +89,13 @@ abstract public class ShapeElement extends RenderableElement
     @Override
     abstract protected void doRender(java.awt.Graphics2D g) throws SVGException;
 
+    @Override
+    protected void build() throws SVGException
+    {
+        super.build();
+        ++geometryVersion;
+    }
+
     /*
     protected void setStrokeWidthScalar(float strokeWidthScalar)
     {
@@ -131,17 +149,314 @@ abstract public class ShapeElement extends RenderableElement
     {
 //g.setColor(Color.green);
 
+        ShapeStyle style = resolveShapeStyle(shape, g.getTransform());
+        if (style == null)
+        {
+            return;
+        }
+        Paint fillPaint = style.fillPaint;
+        float fillOpacity = style.fillOpacity;
+        Paint strokePaint = style.strokePaint;
+        float strokeOpacity = style.strokeOpacity;
+        float strokeWidth = style.strokeWidth;
+        Marker markerStart = style.markerStart;
+        Marker markerMid = style.markerMid;
+        Marker markerEnd = style.markerEnd;
+
+        //Markers are placed on the vertices of the original shape
+        Shape outline = shape;
+        float tolerance = diagram.getSimplifyTolerance();
+        if (tolerance > 0)
+        {
+            shape = simplifyShape(shape, g.getTransform(), tolerance);
+        }
+
+        //Draw the shape
+        if (fillPaint != null && fillOpacity != 0f)
+        {
+            if (fillOpacity <= 0)
+            {
+                //Do nothing
+            }
+            else if (fillOpacity < 1f)
+            {
+                Composite cachedComposite = g.getComposite();
+                g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, fillOpacity));
+
+                g.setPaint(fillPaint);
+                g.fill(shape);
+            
+                g.setComposite(cachedComposite);
+            }
+            else
+            {
+                g.setPaint(fillPaint);
+                g.fill(shape);
+            }
+        }
+
+
+        if (strokePaint != null && strokeOpacity != 0f)
+        {
+            BasicStroke stroke = style.createStroke();
+
+            AffineTransform cacheXform = g.getTransform();
+            Shape strokeShape = diagram.getStrokeCache().getStrokedShape(this, shape, stroke,
+                vectorEffect == VECTOR_EFFECT_NON_SCALING_STROKE ? cacheXform : null);
+
+            if (strokeOpacity <= 0)
+            {
+                //Do nothing
+            }
+            else
+            {
+                Composite cachedComposite = g.getComposite();
+
+                if (strokeOpacity < 1f)
+                {
+                    g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, strokeOpacity));
+                }
+
+                if (vectorEffect == VECTOR_EFFECT_NON_SCALING_STROKE)
+                {
+                    //Outline is in device space, less the translation
+                    g.setTransform(AffineTransform.getTranslateInstance(
+                        cacheXform.getTranslateX(), cacheXform.getTranslateY()));
+                }
+
+                g.setPaint(strokePaint);
+                g.fill(strokeShape);
+
+                if (vectorEffect == VECTOR_EFFECT_NON_SCALING_STROKE)
+                {
+                    //Set to identity
+                    g.setTransform(cacheXform);
+                }
+
+                if (strokeOpacity < 1f)
+                {
+                    g.setComposite(cachedComposite);
+                }
+            }
+        }
+
+        if (markerStart != null || markerMid != null || markerEnd != null)
+        {
+            MarkerLayout layout = new MarkerLayout();
+            layout.layout(outline);
+            
+            ArrayList<MarkerPos> list = layout.getMarkerList();
+            for (int i = 0; i < list.size(); ++i)
+            {
+                MarkerPos pos = list.get(i);
+
+                switch (pos.type)
+                {
+                    case Marker.MARKER_START:
+                        if (markerStart != null)
+                        {
+                            markerStart.render(g, pos, strokeWidth);
+                        }
+                        break;
+                    case Marker.MARKER_MID:
+                        if (markerMid != null)
+                        {
+                            markerMid.render(g, pos, strokeWidth);
+                        }
+                        break;
+                    case Marker.MARKER_END:
+                        if (markerEnd != null)
+                        {
+                            markerEnd.render(g, pos, strokeWidth);
+                        }
+                        break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns a simplified version of a shape of this element for drawing
+     * with a transform.  The result is cached for the power of two the scale
+     * of the transform falls under, so that it is reused while panning and
+     * while zooming within that range.
+     *
+     * @param shape Shape to simplify
+     * @param xform Transform to device space
+     * @param tolerance Distance in device pixels the outline may move
+     * @return the simplified shape, or the shape if it is not simplified
+     */
+    Shape simplifyShape(Shape shape, AffineTransform xform, float tolerance)
+    {
+        if (!(shape instanceof Path2D))
+        {
+            //Basic shapes gain nothing
+            return shape;
+        }
+
+        //Largest scale of the transform
+        double a = xform.getScaleX();
+        double b = xform.getShearY();
+        double c = xform.getShearX();
+        double d = xform.getScaleY();
+        double sum = a * a + b * b + c * c + d * d;
+        double det = a * d - b * c;
+        double scale = Math.sqrt((sum + Math.sqrt(Math.max(sum * sum - 4 * det * det, 0))) / 2);
+        if (scale == 0 || Double.isNaN(scale) || Double.isInfinite(scale))
+        {
+            return shape;
+        }
+        int bucket = Math.getExponent(scale) + 1;
+
+        SimplifiedShape cache = simplifiedShape;
+        if (cache == null || cache.source != shape || cache.version != geometryVersion
+            || cache.bucket != bucket || cache.tolerance != tolerance)
+        {
+            Shape simplified = PathSimplifier.simplify(shape, tolerance / Math.scalb(1.0, bucket));
+            cache = new SimplifiedShape(shape, geometryVersion, bucket, tolerance, simplified);
+            simplifiedShape = cache;
+        }
+        return cache.shape;
+    }
+
+    @Override
+    Color computeDetailColor() throws SVGException
+    {
+        Shape shape = getShape();
+        if (shape == null)
+        {
+            return null;
+        }
+
+        ShapeStyle style = resolveShapeStyle(shape, new AffineTransform());
+        if (style == null)
+        {
+            return null;
+        }
+
+        Color color = toDetailColor(style.fillPaint, style.fillOpacity);
+        return color != null ? color : toDetailColor(style.strokePaint, style.strokeOpacity);
+    }
+
+    /**
+     * @return a solid color approximating a paint, or null if the paint draws
+     * nothing or cannot be approximated
+     */
+    static Color toDetailColor(Paint paint, float opacity)
+    {
+        if (paint == null || opacity <= 0)
+        {
+            return null;
+        }
+
+        float r, g, b, a;
+        if (paint instanceof Color)
+        {
+            Color color = (Color) paint;
+            r = color.getRed();
+            g = color.getGreen();
+            b = color.getBlue();
+            a = color.getAlpha();
+        }
+        else if (paint instanceof MultipleGradientPaint)
+        {
+            //Average of the stops
+            Color[] colors = ((MultipleGradientPaint) paint).getColors();
+            r = g = b = a = 0;
+            for (Color color : colors)
+            {
+                r += color.getRed();
+                g += color.getGreen();
+                b += color.getBlue();
+                a += color.getAlpha();
+            }
+            r /= colors.length;
+            g /= colors.length;
+            b /= colors.length;
+            a /= colors.length;
+        }
+        else
+        {
+            return null;
+        }
+
+        return new Color(Math.round(r), Math.round(g), Math.round(b),
+            Math.round(Math.min(opacity, 1) * a));
+    }
+
+    /**
+     * Adds the operations that draw a shape with the style of this element
+     * to a display list.  Compiled equivalent of renderShape().
+     *
+     * @param builder
+     * @param shape
+     * @throws com.kitfox.svg.SVGException
+     */
+    void compileShape(DisplayList.Builder builder, Shape shape) throws SVGException
+    {
+        ShapeStyle style = resolveShapeStyle(shape, builder.getTransform());
+        if (style == null)
+        {
+            return;
+        }
+
+        if (style.fillPaint != null && style.fillOpacity > 0)
+        {
+            builder.addFill(shape, style.fillPaint, style.fillOpacity);
+        }
+
+        if (style.strokePaint != null && style.strokeOpacity > 0)
+        {
+            BasicStroke stroke = style.createStroke();
+            if (vectorEffect == VECTOR_EFFECT_NON_SCALING_STROKE)
+            {
+                builder.addDeviceStroke(this, shape, stroke, style.strokePaint, style.strokeOpacity);
+            }
+            else
+            {
+                builder.addFill(diagram.getStrokeCache().getStrokedShape(this, shape, stroke, null),
+                    style.strokePaint, style.strokeOpacity);
+            }
+        }
+
+        if (style.markerStart != null || style.markerMid != null || style.markerEnd != null)
+        {
+            MarkerLayout layout = new MarkerLayout();
+            layout.layout(shape);
+
+            for (MarkerPos pos : layout.getMarkerList())
+            {
+                Marker marker = pos.type == Marker.MARKER_START ? style.markerStart
+                    : pos.type == Marker.MARKER_MID ? style.markerMid
+                    : pos.type == Marker.MARKER_END ? style.markerEnd : null;
+                if (marker != null)
+                {
+                    marker.compile(builder, pos, style.strokeWidth);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the styles used to draw a shape.
+     *
+     * @param shape - Shape being drawn
+     * @param xform - Transform the shape is drawn with
+     * @return the resolved styles, or null if the shape is not displayed
+     */
+    private ShapeStyle resolveShapeStyle(Shape shape, AffineTransform xform) throws SVGException
+    {
         StyleAttribute styleAttrib = new StyleAttribute();
         
         //Don't process if not visible
         if (getStyle(styleAttrib.setName("visibility")))
         {
-            if (!styleAttrib.getStringValue().equals("visible")) return;
+            if (!styleAttrib.getStringValue().equals("visible")) return null;
         }
 
         if (getStyle(styleAttrib.setName("display")))
         {
-            if (styleAttrib.getStringValue().equals("none")) return;
+            if (styleAttrib.getStringValue().equals("none")) return null;
         }
 
         //None, solid color, gradient, pattern
@@ -158,8 +473,6 @@ abstract public class ShapeElement extends RenderableElement
                     if (uri != null)
                     {
                         Rectangle2D bounds = shape.getBounds2D();
-                        AffineTransform xform = g.getTransform();
-
                         SVGElement ele = diagram.getUniverse().getElement(uri);
                         if (ele != null)
                         {
@@ -201,8 +514,6 @@ abstract public class ShapeElement extends RenderableElement
                     if (uri != null)
                     {
                         Rectangle2D bounds = shape.getBounds2D();
-                        AffineTransform xform = g.getTransform();
-
                         SVGElement ele = diagram.getUniverse().getElement(uri);
                         if (ele != null)
                         {
@@ -306,143 +617,179 @@ abstract public class ShapeElement extends RenderableElement
             }
         }
 
+        ShapeStyle style = new ShapeStyle();
+        style.fillPaint = fillPaint;
+        style.fillOpacity = fillOpacity;
+        style.strokePaint = strokePaint;
+        style.strokeOpacity = strokeOpacity;
+        style.strokeWidth = strokeWidth;
+        style.strokeLinecap = strokeLinecap;
+        style.strokeLinejoin = strokeLinejoin;
+        style.strokeMiterLimit = strokeMiterLimit;
+        style.strokeDashArray = strokeDashArray;
+        style.strokeDashOffset = strokeDashOffset;
+        style.markerStart = markerStart;
+        style.markerMid = markerMid;
+        style.markerEnd = markerEnd;
+        return style;
+    }
 
-        //Draw the shape
-        if (fillPaint != null && fillOpacity != 0f)
+    /**
+     * Styles of a shape, resolved for drawing
+     */
+    static class ShapeStyle
+    {
+        Paint fillPaint;
+        float fillOpacity;
+        Paint strokePaint;
+        float strokeOpacity;
+        float strokeWidth;
+        int strokeLinecap;
+        int strokeLinejoin;
+        float strokeMiterLimit;
+        float[] strokeDashArray;
+        float strokeDashOffset;
+        Marker markerStart;
+        Marker markerMid;
+        Marker markerEnd;
+
+        BasicStroke createStroke()
         {
-            if (fillOpacity <= 0)
-            {
-                //Do nothing
-            }
-            else if (fillOpacity < 1f)
-            {
-                Composite cachedComposite = g.getComposite();
-                g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, fillOpacity));
-
-                g.setPaint(fillPaint);
-                g.fill(shape);
-            
-                g.setComposite(cachedComposite);
-            }
-            else
+            if (strokeDashArray == null)
             {
-                g.setPaint(fillPaint);
-                g.fill(shape);
+                return new BasicStroke(strokeWidth, strokeLinecap, strokeLinejoin, strokeMiterLimit);
             }
+            return new BasicStroke(strokeWidth, strokeLinecap, strokeLinejoin, strokeMiterLimit, strokeDashArray, strokeDashOffset);
         }
+    }
+
+    abstract public Shape getShape();
 
+    private static class SimplifiedShape
+    {
+        final Shape source;
+        final int version;
+        final int bucket;
+        final float tolerance;
+        final Shape shape;
 
-        if (strokePaint != null && strokeOpacity != 0f)
+        SimplifiedShape(Shape source, int version, int bucket, float tolerance, Shape shape)
         {
-            BasicStroke stroke;
-            if (strokeDashArray == null)
-            {
-                stroke = new BasicStroke(strokeWidth, strokeLinecap, strokeLinejoin, strokeMiterLimit);
-            }
-            else
-            {
-                stroke = new BasicStroke(strokeWidth, strokeLinecap, strokeLinejoin, strokeMiterLimit, strokeDashArray, strokeDashOffset);
-            }
+            this.source = source;
+            this.version = version;
+            this.bucket = bucket;
+            this.tolerance = tolerance;
+            this.shape = shape;
+        }
+    }
 
-            Shape strokeShape;
-            AffineTransform cacheXform = g.getTransform();
-            if (vectorEffect == VECTOR_EFFECT_NON_SCALING_STROKE)
-            {
-                strokeShape = cacheXform.createTransformedShape(shape);
-                strokeShape = stroke.createStrokedShape(strokeShape);
-            }
-            else
-            {
-                strokeShape = stroke.createStrokedShape(shape);
-            }
+    protected Rectangle2D includeStrokeInBounds(Rectangle2D rect) throws SVGException
+    {
+        StyleAttribute styleAttrib = new StyleAttribute();
+        if (!getStyle(styleAttrib.setName("stroke"))) return rect;
 
-            if (strokeOpacity <= 0)
-            {
-                //Do nothing
-            }
-            else
-            {
-                Composite cachedComposite = g.getComposite();
+        double strokeWidth = 1;
+        if (getStyle(styleAttrib.setName("stroke-width"))) strokeWidth = styleAttrib.getDoubleValue();
 
-                if (strokeOpacity < 1f)
-                {
-                    g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, strokeOpacity));
-                }
+        rect.setRect(
+            rect.getX() - strokeWidth / 2,
+            rect.getY() - strokeWidth / 2,
+            rect.getWidth() + strokeWidth,
+            rect.getHeight() + strokeWidth);
 
-                if (vectorEffect == VECTOR_EFFECT_NON_SCALING_STROKE)
-                {
-                    //Set to identity
-                    g.setTransform(new AffineTransform());
-                }
+        return rect;
+    }
 
-                g.setPaint(strokePaint);
-                g.fill(strokeShape);
+    @Override
+    Rectangle2D computeRenderBounds() throws SVGException
+    {
+        Shape shape = getShape();
+        if (filter != null || shape == null)
+        {
+            return null;
+        }
 
-                if (vectorEffect == VECTOR_EFFECT_NON_SCALING_STROKE)
-                {
-                    //Set to identity
-                    g.setTransform(cacheXform);
-                }
+        return padBounds(shape.getBounds2D(), getStrokePadding());
+    }
 
-                if (strokeOpacity < 1f)
-                {
-                    g.setComposite(cachedComposite);
-                }
-            }
+    /**
+     * Grows bounds in the coordinates of the parent by a distance in the
+     * coordinates of this element
+     *
+     * @return the bounds, or null if the distance is NaN
+     */
+    Rectangle2D padBounds(Rectangle2D bounds, double padding)
+    {
+        if (Double.isNaN(padding))
+        {
+            return null;
         }
 
-        if (markerStart != null || markerMid != null || markerEnd != null)
+        if (padding > 0)
         {
-            MarkerLayout layout = new MarkerLayout();
-            layout.layout(shape);
-            
-            ArrayList<MarkerPos> list = layout.getMarkerList();
-            for (int i = 0; i < list.size(); ++i)
+            if (xform != null)
             {
-                MarkerPos pos = list.get(i);
-
-                switch (pos.type)
-                {
-                    case Marker.MARKER_START:
-                        if (markerStart != null)
-                        {
-                            markerStart.render(g, pos, strokeWidth);
-                        }
-                        break;
-                    case Marker.MARKER_MID:
-                        if (markerMid != null)
-                        {
-                            markerMid.render(g, pos, strokeWidth);
-                        }
-                        break;
-                    case Marker.MARKER_END:
-                        if (markerEnd != null)
-                        {
-                            markerEnd.render(g, pos, strokeWidth);
-                        }
-                        break;
-                }
+                //No less than the largest scale of the transform
+                padding *= Math.sqrt(xform.getScaleX() * xform.getScaleX()
+                    + xform.getShearX() * xform.getShearX()
+                    + xform.getShearY() * xform.getShearY()
+                    + xform.getScaleY() * xform.getScaleY());
             }
+            bounds.setRect(
+                bounds.getX() - padding,
+                bounds.getY() - padding,
+                bounds.getWidth() + 2 * padding,
+                bounds.getHeight() + 2 * padding);
         }
+        return bounds;
     }
-    
-    abstract public Shape getShape();
 
-    protected Rectangle2D includeStrokeInBounds(Rectangle2D rect) throws SVGException
+    /**
+     * @return how far the stroke of this shape may reach past its outline,
+     * in local coordinates, or NaN if it cannot be determined, such as
+     * when markers or a non-scaling stroke are used
+     * @throws com.kitfox.svg.SVGException
+     */
+    double getStrokePadding() throws SVGException
     {
         StyleAttribute styleAttrib = new StyleAttribute();
-        if (!getStyle(styleAttrib.setName("stroke"))) return rect;
+        if ((getStyle(styleAttrib.setName("marker-start")) && !styleAttrib.getStringValue().equals("none"))
+            || (getStyle(styleAttrib.setName("marker-mid")) && !styleAttrib.getStringValue().equals("none"))
+            || (getStyle(styleAttrib.setName("marker-end")) && !styleAttrib.getStringValue().equals("none")))
+        {
+            return Double.NaN;
+        }
 
-        double strokeWidth = 1;
-        if (getStyle(styleAttrib.setName("stroke-width"))) strokeWidth = styleAttrib.getDoubleValue();
+        if (!getStyle(styleAttrib.setName("stroke")) || styleAttrib.getStringValue().equals("none"))
+        {
+            return 0;
+        }
 
-        rect.setRect(
-            rect.getX() - strokeWidth / 2,
-            rect.getY() - strokeWidth / 2,
-            rect.getWidth() + strokeWidth,
-            rect.getHeight() + strokeWidth);
+        if (vectorEffect == VECTOR_EFFECT_NON_SCALING_STROKE)
+        {
+            return Double.NaN;
+        }
 
-        return rect;
+        double strokeWidth = 1;
+        if (getStyle(styleAttrib.setName("stroke-width")))
+        {
+            strokeWidth = styleAttrib.getFloatValueWithUnits();
+        }
+        double padding = Math.abs(strokeWidth * strokeWidthScalar) / 2;
+
+        //Miters reach out up to the miter limit times the half width, and
+        // square caps by the half diagonal
+        String linejoin = getStyle(styleAttrib.setName("stroke-linejoin")) ? styleAttrib.getStringValue() : "miter";
+        if (!linejoin.equals("round") && !linejoin.equals("bevel"))
+        {
+            float miterLimit = 4f;
+            if (getStyle(styleAttrib.setName("stroke-miterlimit")))
+            {
+                miterLimit = Math.max(styleAttrib.getFloatValueWithUnits(), 1);
+            }
+            return padding * Math.max(miterLimit, Math.sqrt(2));
+        }
+        return padding * Math.sqrt(2);
     }
 
 }
@@ -97,6 +97,11 @@ public class Stop extends SVGElement
         {
             opacity = sty.getRatioValue();
         }
+
+        if (parent instanceof Gradient)
+        {
+            ((Gradient) parent).stopsChanged();
+        }
     }
 
     /**
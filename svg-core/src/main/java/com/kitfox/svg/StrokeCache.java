@@ -0,0 +1,228 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+
+package com.kitfox.svg;
+
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the stroked outlines of the shapes of a diagram, so that redrawing
+ * unchanged geometry does not run the stroker again.  Outlines are stored
+ * in user space, or for non-scaling strokes in device space without its
+ * translation, so both panning and zooming can reuse them.  The least
+ * recently used outlines are discarded once their estimated size exceeds the
+ * budget of the diagram.
+ *
+ * @author kitfox
+ */
+class StrokeCache
+{
+    /**
+     * Default memory budget, in bytes
+     */
+    static final long DEFAULT_BUDGET = 16L << 20;
+
+    private long budget = DEFAULT_BUDGET;
+    private long size;
+
+    //Keyed by the identities of the element and the stroked shape, most
+    // recently used last.  Elements with the same path data share one
+    // shape, so the shape alone does not identify an entry.
+    private final LinkedHashMap<ShapeKey, Entry> entries = new LinkedHashMap<>(64, .75f, true);
+
+    synchronized long getBudget()
+    {
+        return budget;
+    }
+
+    synchronized void setBudget(long budget)
+    {
+        this.budget = Math.max(0, budget);
+        trim();
+    }
+
+    /**
+     * Returns the outline of a shape drawn with a stroke, stroking it if it
+     * is not cached.
+     *
+     * @param element element drawing the shape
+     * @param shape shape being stroked
+     * @param stroke stroke to apply
+     * @param deviceXform for non-scaling strokes, the transform to device
+     * space, whose translation is ignored.  Null to stroke in user space.
+     * @return the outline
+     */
+    Shape getStrokedShape(ShapeElement element, Shape shape, BasicStroke stroke, AffineTransform deviceXform)
+    {
+        AffineTransform linearXform = null;
+        if (deviceXform != null)
+        {
+            linearXform = new AffineTransform(
+                deviceXform.getScaleX(), deviceXform.getShearY(),
+                deviceXform.getShearX(), deviceXform.getScaleY(), 0, 0);
+        }
+
+        ShapeKey key = new ShapeKey(element, shape);
+        int version = element.geometryVersion;
+        synchronized (this)
+        {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version == version
+                && entry.stroke.equals(stroke)
+                && (linearXform == null ? entry.linearXform == null : linearXform.equals(entry.linearXform)))
+            {
+                return entry.outline;
+            }
+        }
+
+        Shape outline = stroke.createStrokedShape(
+            linearXform == null ? shape : linearXform.createTransformedShape(shape));
+
+        Entry entry = new Entry(version, stroke, linearXform, outline);
+        synchronized (this)
+        {
+            if (budget > 0)
+            {
+                Entry old = entries.put(key, entry);
+                if (old != null)
+                {
+                    size -= old.bytes;
+                }
+                size += entry.bytes;
+                trim();
+            }
+        }
+        return outline;
+    }
+
+    synchronized void clear()
+    {
+        entries.clear();
+        size = 0;
+    }
+
+    private void trim()
+    {
+        Iterator<Map.Entry<ShapeKey, Entry>> it = entries.entrySet().iterator();
+        while (size > budget && it.hasNext())
+        {
+            size -= it.next().getValue().bytes;
+            it.remove();
+        }
+    }
+
+    /**
+     * Estimates the memory used by a path
+     */
+    static long estimateSize(Shape shape)
+    {
+        long bytes = 64;
+        float[] coords = new float[6];
+        for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next())
+        {
+            switch (it.currentSegment(coords))
+            {
+                case PathIterator.SEG_MOVETO:
+                case PathIterator.SEG_LINETO:
+                    bytes += 1 + 2 * 4;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    bytes += 1 + 4 * 4;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    bytes += 1 + 6 * 4;
+                    break;
+                default:
+                    bytes += 1;
+                    break;
+            }
+        }
+        return bytes;
+    }
+
+    private static class ShapeKey
+    {
+        final ShapeElement element;
+        final Shape shape;
+
+        ShapeKey(ShapeElement element, Shape shape)
+        {
+            this.element = element;
+            this.shape = shape;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof ShapeKey))
+            {
+                return false;
+            }
+            ShapeKey other = (ShapeKey)obj;
+            return other.element == element && other.shape == shape;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * System.identityHashCode(element) + System.identityHashCode(shape);
+        }
+    }
+
+    private static class Entry
+    {
+        final int version;
+        final BasicStroke stroke;
+        final AffineTransform linearXform;
+        final Shape outline;
+        final long bytes;
+
+        Entry(int version, BasicStroke stroke, AffineTransform linearXform, Shape outline)
+        {
+            this.version = version;
+            this.stroke = stroke;
+            this.linearXform = linearXform;
+            this.outline = outline;
+            this.bytes = estimateSize(outline);
+        }
+    }
+}
@@ -99,8 +99,19 @@ public class Style extends SVGElement
         return false;
     }
 
+    /**
+     * @return the rules in this element, or null if it is empty or holds
+     * something other than CSS
+     */
     public StyleSheet getStyleSheet()
     {
+        StyleAttribute typeAttr = getPresAbsolute("type");
+        String mimeType = typeAttr == null ? "" : typeAttr.getStringValue().trim();
+        if (!mimeType.isEmpty() && !mimeType.equalsIgnoreCase("text/css"))
+        {
+            return null;
+        }
+
         if (styleSheet == null && text.length() > 0)
         {
             styleSheet = StyleSheet.parseSheet(text.toString());
@@ -121,6 +121,17 @@ public class Symbol extends Group
         g.setTransform(oldXform);
     }
 
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        AffineTransform oldXform = builder.getTransform();
+        builder.transform(viewXform);
+
+        super.doCompile(builder);
+
+        builder.setTransform(oldXform);
+    }
+
     @Override
     public Shape getShape()
     {
@@ -135,6 +146,13 @@ public class Symbol extends Group
         return viewXform.createTransformedShape(rect).getBounds2D();
     }
 
+    @Override
+    Rectangle2D computeRenderBounds() throws SVGException
+    {
+        Rectangle2D rect = super.computeRenderBounds();
+        return rect == null ? null : viewXform.createTransformedShape(rect).getBounds2D();
+    }
+
     /**
      * Updates all attributes in this diagram associated with a time event. Ie,
      * all attributes with track information.
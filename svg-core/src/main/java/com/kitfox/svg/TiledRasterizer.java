@@ -0,0 +1,250 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+package com.kitfox.svg;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders a diagram to an image by splitting the image into tiles and
+ * drawing the tiles in parallel on a ForkJoinPool.  The diagram is compiled
+ * to a display list first, which is replayed for each tile clipped to its
+ * area, so only operations overlapping a tile are drawn into it.
+ *
+ * <p>Each tile draws directly into its part of the destination raster, so no
+ * copying is needed to assemble the image.</p>
+ *
+ * @author kitfox
+ */
+public class TiledRasterizer
+{
+    public static final int DEFAULT_TILE_SIZE = 512;
+
+    private final SVGDiagram diagram;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private ForkJoinPool pool;
+    private RenderingHints renderingHints;
+
+    /**
+     * Creates a rasterizer for a diagram
+     * @param diagram
+     */
+    public TiledRasterizer(SVGDiagram diagram)
+    {
+        this.diagram = diagram;
+    }
+
+    public int getTileSize()
+    {
+        return tileSize;
+    }
+
+    /**
+     * @param tileSize - Width and height of tiles in pixels
+     */
+    public void setTileSize(int tileSize)
+    {
+        if (tileSize <= 0)
+        {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * @return the pool tiles are rendered on.  If none has been set, the
+     * common pool is used.
+     */
+    public ForkJoinPool getPool()
+    {
+        return pool == null ? ForkJoinPool.commonPool() : pool;
+    }
+
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    public RenderingHints getRenderingHints()
+    {
+        return renderingHints;
+    }
+
+    /**
+     * @param renderingHints - Hints set on the graphics of every tile, or null
+     */
+    public void setRenderingHints(RenderingHints renderingHints)
+    {
+        this.renderingHints = renderingHints;
+    }
+
+    /**
+     * Renders the diagram to a new image, scaled so that its width and
+     * height fill the image.
+     *
+     * @param width - Width of the image in pixels
+     * @param height - Height of the image in pixels
+     * @return an image of type TYPE_INT_ARGB
+     * @throws com.kitfox.svg.SVGException
+     */
+    public BufferedImage render(int width, int height) throws SVGException
+    {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+
+        AffineTransform xform = new AffineTransform();
+        float diagramWidth = diagram.getWidth();
+        float diagramHeight = diagram.getHeight();
+        if (diagramWidth > 0 && diagramHeight > 0)
+        {
+            xform.scale(width / diagramWidth, height / diagramHeight);
+        }
+
+        render(img, xform);
+        return img;
+    }
+
+    /**
+     * Draws the diagram over the contents of an image.
+     *
+     * @param dest - Image to draw to
+     * @param xform - Transform from diagram coordinates to image pixels
+     * @throws com.kitfox.svg.SVGException
+     */
+    public void render(BufferedImage dest, AffineTransform xform) throws SVGException
+    {
+        DisplayList displayList = diagram.compile();
+
+        int cols = (dest.getWidth() + tileSize - 1) / tileSize;
+        int rows = (dest.getHeight() + tileSize - 1) / tileSize;
+        TileTask task = new TileTask(dest, xform, displayList, cols, 0, cols * rows);
+        getPool().invoke(task);
+
+        if (task.error != null)
+        {
+            throw task.error;
+        }
+    }
+
+    private void renderTile(BufferedImage dest, AffineTransform xform, DisplayList displayList,
+        int x, int y) throws SVGException
+    {
+        int width = Math.min(tileSize, dest.getWidth() - x);
+        int height = Math.min(tileSize, dest.getHeight() - y);
+
+        //Image sharing the pixels of this tile's area of the destination
+        ColorModel cm = dest.getColorModel();
+        WritableRaster raster = dest.getRaster().createWritableChild(
+            x, y, width, height, 0, 0, null);
+        BufferedImage tile = new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+
+        Graphics2D g = tile.createGraphics();
+        try
+        {
+            if (renderingHints != null)
+            {
+                g.setRenderingHints(renderingHints);
+            }
+            g.setClip(0, 0, width, height);
+            g.translate(-x, -y);
+            g.transform(xform);
+
+            displayList.render(g);
+        }
+        finally
+        {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Renders a range of tiles, splitting it in half until a single tile
+     * remains.
+     */
+    class TileTask extends RecursiveAction
+    {
+        public static final long serialVersionUID = 0;
+
+        final BufferedImage dest;
+        final AffineTransform xform;
+        final DisplayList displayList;
+        final int cols;
+        final int start;
+        final int end;
+        SVGException error;
+
+        TileTask(BufferedImage dest, AffineTransform xform, DisplayList displayList, int cols, int start, int end)
+        {
+            this.dest = dest;
+            this.xform = xform;
+            this.displayList = displayList;
+            this.cols = cols;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start > 1)
+            {
+                int mid = (start + end) >>> 1;
+                TileTask left = new TileTask(dest, xform, displayList, cols, start, mid);
+                TileTask right = new TileTask(dest, xform, displayList, cols, mid, end);
+                invokeAll(left, right);
+                error = left.error != null ? left.error : right.error;
+                return;
+            }
+
+            for (int i = start; i < end; ++i)
+            {
+                try
+                {
+                    renderTile(dest, xform, displayList, (i % cols) * tileSize, (i / cols) * tileSize);
+                }
+                catch (SVGException e)
+                {
+                    error = e;
+                }
+            }
+        }
+    }
+}
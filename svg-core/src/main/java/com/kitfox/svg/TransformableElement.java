@@ -97,6 +97,11 @@ abstract public class TransformableElement extends SVGElement
         {
             xform = parseTransform(sty.getStringValue());
         }
+
+        if (diagram != null)
+        {
+            diagram.elementChanged(this);
+        }
     }
 
     protected Shape shapeToParent(Shape shape)
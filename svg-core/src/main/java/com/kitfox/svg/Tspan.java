@@ -37,7 +37,9 @@ package com.kitfox.svg;
 
 import com.kitfox.svg.util.FontUtil;
 import com.kitfox.svg.xml.StyleAttribute;
+import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
@@ -304,11 +306,24 @@ public class Tspan extends ShapeElement
     protected void doRender(Graphics2D g) throws SVGException
     {
         beginLayer(g);
+
+        //Greek text too small to read
+        float greekingThreshold = diagram.getGreekingThreshold();
+        boolean greek = greekingThreshold > 0 && fontInfo != null
+            && fontInfo.size * Math.sqrt(Math.abs(g.getTransform().getDeterminant())) < greekingThreshold;
+
         for (TextSegment segment : segments) {
             if (segment.textPath != null)
             {
                 // Text portion of this span.
-                segment.element.renderShape(g, segment.textPath);
+                if (greek)
+                {
+                    renderGreeked(g, segment.textPath);
+                }
+                else
+                {
+                    segment.element.renderShape(g, segment.textPath);
+                }
             } else
             {
                 // Child span.
@@ -318,6 +333,46 @@ public class Tspan extends ShapeElement
         finishLayer(g);
     }
 
+    /**
+     * Draws a run of text as a box shaded to about the density of its glyphs
+     */
+    private void renderGreeked(Graphics2D g, Shape textPath) throws SVGException
+    {
+        Color color = getDetailColor();
+        if (color == null)
+        {
+            return;
+        }
+
+        Paint paint = g.getPaint();
+        g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha() / 2));
+        g.fill(textPath.getBounds2D());
+        g.setPaint(paint);
+    }
+
+    @Override
+    Shape simplifyShape(Shape shape, AffineTransform xform, float tolerance)
+    {
+        //Small text is greeked instead
+        return shape;
+    }
+
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        beginLayer(builder);
+        for (TextSegment segment : segments) {
+            if (segment.textPath != null)
+            {
+                segment.element.compileShape(builder, segment.textPath);
+            } else
+            {
+                segment.element.doCompile(builder);
+            }
+        }
+        finishLayer(builder);
+    }
+
     @Override
     public Shape getShape()
     {
@@ -330,6 +385,34 @@ public class Tspan extends ShapeElement
         return boundsToParent(textBounds);
     }
 
+    @Override
+    Rectangle2D computeRenderBounds() throws SVGException
+    {
+        if (filter != null || fullPath == null)
+        {
+            return null;
+        }
+
+        return padBounds(getShape().getBounds2D(), getTextStrokePadding());
+    }
+
+    /**
+     * @return the largest stroke padding of this span and the spans within it
+     */
+    private double getTextStrokePadding() throws SVGException
+    {
+        double padding = getStrokePadding();
+        for (Serializable obj : content)
+        {
+            if (obj instanceof Tspan)
+            {
+                //NaN propagates
+                padding = Math.max(padding, ((Tspan) obj).getTextStrokePadding());
+            }
+        }
+        return padding;
+    }
+
     /**
      * Updates all attributes in this diagram associated with a time event. Ie,
      * all attributes with track information.
@@ -141,6 +141,31 @@ public class Use extends ShapeElement {
         finishLayer(g);
     }
 
+    @Override
+    void doCompile(DisplayList.Builder builder) throws SVGException
+    {
+        beginLayer(builder);
+
+        AffineTransform oldXform = builder.getTransform();
+        builder.transform(refXform);
+
+        SVGElement ref = diagram.getUniverse().getElement(href);
+
+        if (ref instanceof RenderableElement)
+        {
+            RenderableElement rendEle = (RenderableElement) ref;
+            rendEle.pushParentContext(this);
+            builder.pushParentContext(rendEle, this);
+            rendEle.compile(builder);
+            builder.popParentContext();
+            rendEle.popParentContext();
+        }
+
+        builder.setTransform(oldXform);
+
+        finishLayer(builder);
+    }
+
     @Override
     public Shape getShape() {
         SVGElement ref = diagram.getUniverse().getElement(href);
@@ -172,6 +197,34 @@ public class Use extends ShapeElement {
         return null;
     }
 
+    @Override
+    Rectangle2D computeRenderBounds() throws SVGException
+    {
+        SVGElement ref = diagram.getUniverse().getElement(href);
+        //Changes to other documents are not tracked by this one
+        if (filter != null || !(ref instanceof RenderableElement) || ref.diagram != diagram)
+        {
+            return null;
+        }
+
+        RenderableElement rendEle = (RenderableElement) ref;
+        rendEle.pushParentContext(this);
+        Rectangle2D bounds;
+        try
+        {
+            bounds = rendEle.getRenderBounds();
+        } finally
+        {
+            rendEle.popParentContext();
+        }
+
+        if (bounds == null)
+        {
+            return null;
+        }
+        return boundsToParent(refXform.createTransformedShape(bounds).getBounds2D());
+    }
+
     /**
      * Updates all attributes in this diagram associated with a time event. Ie,
      * all attributes with track information.
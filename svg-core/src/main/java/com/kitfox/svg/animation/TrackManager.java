@@ -87,7 +87,8 @@ public class TrackManager implements Serializable
         }
     }
     
-    HashMap<TrackKey, TrackBase> tracks = new HashMap<TrackKey, TrackBase>();
+    //Created when the first track is added, since most elements have none
+    HashMap<TrackKey, TrackBase> tracks;
     
     /** Creates a new instance of TrackManager */
     public TrackManager()
@@ -101,6 +102,10 @@ public class TrackManager implements Serializable
     {
         TrackKey key = new TrackKey(element);
         
+        if (tracks == null)
+        {
+            tracks = new HashMap<TrackKey, TrackBase>();
+        }
         TrackBase track = (TrackBase)tracks.get(key);
         
         if (track == null)
@@ -140,6 +145,8 @@ public class TrackManager implements Serializable
     
     public TrackBase getTrack(String name, int type)
     {
+        if (tracks == null) return null;
+        
         //Handle AUTO, which will match either CSS or XML (in that order)
         if (type == AnimationElement.AT_AUTO)
         {
@@ -162,11 +169,12 @@ public class TrackManager implements Serializable
     
     public int getNumTracks()
     {
-        return tracks.size();
+        return tracks == null ? 0 : tracks.size();
     }
     
     public Iterator<TrackBase> iterator()
     {
+        if (tracks == null) return Collections.<TrackBase>emptyIterator();
         return tracks.values().iterator();
     }
 }
@@ -0,0 +1,679 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+
+package com.kitfox.svg.app;
+
+import com.kitfox.svg.SVGDiagram;
+import com.kitfox.svg.SVGUniverse;
+import com.kitfox.svg.app.beans.SVGIcon;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.imageio.ImageIO;
+
+/**
+ * Converts a batch of SVG files into images.  Each file is parsed once and
+ * then rendered at every requested scale, so a 1x/2x/3x icon set costs a
+ * single parse.  Files move through three pipelined stages: parsing and
+ * rendering run on a pool sized to the number of processors, while encoding
+ * runs on a separate pool so that image compression and disk writes overlap
+ * with the rendering of the next files.  The number of files in flight is
+ * bounded to keep memory use steady on large batches.
+ *
+ * <p>Every file is loaded into its own SVGUniverse, which is discarded once
+ * the file has been rendered.</p>
+ *
+ * @author kitfox
+ */
+public class BatchRasterizer
+{
+    /**
+     * Receives progress notifications.  Methods are called from the worker
+     * threads of the rasterizer.
+     */
+    public static interface Listener
+    {
+        public void imageWritten(File source, File dest);
+
+        public void fileFailed(File source, Throwable cause);
+    }
+
+    private final ArrayList<Job> jobs = new ArrayList<>();
+    private String format = "png";
+    private Color backgroundColor = null;
+    private int width = -1;
+    private int height = -1;
+    private float[] scales = {1};
+    private boolean antiAlias = true;
+    private int interpolation = SVGIcon.INTERP_BICUBIC;
+    private boolean clipToViewBox = false;
+    private boolean sizeToFit = true;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Listener listener;
+
+    /**
+     * Creates a new instance of BatchRasterizer
+     */
+    public BatchRasterizer()
+    {
+    }
+
+    public String getFormat()
+    {
+        return format;
+    }
+
+    /**
+     * @param format ImageIO format name of the written images
+     */
+    public void setFormat(String format)
+    {
+        this.format = format;
+    }
+
+    public Color getBackgroundColor()
+    {
+        return backgroundColor;
+    }
+
+    /**
+     * @param backgroundColor color to fill images with before rendering, or
+     * null for a transparent background
+     */
+    public void setBackgroundColor(Color backgroundColor)
+    {
+        this.backgroundColor = backgroundColor;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @param width width of 1x images.  If not greater than 0, the width of
+     * the document is used.
+     */
+    public void setWidth(int width)
+    {
+        this.width = width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @param height height of 1x images.  If not greater than 0, the height
+     * of the document is used.
+     */
+    public void setHeight(int height)
+    {
+        this.height = height;
+    }
+
+    public float[] getScales()
+    {
+        return scales.clone();
+    }
+
+    /**
+     * Sets the sizes each document is rendered at, as multiples of the 1x
+     * size.  Images for scales other than 1 have a suffix such as "@2x"
+     * inserted before the file extension.
+     * @param scales
+     */
+    public void setScales(float... scales)
+    {
+        if (scales.length == 0)
+        {
+            throw new IllegalArgumentException("At least one scale is required");
+        }
+        for (float scale : scales)
+        {
+            if (!(scale > 0))
+            {
+                throw new IllegalArgumentException("Invalid scale " + scale);
+            }
+        }
+        this.scales = scales.clone();
+    }
+
+    /**
+     * Parses a comma or space separated list of scales, such as "1,2,3" or
+     * "1x 1.5x 2x".
+     * @param text
+     * @return
+     */
+    public static float[] parseScales(String text)
+    {
+        ArrayList<String> tokens = new ArrayList<>();
+        for (String token : text.trim().split("[\\s,]+"))
+        {
+            if (!token.isEmpty())
+            {
+                tokens.add(token);
+            }
+        }
+
+        float[] retScales = new float[tokens.size()];
+        for (int i = 0; i < retScales.length; ++i)
+        {
+            String token = tokens.get(i);
+            if (token.endsWith("x") || token.endsWith("X"))
+            {
+                token = token.substring(0, token.length() - 1);
+            }
+            retScales[i] = Float.parseFloat(token);
+        }
+        return retScales;
+    }
+
+    public boolean isAntiAlias()
+    {
+        return antiAlias;
+    }
+
+    public void setAntiAlias(boolean antiAlias)
+    {
+        this.antiAlias = antiAlias;
+    }
+
+    public int getInterpolation()
+    {
+        return interpolation;
+    }
+
+    /**
+     * @param interpolation one of the SVGIcon.INTERP_* constants
+     */
+    public void setInterpolation(int interpolation)
+    {
+        this.interpolation = interpolation;
+    }
+
+    /**
+     * Sets the interpolation from its name.  Can be one of "nearest neighbor",
+     * "bilinear" or "bicubic".  Unrecognized names are ignored.
+     * @param interpolation
+     */
+    public void setInterpolation(String interpolation)
+    {
+        if (interpolation.equals("nearest neighbor"))
+        {
+            this.interpolation = SVGIcon.INTERP_NEAREST_NEIGHBOR;
+        }
+        else if (interpolation.equals("bilinear"))
+        {
+            this.interpolation = SVGIcon.INTERP_BILINEAR;
+        }
+        else if (interpolation.equals("bicubic"))
+        {
+            this.interpolation = SVGIcon.INTERP_BICUBIC;
+        }
+    }
+
+    public boolean isClipToViewBox()
+    {
+        return clipToViewBox;
+    }
+
+    public void setClipToViewBox(boolean clipToViewBox)
+    {
+        this.clipToViewBox = clipToViewBox;
+    }
+
+    public boolean isSizeToFit()
+    {
+        return sizeToFit;
+    }
+
+    public void setSizeToFit(boolean sizeToFit)
+    {
+        this.sizeToFit = sizeToFit;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * @param threads number of threads used to parse and render documents.
+     * Defaults to the number of available processors.
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    public Listener getListener()
+    {
+        return listener;
+    }
+
+    public void setListener(Listener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a file to be rasterized.
+     * @param source SVG file to read
+     * @param dest file to write the 1x image to.  Other scales are written
+     * next to it.
+     */
+    public void addFile(File source, File dest)
+    {
+        jobs.add(new Job(source, dest));
+    }
+
+    /**
+     * Adds a file to be rasterized, writing its images to a directory.
+     * @param source SVG file to read
+     * @param destDir directory to write images to
+     * @param relativeName path of the image relative to destDir.  An .svg
+     * extension is replaced with the image format.
+     */
+    public void addFile(File source, File destDir, String relativeName)
+    {
+        addFile(source, new File(destDir, getImageName(relativeName)));
+    }
+
+    public int getNumFiles()
+    {
+        return jobs.size();
+    }
+
+    /**
+     * @param svgName
+     * @return the name of the 1x image written for an SVG file
+     */
+    public String getImageName(String svgName)
+    {
+        Matcher matchName = Pattern.compile("(.*)\\.svg", Pattern.CASE_INSENSITIVE).matcher(svgName);
+        if (matchName.matches())
+        {
+            svgName = matchName.group(1);
+        }
+        return svgName + "." + format;
+    }
+
+    /**
+     * @param dest file the 1x image is written to
+     * @param scale
+     * @return the file the image for the given scale is written to
+     */
+    public static File getScaledFile(File dest, float scale)
+    {
+        if (scale == 1)
+        {
+            return dest;
+        }
+
+        String scaleName = scale == (int)scale
+            ? Integer.toString((int)scale)
+            : Float.toString(scale);
+        String name = dest.getName();
+        int dot = name.lastIndexOf('.');
+        name = dot == -1
+            ? name + "@" + scaleName + "x"
+            : name.substring(0, dot) + "@" + scaleName + "x" + name.substring(dot);
+        return new File(dest.getParentFile(), name);
+    }
+
+    /**
+     * Rasterizes all added files.  Files that cannot be read, rendered or
+     * written are reported to the listener and counted in the summary; they
+     * do not stop the rest of the batch.
+     * @return statistics for the batch
+     * @throws InterruptedException
+     */
+    public Summary run() throws InterruptedException
+    {
+        final Summary summary = new Summary();
+        final int encoders = Math.max(1, threads / 2);
+        ExecutorService renderPool = Executors.newFixedThreadPool(threads, new WorkerFactory("svg-render"));
+        ExecutorService encodePool = Executors.newFixedThreadPool(encoders, new WorkerFactory("svg-encode"));
+
+        //Bounds the number of parsed documents and rendered images held in
+        // memory at once
+        final Semaphore inFlight = new Semaphore(2 * (threads + encoders));
+        ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        long startTime = System.nanoTime();
+        try
+        {
+            for (final Job job : jobs)
+            {
+                inFlight.acquire();
+
+                CompletableFuture<Void> future = CompletableFuture
+                    .supplyAsync(() -> decode(job, summary), renderPool)
+                    .thenApplyAsync(doc -> render(doc, summary), renderPool)
+                    .thenAcceptAsync(images -> encode(job, images, summary), encodePool)
+                    .handle((result, ex) ->
+                    {
+                        if (ex != null)
+                        {
+                            failed(job, ex, summary);
+                        }
+                        inFlight.release();
+                        return null;
+                    });
+                futures.add(future);
+            }
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).join();
+        }
+        finally
+        {
+            renderPool.shutdownNow();
+            encodePool.shutdownNow();
+        }
+
+        summary.elapsedNanos = System.nanoTime() - startTime;
+        return summary;
+    }
+
+    private SVGIcon decode(Job job, Summary summary)
+    {
+        long startTime = System.nanoTime();
+
+        SVGUniverse universe = new SVGUniverse();
+        URI uri = job.source.toURI();
+        SVGDiagram diagram = universe.getDiagram(uri);
+        if (diagram == null)
+        {
+            throw new CompletionException(new IOException("Could not load SVG document " + job.source));
+        }
+
+        SVGIcon icon = new SVGIcon();
+        icon.setSvgUniverse(universe);
+        icon.setSvgURI(uri);
+        icon.setAntiAlias(antiAlias);
+        icon.setInterpolation(interpolation);
+        icon.setClipToViewbox(clipToViewBox);
+
+        summary.decodeNanos.addAndGet(System.nanoTime() - startTime);
+        return icon;
+    }
+
+    private BufferedImage[] render(SVGIcon icon, Summary summary)
+    {
+        long startTime = System.nanoTime();
+
+        int baseWidth = width > 0 ? width : icon.getIconWidth();
+        int baseHeight = height > 0 ? height : icon.getIconHeight();
+
+        if (sizeToFit)
+        {
+            icon.setAutosize(SVGIcon.AUTOSIZE_STRETCH);
+        }
+
+        BufferedImage[] images = new BufferedImage[scales.length];
+        for (int i = 0; i < scales.length; ++i)
+        {
+            int imageWidth = Math.max(1, Math.round(baseWidth * scales[i]));
+            int imageHeight = Math.max(1, Math.round(baseHeight * scales[i]));
+            icon.setPreferredSize(new Dimension(imageWidth, imageHeight));
+
+            BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+
+            if (backgroundColor != null)
+            {
+                g.setColor(backgroundColor);
+                g.fillRect(0, 0, imageWidth, imageHeight);
+            }
+
+            g.setClip(0, 0, imageWidth, imageHeight);
+            if (!sizeToFit)
+            {
+                //The icon keeps its own size, so is scaled here instead
+                g.scale(scales[i], scales[i]);
+            }
+            icon.paintIcon(null, g, 0, 0);
+            g.dispose();
+
+            images[i] = image;
+        }
+
+        summary.renderNanos.addAndGet(System.nanoTime() - startTime);
+        return images;
+    }
+
+    private void encode(Job job, BufferedImage[] images, Summary summary)
+    {
+        long startTime = System.nanoTime();
+
+        for (int i = 0; i < images.length; ++i)
+        {
+            File dest = getScaledFile(job.dest, scales[i]);
+            try
+            {
+                File dir = dest.getAbsoluteFile().getParentFile();
+                if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+                {
+                    throw new IOException("Could not create directory " + dir);
+                }
+                if (!ImageIO.write(images[i], format, dest))
+                {
+                    throw new IOException("No image writer for format " + format);
+                }
+            }
+            catch (IOException e)
+            {
+                throw new CompletionException(e);
+            }
+
+            summary.numImages.incrementAndGet();
+            if (listener != null)
+            {
+                listener.imageWritten(job.source, dest);
+            }
+        }
+
+        summary.numFiles.incrementAndGet();
+        summary.encodeNanos.addAndGet(System.nanoTime() - startTime);
+    }
+
+    private void failed(Job job, Throwable ex, Summary summary)
+    {
+        while (ex instanceof CompletionException && ex.getCause() != null)
+        {
+            ex = ex.getCause();
+        }
+
+        summary.numFailures.incrementAndGet();
+        synchronized (summary.failures)
+        {
+            summary.failures.add(job.source);
+        }
+        if (listener != null)
+        {
+            listener.fileFailed(job.source, ex);
+        }
+    }
+
+    private static class Job
+    {
+        final File source;
+        final File dest;
+
+        Job(File source, File dest)
+        {
+            this.source = source;
+            this.dest = dest;
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory
+    {
+        final String name;
+        final AtomicInteger count = new AtomicInteger();
+
+        WorkerFactory(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Statistics for a batch run
+     */
+    public static class Summary
+    {
+        final AtomicInteger numFiles = new AtomicInteger();
+        final AtomicInteger numImages = new AtomicInteger();
+        final AtomicInteger numFailures = new AtomicInteger();
+        final AtomicLong decodeNanos = new AtomicLong();
+        final AtomicLong renderNanos = new AtomicLong();
+        final AtomicLong encodeNanos = new AtomicLong();
+        final List<File> failures = new ArrayList<>();
+        long elapsedNanos;
+
+        Summary()
+        {
+        }
+
+        /**
+         * @return number of files whose images were all written
+         */
+        public int getNumFiles()
+        {
+            return numFiles.get();
+        }
+
+        public int getNumImages()
+        {
+            return numImages.get();
+        }
+
+        public int getNumFailures()
+        {
+            return numFailures.get();
+        }
+
+        /**
+         * @return source files that could not be rasterized
+         */
+        public List<File> getFailures()
+        {
+            return new ArrayList<>(failures);
+        }
+
+        /**
+         * @return wall clock time of the run in milliseconds
+         */
+        public long getElapsedMillis()
+        {
+            return elapsedNanos / 1000000;
+        }
+
+        /**
+         * @return time spent parsing, summed over all threads, in milliseconds
+         */
+        public long getDecodeMillis()
+        {
+            return decodeNanos.get() / 1000000;
+        }
+
+        /**
+         * @return time spent rendering, summed over all threads, in milliseconds
+         */
+        public long getRenderMillis()
+        {
+            return renderNanos.get() / 1000000;
+        }
+
+        /**
+         * @return time spent encoding and writing images, summed over all
+         * threads, in milliseconds
+         */
+        public long getEncodeMillis()
+        {
+            return encodeNanos.get() / 1000000;
+        }
+
+        public double getFilesPerSecond()
+        {
+            return elapsedNanos == 0 ? 0 : numFiles.get() * 1e9 / elapsedNanos;
+        }
+
+        public double getImagesPerSecond()
+        {
+            return elapsedNanos == 0 ? 0 : numImages.get() * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format(Locale.ENGLISH,
+                "Rasterized %d files to %d images in %.2f s (%.1f files/s, %.1f images/s), %d failed; "
+                + "decode %d ms, render %d ms, encode %d ms",
+                getNumFiles(), getNumImages(), elapsedNanos / 1e9,
+                getFilesPerSecond(), getImagesPerSecond(), getNumFailures(),
+                getDecodeMillis(), getRenderMillis(), getEncodeMillis());
+        }
+    }
+}
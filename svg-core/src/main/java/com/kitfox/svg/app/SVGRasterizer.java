@@ -0,0 +1,219 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+
+package com.kitfox.svg.app;
+
+import com.kitfox.svg.xml.ColorTable;
+import java.io.File;
+
+/**
+ * Command line front end for BatchRasterizer.  Converts SVG files, or all
+ * SVG files found under a directory, into images.
+ *
+ * <pre>
+ * java -cp svgSalamander.jar com.kitfox.svg.app.SVGRasterizer -s 1,2,3 -d out icons
+ * </pre>
+ *
+ * @author kitfox
+ */
+public class SVGRasterizer
+{
+    private SVGRasterizer()
+    {
+    }
+
+    private static void usage()
+    {
+        System.err.println("Usage: SVGRasterizer [options] <file or directory>...");
+        System.err.println("Options:");
+        System.err.println("  -d <dir>           directory to write images to (default: next to each source)");
+        System.err.println("  -f <format>        image format (default: png)");
+        System.err.println("  -w <width>         width of 1x images (default: document width)");
+        System.err.println("  -h <height>        height of 1x images (default: document height)");
+        System.err.println("  -s <scales>        comma separated scales, eg 1,2,3 writes name, name@2x, name@3x");
+        System.err.println("  -t <threads>       number of render threads (default: number of processors)");
+        System.err.println("  -b <color>         background color (default: transparent)");
+        System.err.println("  -i <interpolation> nearest neighbor, bilinear or bicubic (default: bicubic)");
+        System.err.println("  -noaa              disable anti-aliasing");
+        System.err.println("  -clip              clip to the view box");
+        System.err.println("  -nofit             do not stretch the document to the image size");
+        System.err.println("  -v                 print each image as it is written");
+    }
+
+    private static void addSources(BatchRasterizer rasterizer, File source, File destDir, String relativeName)
+    {
+        if (source.isDirectory())
+        {
+            File[] children = source.listFiles();
+            if (children == null)
+            {
+                return;
+            }
+            for (File child : children)
+            {
+                addSources(rasterizer, child, destDir,
+                    relativeName == null ? child.getName() : relativeName + File.separator + child.getName());
+            }
+        }
+        else if (relativeName == null)
+        {
+            //Named explicitly on the command line
+            rasterizer.addFile(source, destDir == null ? source.getAbsoluteFile().getParentFile() : destDir, source.getName());
+        }
+        else if (source.getName().toLowerCase().endsWith(".svg"))
+        {
+            if (destDir == null)
+            {
+                rasterizer.addFile(source, source.getAbsoluteFile().getParentFile(), source.getName());
+            }
+            else
+            {
+                rasterizer.addFile(source, destDir, relativeName);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        BatchRasterizer rasterizer = new BatchRasterizer();
+        File destDir = null;
+        boolean verbose = false;
+        int firstSource = args.length;
+
+        try
+        {
+            for (int i = 0; i < args.length; ++i)
+            {
+                String arg = args[i];
+                if (!arg.startsWith("-"))
+                {
+                    firstSource = i;
+                    break;
+                }
+
+                switch (arg)
+                {
+                    case "-d":
+                        destDir = new File(args[++i]);
+                        break;
+                    case "-f":
+                        rasterizer.setFormat(args[++i]);
+                        break;
+                    case "-w":
+                        rasterizer.setWidth(Integer.parseInt(args[++i]));
+                        break;
+                    case "-h":
+                        rasterizer.setHeight(Integer.parseInt(args[++i]));
+                        break;
+                    case "-s":
+                        rasterizer.setScales(BatchRasterizer.parseScales(args[++i]));
+                        break;
+                    case "-t":
+                        rasterizer.setThreads(Integer.parseInt(args[++i]));
+                        break;
+                    case "-b":
+                        rasterizer.setBackgroundColor(ColorTable.parseColor(args[++i]));
+                        break;
+                    case "-i":
+                        rasterizer.setInterpolation(args[++i]);
+                        break;
+                    case "-noaa":
+                        rasterizer.setAntiAlias(false);
+                        break;
+                    case "-clip":
+                        rasterizer.setClipToViewBox(true);
+                        break;
+                    case "-nofit":
+                        rasterizer.setSizeToFit(false);
+                        break;
+                    case "-v":
+                        verbose = true;
+                        break;
+                    default:
+                        System.err.println("Unknown option " + arg);
+                        usage();
+                        System.exit(2);
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e)
+        {
+            System.err.println("Invalid arguments: " + e.getMessage());
+            usage();
+            System.exit(2);
+        }
+
+        if (firstSource == args.length)
+        {
+            usage();
+            System.exit(2);
+        }
+
+        for (int i = firstSource; i < args.length; ++i)
+        {
+            File source = new File(args[i]);
+            if (!source.exists())
+            {
+                System.err.println("No such file: " + source);
+                System.exit(2);
+            }
+            addSources(rasterizer, source, destDir, null);
+        }
+
+        final boolean printImages = verbose;
+        rasterizer.setListener(new BatchRasterizer.Listener()
+        {
+            @Override
+            public void imageWritten(File source, File dest)
+            {
+                if (printImages)
+                {
+                    System.out.println("Wrote " + dest);
+                }
+            }
+
+            @Override
+            public void fileFailed(File source, Throwable cause)
+            {
+                System.err.println("Could not rasterize " + source + ": " + cause);
+            }
+        });
+
+        BatchRasterizer.Summary summary = rasterizer.run();
+        System.out.println(summary);
+        System.exit(summary.getNumFailures() == 0 ? 0 : 1);
+    }
+}
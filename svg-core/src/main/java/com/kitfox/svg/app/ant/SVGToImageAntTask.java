@@ -37,11 +37,8 @@
 package com.kitfox.svg.app.ant;
 
 import java.awt.*;
-import java.awt.image.*;
 import java.util.*;
-import java.util.regex.*;
 import java.io.*;
-import javax.imageio.*;
 
 //import com.kitfox.util.*;
 //import com.kitfox.util.indexedObject.*;
@@ -49,8 +46,7 @@ import javax.imageio.*;
 import org.apache.tools.ant.*;
 import org.apache.tools.ant.types.*;
 
-import com.kitfox.svg.app.beans.*;
-import com.kitfox.svg.*;
+import com.kitfox.svg.app.BatchRasterizer;
 import com.kitfox.svg.xml.ColorTable;
 
 /**
@@ -80,6 +76,13 @@ import com.kitfox.svg.xml.ColorTable;
  * <li>sizeToFit - If true and the width and height of the output image differ
  * from that of the SVG image, the valid area of the SVG image will be resized 
  * to fit the specified size.</li>
+ * <li>scales - Comma separated list of scales to write each image at, relative
+ * to width and height.  Images for scales other than 1 have a suffix such as
+ * "@2x" added to their name.  Each file is only parsed once, so "1,2,3" writes
+ * a full icon set for little more than the cost of the largest size.
+ * Defaults to "1".</li>
+ * <li>threads - Number of threads used to render images.  Defaults to the
+ * number of available processors.</li>
  * <li>verbose - If true, prints out diagnostic information about processing.  
  * Defaults to false.</li>
  * </ul>
@@ -111,6 +114,8 @@ public class SVGToImageAntTask extends Task
     String interpolation = "bicubic";
     boolean clipToViewBox = false;
     boolean sizeToFit = true;
+    float[] scales = {1};
+    int threads = -1;
     
     /** Creates a new instance of IndexLoadObjectsAntTask */
     public SVGToImageAntTask()
@@ -163,6 +168,16 @@ public class SVGToImageAntTask extends Task
         this.clipToViewBox = clipToViewBox;
     }
     
+    public void setScales(String scales)
+    {
+        this.scales = BatchRasterizer.parseScales(scales);
+    }
+    
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+    
     public void setVerbose(boolean verbose)
     {
         this.verbose = verbose;
@@ -189,93 +204,74 @@ public class SVGToImageAntTask extends Task
     {
         if (verbose) log("Building SVG images");
         
-        for (FileSet fs : filesets) {
-            FileScanner scanner = fs.getDirectoryScanner(getProject());
-            String[] files = scanner.getIncludedFiles();
-            
-            try
-            {
-                File basedir = scanner.getBasedir();
-                
-                if (verbose) log("Scaning " + basedir);
-                
-                for (int i = 0; i < files.length; i++)
-                {
-//System.out.println("File " + files[i]);
-//System.out.println("BaseDir " + basedir);
-                    translate(basedir, files[i]);
-                }
-            }
-            catch (Exception e)
-            {
-                throw new BuildException(e);
-            }
-        }
-    }
-    
-    private void translate(File baseDir, String shortName) throws BuildException
-    {
-        File source = new File(baseDir, shortName);
-        
-        if (verbose) log("Reading file: " + source);
-        
-        Matcher matchName = Pattern.compile("(.*)\\.svg", Pattern.CASE_INSENSITIVE).matcher(shortName);
-        if (matchName.matches())
-        {
-            shortName = matchName.group(1);
-        }
-        shortName += "." + format;
-        
-        SVGIcon icon = new SVGIcon();
-        icon.setSvgURI(source.toURI());
-        icon.setAntiAlias(antiAlias);
-        if (interpolation.equals("nearest neighbor"))
+        BatchRasterizer rasterizer = new BatchRasterizer();
+        rasterizer.setFormat(format);
+        rasterizer.setBackgroundColor(backgroundColor);
+        rasterizer.setWidth(width);
+        rasterizer.setHeight(height);
+        rasterizer.setAntiAlias(antiAlias);
+        rasterizer.setInterpolation(interpolation);
+        rasterizer.setClipToViewBox(clipToViewBox);
+        rasterizer.setSizeToFit(sizeToFit);
+        try
         {
-            icon.setInterpolation(SVGIcon.INTERP_NEAREST_NEIGHBOR);
+            rasterizer.setScales(scales);
         }
-        else if (interpolation.equals("bilinear"))
+        catch (IllegalArgumentException e)
         {
-            icon.setInterpolation(SVGIcon.INTERP_BILINEAR);
+            throw new BuildException(e);
         }
-        else if (interpolation.equals("bicubic"))
+        if (threads > 0)
         {
-            icon.setInterpolation(SVGIcon.INTERP_BICUBIC);
+            rasterizer.setThreads(threads);
         }
         
-        int iconWidth = width > 0 ? width : icon.getIconWidth();
-        int iconHeight = height > 0 ? height : icon.getIconHeight();
-        icon.setClipToViewbox(clipToViewBox);
-        icon.setPreferredSize(new Dimension(iconWidth, iconHeight));
-        icon.setScaleToFit(sizeToFit);
-        BufferedImage image = new BufferedImage(iconWidth, iconHeight, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = image.createGraphics();
-        
-        if (backgroundColor != null)
-        {
-            g.setColor(backgroundColor);
-            g.fillRect(0, 0, iconWidth, iconHeight);
+        for (FileSet fs : filesets) {
+            FileScanner scanner = fs.getDirectoryScanner(getProject());
+            String[] files = scanner.getIncludedFiles();
+            File basedir = scanner.getBasedir();
+            
+            if (verbose) log("Scaning " + basedir);
+            
+            for (int i = 0; i < files.length; i++)
+            {
+                rasterizer.addFile(new File(basedir, files[i]),
+                    destDir == null ? basedir : destDir, files[i]);
+            }
         }
         
-        g.setClip(0, 0, iconWidth, iconHeight);
-//        g.fillRect(10, 10, 100, 100);
-        icon.paintIcon(null, g, 0, 0);
-        g.dispose();
-        
-        File outFile = destDir == null ? new File(baseDir, shortName) : new File(destDir, shortName);
-        if (verbose) log("Writing file: " + outFile);
+        //Called from the worker threads
+        rasterizer.setListener(new BatchRasterizer.Listener()
+        {
+            @Override
+            public synchronized void imageWritten(File source, File dest)
+            {
+                if (verbose) log("Wrote file: " + dest);
+            }
+            
+            @Override
+            public synchronized void fileFailed(File source, Throwable cause)
+            {
+                log("Error rasterizing " + source + ": " + cause.getMessage(), Project.MSG_ERR);
+            }
+        });
         
+        BatchRasterizer.Summary summary;
         try
         {
-            ImageIO.write(image, format, outFile);
+            summary = rasterizer.run();
         }
-        catch (IOException e)
+        catch (InterruptedException e)
         {
-            log("Error writing image: " + e.getMessage());
+            Thread.currentThread().interrupt();
             throw new BuildException(e);
         }
         
-        
-        SVGCache.getSVGUniverse().clear();
+        log(summary.toString());
+        if (summary.getNumFailures() > 0)
+        {
+            throw new BuildException(summary.getNumFailures() + " SVG files could not be converted");
+        }
     }
     
 }
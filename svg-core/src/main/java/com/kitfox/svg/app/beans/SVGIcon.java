@@ -53,6 +53,8 @@ import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.swing.ImageIcon;
 
 
@@ -91,6 +93,12 @@ public class SVGIcon extends ImageIcon
     
     Dimension preferredSize;
     
+    //Rasterized copies of this icon, most recently used last
+    private int rasterCacheSize = 0;
+    private transient LinkedHashMap<RasterKey, BufferedImage> rasterCache;
+    private transient SVGDiagram rasterCacheDiagram;
+    private transient int rasterCacheModCount;
+    
     /** Creates a new instance of SVGIcon */
     public SVGIcon()
     {
@@ -106,14 +114,52 @@ public class SVGIcon extends ImageIcon
         changes.removePropertyChangeListener(p);
     }
     
+    /**
+     * If the raster cache is enabled, the returned image is shared and
+     * should not be modified.
+     */
     @Override
     public Image getImage()
     {
+        if (rasterCacheSize > 0)
+        {
+            BufferedImage image = getCachedImage(1, 1);
+            if (image != null)
+            {
+                return image;
+            }
+        }
+        
         BufferedImage bi = new BufferedImage(getIconWidth(), getIconHeight(), BufferedImage.TYPE_INT_ARGB);
         paintIcon(null, bi.getGraphics(), 0, 0);
         return bi;
     }
     
+    /**
+     * Returns an image of this icon that is rasterized at the resolution of
+     * the device it is drawn to.  Unlike getImage(), it remains sharp when
+     * drawn to HiDPI displays.  The image is shared with all icons showing
+     * the same document at the same size and anti-aliasing setting, and its
+     * variants are cached.  The document is stretched to the current size of
+     * this icon.
+     * @return the image, or null if no document is loaded or it has no area
+     */
+    public SVGMultiResolutionImage getMultiResolutionImage()
+    {
+        if (svgUniverse.getDiagram(svgURI) == null)
+        {
+            return null;
+        }
+        
+        int width = getIconWidth();
+        int height = getIconHeight();
+        if (width <= 0 || height <= 0)
+        {
+            return null;
+        }
+        return SVGMultiResolutionImage.getInstance(svgUniverse, svgURI, width, height, antiAlias);
+    }
+    
     /**
      * @return height of this icon
      */
@@ -210,10 +256,109 @@ public class SVGIcon extends ImageIcon
     {
         //Copy graphics object so that 
         Graphics2D g = (Graphics2D)gg.create();
-        paintIcon(comp, g, x, y);
+        if (rasterCacheSize <= 0 || !paintCachedIcon(g, x, y))
+        {
+            paintIcon(comp, g, x, y);
+        }
         g.dispose();
     }
     
+    /**
+     * Draws this icon from the raster cache.
+     * @return false if the icon must be drawn as vectors instead
+     */
+    private boolean paintCachedIcon(Graphics2D g, int x, int y)
+    {
+        AffineTransform xform = g.getTransform();
+        if ((xform.getType() & ~(AffineTransform.TYPE_TRANSLATION
+            | AffineTransform.TYPE_UNIFORM_SCALE | AffineTransform.TYPE_GENERAL_SCALE)) != 0)
+        {
+            //Rotated, sheared or flipped
+            return false;
+        }
+        
+        BufferedImage image = getCachedImage(xform.getScaleX(), xform.getScaleY());
+        if (image == null)
+        {
+            return false;
+        }
+        
+        //Image is already at device resolution, so draw it untransformed
+        g.setTransform(AffineTransform.getTranslateInstance(
+            Math.round(xform.getScaleX() * x + xform.getTranslateX()),
+            Math.round(xform.getScaleY() * y + xform.getTranslateY())));
+        g.drawImage(image, 0, 0, null);
+        g.setTransform(xform);
+        return true;
+    }
+    
+    /**
+     * Looks up or renders a raster of this icon at the given device scale.
+     * @return the image, or null if there is nothing to draw
+     */
+    private BufferedImage getCachedImage(double scaleX, double scaleY)
+    {
+        SVGDiagram diagram = svgUniverse.getDiagram(svgURI);
+        if (diagram == null)
+        {
+            return null;
+        }
+        
+        int width = getIconWidth();
+        int height = getIconHeight();
+        int imageWidth = (int)Math.ceil(width * scaleX);
+        int imageHeight = (int)Math.ceil(height * scaleY);
+        if (imageWidth <= 0 || imageHeight <= 0)
+        {
+            return null;
+        }
+        
+        //Drop everything if the document has been edited
+        if (rasterCache == null || diagram != rasterCacheDiagram
+            || diagram.getModificationCount() != rasterCacheModCount)
+        {
+            clearRasterCache();
+            rasterCacheDiagram = diagram;
+            rasterCacheModCount = diagram.getModificationCount();
+        }
+        
+        RasterKey key = new RasterKey(width, height, antiAlias, interpolation,
+            scaleX, scaleY, svgUniverse.getCurTime());
+        BufferedImage image = rasterCache.get(key);
+        if (image == null)
+        {
+            image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.scale(scaleX, scaleY);
+            paintIcon(null, g, 0, 0);
+            g.dispose();
+            
+            rasterCache.put(key, image);
+        }
+        return image;
+    }
+    
+    private void clearRasterCache()
+    {
+        if (rasterCacheSize <= 0)
+        {
+            rasterCache = null;
+            return;
+        }
+        
+        final int maxSize = rasterCacheSize;
+        rasterCache = new LinkedHashMap<RasterKey, BufferedImage>(16, .75f, true)
+        {
+            public static final long serialVersionUID = 0;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RasterKey, BufferedImage> eldest)
+            {
+                return size() > maxSize;
+            }
+        };
+    }
+    
     private void paintIcon(Component comp, Graphics2D g, int x, int y)
     {
         Object oldAliasHint = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
@@ -350,6 +495,7 @@ public class SVGIcon extends ImageIcon
     {
         SVGUniverse old = this.svgUniverse;
         this.svgUniverse = svgUniverse;
+        clearRasterCache();
         changes.firePropertyChange("svgUniverse", old, svgUniverse);
     }
     
@@ -369,6 +515,7 @@ public class SVGIcon extends ImageIcon
     {
         URI old = this.svgURI;
         this.svgURI = svgURI;
+        clearRasterCache();
         
         SVGDiagram diagram = svgUniverse.getDiagram(svgURI);
         if (diagram != null)
@@ -393,6 +540,7 @@ public class SVGIcon extends ImageIcon
     {
         URI old = this.svgURI;
         
+        clearRasterCache();
         try
         {
             svgURI = new URI(getClass().getResource(resourcePath).toString());
@@ -452,6 +600,7 @@ public class SVGIcon extends ImageIcon
     {
         Dimension old = this.preferredSize;
         this.preferredSize = preferredSize;
+        clearRasterCache();
         
         SVGDiagram diagram = svgUniverse.getDiagram(svgURI);
         if (diagram != null)
@@ -533,6 +682,7 @@ public class SVGIcon extends ImageIcon
     public void setClipToViewbox(boolean clipToViewbox)
     {
         this.clipToViewbox = clipToViewbox;
+        clearRasterCache();
     }
 
     /**
@@ -550,7 +700,95 @@ public class SVGIcon extends ImageIcon
     {
         int oldAutosize = this.autosize;
         this.autosize = autosize;
+        clearRasterCache();
         changes.firePropertyChange(PROP_AUTOSIZE, oldAutosize, autosize);
     }
+
+    /**
+     * @return number of rasterized images of this icon kept for reuse
+     */
+    public int getRasterCacheSize()
+    {
+        return rasterCacheSize;
+    }
+
+    /**
+     * Enables caching of this icon as an image.  When enabled, the icon is
+     * rendered once for each combination of size, anti-aliasing,
+     * interpolation, device scale and animation time, and repainting draws
+     * the stored image.  The least recently used images are discarded once
+     * more than rasterCacheSize are held.  Cached images are cleared when the
+     * document, size or autosize of this icon changes, or when the document
+     * is modified.
+     *
+     * Content outside the bounds of the icon is not drawn from the cache, and
+     * graphics contexts that rotate or flip the icon are always drawn as
+     * vectors.
+     *
+     * @param rasterCacheSize maximum number of images to keep, or 0 to
+     * disable the cache.  Defaults to 0.
+     */
+    public void setRasterCacheSize(int rasterCacheSize)
+    {
+        int old = this.rasterCacheSize;
+        this.rasterCacheSize = Math.max(0, rasterCacheSize);
+        clearRasterCache();
+        changes.firePropertyChange("rasterCacheSize", old, this.rasterCacheSize);
+    }
+    
+    /**
+     * Identifies one rasterized image of this icon
+     */
+    private static class RasterKey
+    {
+        final int width;
+        final int height;
+        final boolean antiAlias;
+        final int interpolation;
+        final double scaleX;
+        final double scaleY;
+        final double time;
+
+        RasterKey(int width, int height, boolean antiAlias, int interpolation, double scaleX, double scaleY, double time)
+        {
+            this.width = width;
+            this.height = height;
+            this.antiAlias = antiAlias;
+            this.interpolation = interpolation;
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+            this.time = time;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof RasterKey))
+            {
+                return false;
+            }
+            RasterKey other = (RasterKey)obj;
+            return width == other.width
+                && height == other.height
+                && antiAlias == other.antiAlias
+                && interpolation == other.interpolation
+                && Double.compare(scaleX, other.scaleX) == 0
+                && Double.compare(scaleY, other.scaleY) == 0
+                && Double.compare(time, other.time) == 0;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = width;
+            hash = 31 * hash + height;
+            hash = 31 * hash + (antiAlias ? 1 : 0);
+            hash = 31 * hash + interpolation;
+            hash = 31 * hash + Double.hashCode(scaleX);
+            hash = 31 * hash + Double.hashCode(scaleY);
+            hash = 31 * hash + Double.hashCode(time);
+            return hash;
+        }
+    }
         
 }
@@ -0,0 +1,289 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+
+package com.kitfox.svg.app.beans;
+
+import com.kitfox.svg.SVGDiagram;
+import com.kitfox.svg.SVGUniverse;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.AbstractMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An image of an SVG document that is rasterized on demand at whatever
+ * resolution it is drawn at.  Swing and Java2D ask a MultiResolutionImage
+ * for the variant matching the scale of the screen it is drawn on, so an
+ * icon backed by this image stays sharp on HiDPI displays and is only
+ * rendered once per scale.
+ *
+ * <p>Images are shared: while an image is in use, every request for the same
+ * document, size and anti-aliasing setting returns the same instance, so
+ * components showing the same icon also share its rendered variants.  Images
+ * are only held weakly, so an image nobody refers to any more, and the
+ * universe it renders, can be collected.  Variants are discarded when the
+ * document is modified.</p>
+ *
+ * @author kitfox
+ */
+public class SVGMultiResolutionImage extends AbstractMultiResolutionImage
+{
+    /**
+     * Maximum number of resolution variants kept for each image
+     */
+    static final int MAX_VARIANTS = 4;
+
+    //Images in use, by universe.  Both are held weakly since images refer
+    // to their universe.
+    private static final WeakHashMap<SVGUniverse, HashMap<ImageKey, WeakReference<SVGMultiResolutionImage>>> sharedImages
+        = new WeakHashMap<SVGUniverse, HashMap<ImageKey, WeakReference<SVGMultiResolutionImage>>>();
+
+    private final SVGUniverse universe;
+    private final URI svgURI;
+    private final int width;
+    private final int height;
+    private final SVGIcon icon;
+
+    //Variants keyed by pixel size, most recently used last
+    private final LinkedHashMap<Dimension, BufferedImage> variants
+        = new LinkedHashMap<Dimension, BufferedImage>(8, .75f, true)
+        {
+            public static final long serialVersionUID = 0;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Dimension, BufferedImage> eldest)
+            {
+                return size() > MAX_VARIANTS;
+            }
+        };
+    private SVGDiagram variantDiagram;
+    private int variantModCount;
+    //Guards the variants
+    private final Object variantLock = new Object();
+
+    private SVGMultiResolutionImage(SVGUniverse universe, URI svgURI, int width, int height, boolean antiAlias)
+    {
+        this.universe = universe;
+        this.svgURI = svgURI;
+        this.width = width;
+        this.height = height;
+
+        icon = new SVGIcon();
+        icon.setSvgUniverse(universe);
+        icon.setSvgURI(svgURI);
+        icon.setAntiAlias(antiAlias);
+        icon.setInterpolation(SVGIcon.INTERP_BICUBIC);
+        icon.setAutosize(SVGIcon.AUTOSIZE_STRETCH);
+        icon.setPreferredSize(new Dimension(width, height));
+    }
+
+    /**
+     * Returns the shared image of a document.
+     * @param universe universe the document is loaded from
+     * @param svgURI URI of the document
+     * @param width width of the image at a scale of 1.  The document is
+     * stretched to fill it.
+     * @param height height of the image at a scale of 1
+     * @param antiAlias true to render with anti-aliasing
+     * @return the image
+     */
+    public static SVGMultiResolutionImage getInstance(SVGUniverse universe, URI svgURI, int width, int height, boolean antiAlias)
+    {
+        if (svgURI == null)
+        {
+            throw new IllegalArgumentException("No document URI");
+        }
+        if (width <= 0 || height <= 0)
+        {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+
+        ImageKey key = new ImageKey(svgURI, width, height, antiAlias);
+        synchronized (sharedImages)
+        {
+            HashMap<ImageKey, WeakReference<SVGMultiResolutionImage>> images = sharedImages.get(universe);
+            if (images == null)
+            {
+                images = new HashMap<ImageKey, WeakReference<SVGMultiResolutionImage>>();
+                sharedImages.put(universe, images);
+            }
+
+            WeakReference<SVGMultiResolutionImage> ref = images.get(key);
+            SVGMultiResolutionImage image = ref == null ? null : ref.get();
+            if (image == null)
+            {
+                //Drop entries of images which have been collected
+                images.values().removeIf(r -> r.get() == null);
+                image = new SVGMultiResolutionImage(universe, svgURI, width, height, antiAlias);
+                images.put(key, new WeakReference<SVGMultiResolutionImage>(image));
+            }
+            return image;
+        }
+    }
+
+    public URI getSvgURI()
+    {
+        return svgURI;
+    }
+
+    @Override
+    public int getWidth(ImageObserver observer)
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight(ImageObserver observer)
+    {
+        return height;
+    }
+
+    @Override
+    protected Image getBaseImage()
+    {
+        return getResolutionVariant(width, height);
+    }
+
+    /**
+     * Returns the document rasterized at the given size, rendering it if
+     * it has not been drawn at this size since it was last modified.
+     */
+    @Override
+    public Image getResolutionVariant(double destImageWidth, double destImageHeight)
+    {
+        if (!(destImageWidth > 0) || !(destImageHeight > 0))
+        {
+            throw new IllegalArgumentException("Invalid variant size " + destImageWidth + "x" + destImageHeight);
+        }
+
+        Dimension size = new Dimension(
+            Math.max(1, (int)Math.ceil(destImageWidth)),
+            Math.max(1, (int)Math.ceil(destImageHeight)));
+
+        //May wait for another thread to finish loading the document, so no
+        // lock may be held
+        SVGDiagram diagram = universe.getDiagram(svgURI);
+        synchronized (variantLock)
+        {
+            if (diagram != variantDiagram
+                || (diagram != null && diagram.getModificationCount() != variantModCount))
+            {
+                variants.clear();
+                variantDiagram = diagram;
+                variantModCount = diagram == null ? 0 : diagram.getModificationCount();
+            }
+
+            BufferedImage variant = variants.get(size);
+            if (variant == null)
+            {
+                variant = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+                if (diagram != null)
+                {
+                    Graphics2D g = variant.createGraphics();
+                    g.scale((double)size.width / width, (double)size.height / height);
+                    icon.paintIcon(null, g, 0, 0);
+                    g.dispose();
+                }
+                variants.put(size, variant);
+            }
+            return variant;
+        }
+    }
+
+    /**
+     * @return the variants that have been rendered so far, always including
+     * the base image
+     */
+    @Override
+    public List<Image> getResolutionVariants()
+    {
+        getBaseImage();
+        synchronized (variantLock)
+        {
+            return new ArrayList<Image>(variants.values());
+        }
+    }
+
+    private static class ImageKey
+    {
+        final URI svgURI;
+        final int width;
+        final int height;
+        final boolean antiAlias;
+
+        ImageKey(URI svgURI, int width, int height, boolean antiAlias)
+        {
+            this.svgURI = svgURI;
+            this.width = width;
+            this.height = height;
+            this.antiAlias = antiAlias;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof ImageKey))
+            {
+                return false;
+            }
+            ImageKey other = (ImageKey)obj;
+            return svgURI.equals(other.svgURI)
+                && width == other.width
+                && height == other.height
+                && antiAlias == other.antiAlias;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = svgURI.hashCode();
+            hash = 31 * hash + width;
+            hash = 31 * hash + height;
+            hash = 31 * hash + (antiAlias ? 1 : 0);
+            return hash;
+        }
+    }
+}
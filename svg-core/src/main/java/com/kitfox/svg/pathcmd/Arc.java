@@ -130,6 +130,20 @@ public class Arc extends PathCommand
                                    boolean sweepFlag,
                                    float x, float y, float x0, float y0) 
     {
+        appendArc(path, rx, ry, angle, largeArcFlag, sweepFlag, x, y, x0, y0);
+    }
+
+    /**
+     * Appends an elliptical arc to any path.
+     *
+     * @see #arcTo(GeneralPath, float, float, float, boolean, boolean, float, float, float, float)
+     */
+    public static void appendArc(Path2D path, float rx, float ry,
+                                   float angle,
+                                   boolean largeArcFlag,
+                                   boolean sweepFlag,
+                                   float x, float y, float x0, float y0) 
+    {
 
         // Ensure radii are valid
         if (rx == 0 || ry == 0) {
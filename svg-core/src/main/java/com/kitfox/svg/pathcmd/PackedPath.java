@@ -0,0 +1,446 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+package com.kitfox.svg.pathcmd;
+
+import com.kitfox.svg.xml.XMLParseUtil;
+import java.awt.geom.GeneralPath;
+import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Path data held as a compact stream of commands and coordinates.  Each
+ * command is stored as the byte of its SVG command letter, and its arguments
+ * are stored in order in a single coordinate array.  Arc flags are stored as
+ * 0 or 1.  Instances are never modified once created, so elements with the
+ * same path data share a single instance.
+ *
+ * @author kitfox
+ */
+public class PackedPath implements Serializable
+{
+    public static final long serialVersionUID = 0;
+
+    private final byte[] ops;
+    private final float[] coords;
+
+    //Shapes built from this path.  Dropped under memory pressure and rebuilt
+    // when needed again.  Volatile since threads rendering in parallel
+    // share them.
+    private transient volatile SoftReference<GeneralPath> nonZeroShape;
+    private transient volatile SoftReference<GeneralPath> evenOddShape;
+
+    //Parsed paths, keyed by the string they were parsed from.  Entries go
+    // away once no element holds on to the string any more.
+    private static final Interner sharedPaths = new Interner();
+    private static final Interner sharedPolylines = new Interner();
+    private static final Interner sharedPolygons = new Interner();
+
+    PackedPath(byte[] ops, float[] coords)
+    {
+        this.ops = ops;
+        this.coords = coords;
+    }
+
+    /**
+     * Returns the parsed form of SVG path data.  Identical path data is only
+     * parsed once and the result is shared.
+     *
+     * @param d - Path data, as found in the d attribute of a path
+     * @return the parsed path
+     */
+    public static PackedPath forPathData(String d)
+    {
+        PackedPath path = sharedPaths.get(d);
+        if (path == null)
+        {
+            path = new PathParser(d).parsePackedPath();
+            sharedPaths.put(d, path);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the path connecting a list of points, as used by the polyline
+     * and polygon elements.  Identical point lists are only parsed once and
+     * the result is shared.
+     *
+     * @param pointsStrn - Whitespace or comma separated list of coordinates
+     * @param closed - true to close the path, as for a polygon
+     * @return the parsed path
+     */
+    public static PackedPath forPoints(String pointsStrn, boolean closed)
+    {
+        Interner shared = closed ? sharedPolygons : sharedPolylines;
+        PackedPath path = shared.get(pointsStrn);
+        if (path == null)
+        {
+            float[] points = XMLParseUtil.parseFloatList(pointsStrn);
+            int numPoints = points.length / 2;
+            if (numPoints == 0)
+            {
+                path = new PackedPath(new byte[0], new float[0]);
+            }
+            else
+            {
+                byte[] pathOps = new byte[closed ? numPoints + 1 : numPoints];
+                pathOps[0] = 'M';
+                for (int i = 1; i < numPoints; ++i)
+                {
+                    pathOps[i] = 'L';
+                }
+                if (closed)
+                {
+                    pathOps[numPoints] = 'Z';
+                }
+                path = new PackedPath(pathOps, points.length == numPoints * 2
+                    ? points : Arrays.copyOf(points, numPoints * 2));
+            }
+            shared.put(pointsStrn, path);
+        }
+        return path;
+    }
+
+    /**
+     * @return number of commands in this path
+     */
+    public int getNumCommands()
+    {
+        return ops.length;
+    }
+
+    /**
+     * @return number of coordinate values stored for all commands
+     */
+    public int getNumCoords()
+    {
+        return coords.length;
+    }
+
+    /**
+     * Returns the shape this path describes.  The shape is built the first
+     * time it is needed and then shared by every user of this path, so it
+     * must not be modified or handed out to code outside the library.
+     *
+     * @param windingRule - GeneralPath.WIND_NON_ZERO or WIND_EVEN_ODD
+     * @return the shared shape
+     */
+    public GeneralPath getShape(int windingRule)
+    {
+        boolean evenOdd = windingRule == GeneralPath.WIND_EVEN_ODD;
+        SoftReference<GeneralPath> ref = evenOdd ? evenOddShape : nonZeroShape;
+        GeneralPath shape = ref == null ? null : ref.get();
+        if (shape == null)
+        {
+            shape = buildPath(windingRule);
+            ref = new SoftReference<GeneralPath>(shape);
+            if (evenOdd)
+            {
+                evenOddShape = ref;
+            }
+            else
+            {
+                nonZeroShape = ref;
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * Builds a new shape for this path.
+     *
+     * @param windingRule - GeneralPath.WIND_NON_ZERO or WIND_EVEN_ODD
+     * @return a new path
+     */
+    public GeneralPath buildPath(int windingRule)
+    {
+        GeneralPath path = new GeneralPath(windingRule, ops.length + 2);
+
+        float startX = 0, startY = 0;
+        float lastX = 0, lastY = 0;
+        float knotX = 0, knotY = 0;
+        int c = 0;
+        for (int i = 0; i < ops.length; ++i)
+        {
+            char op = (char)ops[i];
+            boolean rel = op >= 'a';
+            float offx = rel ? lastX : 0f;
+            float offy = rel ? lastY : 0f;
+
+            switch (op)
+            {
+                case 'M':
+                case 'm':
+                {
+                    float x = coords[c++] + offx;
+                    float y = coords[c++] + offy;
+                    path.moveTo(x, y);
+                    startX = knotX = lastX = x;
+                    startY = knotY = lastY = y;
+                    break;
+                }
+                case 'L':
+                case 'l':
+                {
+                    float x = coords[c++] + offx;
+                    float y = coords[c++] + offy;
+                    path.lineTo(x, y);
+                    knotX = lastX = x;
+                    knotY = lastY = y;
+                    break;
+                }
+                case 'H':
+                case 'h':
+                {
+                    float x = coords[c++] + offx;
+                    path.lineTo(x, lastY);
+                    knotX = lastX = x;
+                    knotY = lastY;
+                    break;
+                }
+                case 'V':
+                case 'v':
+                {
+                    float y = coords[c++] + offy;
+                    path.lineTo(lastX, y);
+                    knotX = lastX;
+                    knotY = lastY = y;
+                    break;
+                }
+                case 'A':
+                case 'a':
+                {
+                    float rx = coords[c++];
+                    float ry = coords[c++];
+                    float xAxisRot = coords[c++];
+                    boolean largeArc = coords[c++] != 0;
+                    boolean sweep = coords[c++] != 0;
+                    float x = coords[c++] + offx;
+                    float y = coords[c++] + offy;
+                    Arc.appendArc(path, rx, ry, xAxisRot, largeArc, sweep,
+                        x, y, lastX, lastY);
+                    knotX = lastX = x;
+                    knotY = lastY = y;
+                    break;
+                }
+                case 'Q':
+                case 'q':
+                {
+                    float kx = coords[c++] + offx;
+                    float ky = coords[c++] + offy;
+                    float x = coords[c++] + offx;
+                    float y = coords[c++] + offy;
+                    path.quadTo(kx, ky, x, y);
+                    lastX = x;
+                    lastY = y;
+                    knotX = kx;
+                    knotY = ky;
+                    break;
+                }
+                case 'T':
+                case 't':
+                {
+                    //Knot is reflection of last knot
+                    float kx = lastX * 2f - knotX;
+                    float ky = lastY * 2f - knotY;
+                    float x = coords[c++] + offx;
+                    float y = coords[c++] + offy;
+                    path.quadTo(kx, ky, x, y);
+                    lastX = x;
+                    lastY = y;
+                    knotX = kx;
+                    knotY = ky;
+                    break;
+                }
+                case 'C':
+                case 'c':
+                {
+                    float k1x = coords[c++] + offx;
+                    float k1y = coords[c++] + offy;
+                    float k2x = coords[c++] + offx;
+                    float k2y = coords[c++] + offy;
+                    float x = coords[c++] + offx;
+                    float y = coords[c++] + offy;
+                    path.curveTo(k1x, k1y, k2x, k2y, x, y);
+                    lastX = x;
+                    lastY = y;
+                    knotX = k2x;
+                    knotY = k2y;
+                    break;
+                }
+                case 'S':
+                case 's':
+                {
+                    //First knot is reflection of last knot
+                    float k1x = lastX * 2f - knotX;
+                    float k1y = lastY * 2f - knotY;
+                    float k2x = coords[c++] + offx;
+                    float k2y = coords[c++] + offy;
+                    float x = coords[c++] + offx;
+                    float y = coords[c++] + offy;
+                    path.curveTo(k1x, k1y, k2x, k2y, x, y);
+                    lastX = x;
+                    lastY = y;
+                    knotX = k2x;
+                    knotY = k2y;
+                    break;
+                }
+                case 'Z':
+                case 'z':
+                    path.closePath();
+                    knotX = lastX = startX;
+                    knotY = lastY = startY;
+                    break;
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * @return the commands of this path as PathCommand objects
+     */
+    public PathCommand[] toCommands()
+    {
+        PathCommand[] commands = new PathCommand[ops.length];
+        int c = 0;
+        for (int i = 0; i < ops.length; ++i)
+        {
+            char op = (char)ops[i];
+            boolean rel = op >= 'a';
+
+            switch (op)
+            {
+                case 'M':
+                case 'm':
+                    commands[i] = new MoveTo(rel, coords[c], coords[c + 1]);
+                    c += 2;
+                    break;
+                case 'L':
+                case 'l':
+                    commands[i] = new LineTo(rel, coords[c], coords[c + 1]);
+                    c += 2;
+                    break;
+                case 'H':
+                case 'h':
+                    commands[i] = new Horizontal(rel, coords[c++]);
+                    break;
+                case 'V':
+                case 'v':
+                    commands[i] = new Vertical(rel, coords[c++]);
+                    break;
+                case 'A':
+                case 'a':
+                    commands[i] = new Arc(rel, coords[c], coords[c + 1],
+                        coords[c + 2],
+                        coords[c + 3] != 0, coords[c + 4] != 0,
+                        coords[c + 5], coords[c + 6]);
+                    c += 7;
+                    break;
+                case 'Q':
+                case 'q':
+                    commands[i] = new Quadratic(rel, coords[c], coords[c + 1],
+                        coords[c + 2], coords[c + 3]);
+                    c += 4;
+                    break;
+                case 'T':
+                case 't':
+                    commands[i] = new QuadraticSmooth(rel, coords[c], coords[c + 1]);
+                    c += 2;
+                    break;
+                case 'C':
+                case 'c':
+                    commands[i] = new Cubic(rel, coords[c], coords[c + 1],
+                        coords[c + 2], coords[c + 3],
+                        coords[c + 4], coords[c + 5]);
+                    c += 6;
+                    break;
+                case 'S':
+                case 's':
+                    commands[i] = new CubicSmooth(rel, coords[c], coords[c + 1],
+                        coords[c + 2], coords[c + 3]);
+                    c += 4;
+                    break;
+                case 'Z':
+                case 'z':
+                    commands[i] = new Terminal();
+                    break;
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Maps strings weakly to the paths parsed from them.  The map is split
+     * into stripes, each with its own lock, so that documents loaded in
+     * parallel rarely wait on each other.
+     */
+    private static class Interner
+    {
+        private static final int NUM_STRIPES = 64;
+
+        private final Map<String, PackedPath>[] stripes;
+
+        @SuppressWarnings("unchecked")
+        Interner()
+        {
+            stripes = new Map[NUM_STRIPES];
+            for (int i = 0; i < NUM_STRIPES; ++i)
+            {
+                stripes[i] = Collections.synchronizedMap(new WeakHashMap<String, PackedPath>());
+            }
+        }
+
+        private Map<String, PackedPath> stripe(String key)
+        {
+            int hash = key == null ? 0 : key.hashCode();
+            return stripes[(hash ^ (hash >>> 16)) & (NUM_STRIPES - 1)];
+        }
+
+        PackedPath get(String key)
+        {
+            return stripe(key).get(key);
+        }
+
+        void put(String key, PackedPath path)
+        {
+            stripe(key).put(key, path);
+        }
+    }
+}
@@ -34,8 +34,8 @@
  */
 package com.kitfox.svg.pathcmd;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.kitfox.svg.xml.XMLParseUtil;
+import java.util.Arrays;
 
 /**
  * A helper for parsing {@link PathCommand}s.
@@ -59,6 +59,12 @@ public class PathParser
     private int index;
     private char currentCommand;
 
+    //Packed command stream being written
+    private byte[] ops;
+    private int numOps;
+    private float[] coords;
+    private int numCoords;
+
     public PathParser(String input) {
         this.input = input.trim();
         this.inputLength = this.input.length();
@@ -141,6 +147,12 @@ public class PathParser
         }
         int end = index;
         consumeWhiteSpaceOrSeparator();
+        if (end > start && XMLParseUtil.scanNumberEnd(input, start) == end)
+        {
+            return XMLParseUtil.parseFloat(input, start, end);
+        }
+
+        //Forms such as "1." are only understood by Float.parseFloat()
         String token = input.substring(start, end);
         try
         {
@@ -160,20 +172,59 @@ public class PathParser
         }
         int end = index;
         consumeWhiteSpaceOrSeparator();
-        String token = input.substring(start, end);
-        if (token.isEmpty()) {
+        if (end == start) {
             String msg = "Unexpected element while parsing cmd '" + currentCommand
                     + "' encountered empty flag. rest=" + input.substring(start, Math.min(input.length(), start + 10))
                     + " (index=" + index + " in input=" + input + ")";
             throw new IllegalStateException(msg);
         }
-        return "1".equals(token);
+        return input.charAt(start) == '1';
+    }
+
+    private void addOp(char op)
+    {
+        if (numOps == ops.length)
+        {
+            ops = Arrays.copyOf(ops, numOps * 2);
+        }
+        ops[numOps++] = (byte)op;
+    }
+
+    private void addFloats(int count)
+    {
+        if (numCoords + count > coords.length)
+        {
+            coords = Arrays.copyOf(coords, Math.max(numCoords + count, coords.length * 2));
+        }
+        for (int i = 0; i < count; ++i)
+        {
+            coords[numCoords++] = nextFloat();
+        }
+    }
+
+    private void addFlag()
+    {
+        coords[numCoords++] = nextFlag() ? 1f : 0f;
     }
 
     public PathCommand[] parsePathCommand()
     {
-        List<PathCommand> commands = new ArrayList<>();
-        
+        return parsePackedPath().toCommands();
+    }
+
+    /**
+     * Parses the path data in a single pass straight into a packed stream of
+     * commands and coordinates, without creating a PathCommand per segment.
+     *
+     * @return the parsed path
+     */
+    public PackedPath parsePackedPath()
+    {
+        ops = new byte[16];
+        numOps = 0;
+        coords = new float[Math.max(16, inputLength / 4)];
+        numCoords = 0;
+
         currentCommand = 'Z';
         while (hasNext())
         {
@@ -185,90 +236,67 @@ public class PathParser
             }
             consumeWhiteSpaceOrSeparator();
 
-            PathCommand cmd;
             switch (currentCommand)
             {
                 case 'M':
-                    cmd = new MoveTo(false, nextFloat(), nextFloat());
-                    currentCommand = 'L';
-                    break;
                 case 'm':
-                    cmd = new MoveTo(true, nextFloat(), nextFloat());
-                    currentCommand = 'l';
+                    addOp(currentCommand);
+                    addFloats(2);
+                    //Subsequent pairs are implicit lineto commands
+                    currentCommand = currentCommand == 'M' ? 'L' : 'l';
                     break;
                 case 'L':
-                    cmd = new LineTo(false, nextFloat(), nextFloat());
-                    break;
                 case 'l':
-                    cmd = new LineTo(true, nextFloat(), nextFloat());
+                case 'T':
+                case 't':
+                    addOp(currentCommand);
+                    addFloats(2);
                     break;
                 case 'H':
-                    cmd = new Horizontal(false, nextFloat());
-                    break;
                 case 'h':
-                    cmd = new Horizontal(true, nextFloat());
-                    break;
                 case 'V':
-                    cmd = new Vertical(false, nextFloat());
-                    break;
                 case 'v':
-                    cmd = new Vertical(true, nextFloat());
+                    addOp(currentCommand);
+                    addFloats(1);
                     break;
                 case 'A':
-                    cmd = new Arc(false, nextFloat(), nextFloat(),
-                                  nextFloat(),
-                                  nextFlag(), nextFlag(),
-                                  nextFloat(), nextFloat());
-                    break;
                 case 'a':
-                    cmd = new Arc(true, nextFloat(), nextFloat(),
-                                  nextFloat(),
-                                  nextFlag(), nextFlag(),
-                                  nextFloat(), nextFloat());
+                    addOp(currentCommand);
+                    addFloats(3);
+                    if (numCoords + 4 > coords.length)
+                    {
+                        coords = Arrays.copyOf(coords, coords.length * 2 + 4);
+                    }
+                    addFlag();
+                    addFlag();
+                    addFloats(2);
                     break;
                 case 'Q':
-                    cmd = new Quadratic(false, nextFloat(), nextFloat(),
-                                        nextFloat(), nextFloat());
-                    break;
                 case 'q':
-                    cmd = new Quadratic(true, nextFloat(), nextFloat(),
-                                        nextFloat(), nextFloat());
-                    break;
-                case 'T':
-                    cmd = new QuadraticSmooth(false, nextFloat(), nextFloat());
-                    break;
-                case 't':
-                    cmd = new QuadraticSmooth(true, nextFloat(), nextFloat());
+                case 'S':
+                case 's':
+                    addOp(currentCommand);
+                    addFloats(4);
                     break;
                 case 'C':
-                    cmd = new Cubic(false, nextFloat(), nextFloat(),
-                                    nextFloat(), nextFloat(),
-                                    nextFloat(), nextFloat());
-                    break;
                 case 'c':
-                    cmd = new Cubic(true, nextFloat(), nextFloat(),
-                                    nextFloat(), nextFloat(),
-                                    nextFloat(), nextFloat());
-                    break;
-                case 'S':
-                    cmd = new CubicSmooth(false, nextFloat(), nextFloat(),
-                                          nextFloat(), nextFloat());
-                    break;
-                case 's':
-                    cmd = new CubicSmooth(true, nextFloat(), nextFloat(),
-                                          nextFloat(), nextFloat());
+                    addOp(currentCommand);
+                    addFloats(6);
                     break;
                 case 'Z':
                 case 'z':
-                    cmd = new Terminal();
+                    addOp(currentCommand);
                     break;
                 default:
                     throw new RuntimeException("Invalid path element "
                             + currentCommand + "(at index=" + index + " in input=" + input + ")");
             }
-            commands.add(cmd);
         }
-        return commands.toArray(new PathCommand[0]);
+
+        PackedPath path = new PackedPath(Arrays.copyOf(ops, numOps), Arrays.copyOf(coords, numCoords));
+        ops = null;
+        coords = null;
+        return path;
     }
 
     /**
@@ -61,7 +61,7 @@ public class FontSystem extends Font
     
     static HashSet<String> sysFontNames = new HashSet<>();
     
-    public static boolean checkIfSystemFontExists(String fontName)
+    public static synchronized boolean checkIfSystemFontExists(String fontName)
     {
         if (sysFontNames.isEmpty())
         {
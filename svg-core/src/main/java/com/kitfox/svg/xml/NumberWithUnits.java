@@ -81,9 +81,25 @@ public class NumberWithUnits implements Serializable
 
     public void set(String value)
     {
-        this.value = XMLParseUtil.findFloat(value);
+        this.value = 0f;
         unitType = UT_UNITLESS;
 
+        int start = XMLParseUtil.scanNumberStart(value, 0);
+        if (start != -1)
+        {
+            int end = XMLParseUtil.scanNumberEnd(value, start);
+            this.value = XMLParseUtil.parseFloat(value, start, end);
+            unitType = XMLParseUtil.scanUnits(value, end);
+            if (unitType == UT_PERCENT)
+            {
+                this.value /= 100;
+            }
+            if (unitType != UT_UNITLESS)
+            {
+                return;
+            }
+        }
+
         if (value.indexOf("px") != -1) { unitType = UT_PX; return; }
         if (value.indexOf("cm") != -1) { unitType = UT_CM; return; }
         if (value.indexOf("mm") != -1) { unitType = UT_MM; return; }
@@ -0,0 +1,151 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+package com.kitfox.svg.xml;
+
+import java.util.HashMap;
+
+/**
+ * Registry of the attribute and style names used by SVG.  Each known name is
+ * given a small integer index so that per element attribute tables can be
+ * searched by index rather than by hashing strings.  Names not listed here
+ * have an index of -1.
+ *
+ * @author kitfox
+ */
+public class PropertyIndex
+{
+    private static final String[] NAMES = {
+        //Core and structural attributes
+        "id", "class", "style", "xml:base", "xml:space", "xml:lang",
+        "xlink:href", "xlink:title", "href", "transform", "viewBox",
+        "preserveAspectRatio", "version", "baseProfile",
+
+        //Geometry
+        "x", "y", "width", "height", "rx", "ry", "cx", "cy", "r", "fx", "fy",
+        "x1", "y1", "x2", "y2", "d", "points", "dx", "dy", "z", "rotate",
+        "textLength", "lengthAdjust", "startOffset", "method", "spacing",
+
+        //Paint servers, clipping, masking and markers
+        "gradientUnits", "gradientTransform", "spreadMethod", "offset",
+        "patternUnits", "patternContentUnits", "patternTransform",
+        "clipPathUnits", "maskUnits", "maskContentUnits", "markerUnits",
+        "markerWidth", "markerHeight", "refX", "refY", "orient",
+
+        //Filters
+        "filterUnits", "primitiveUnits", "in", "in2", "result",
+        "stdDeviation", "type", "values", "mode", "operator", "k1", "k2",
+        "k3", "k4", "k", "azimuth", "elevation", "pointsAtX", "pointsAtY",
+        "pointsAtZ", "limitingConeAngle", "specularComponent",
+        "specularExponent", "surfaceScale", "diffuseConstant",
+
+        //Animation
+        "attributeName", "attributeType", "from", "to", "by", "begin", "dur",
+        "end", "repeatCount", "repeatDur", "additive", "accumulate",
+        "keyTimes", "keySplines", "keyPoints", "calcMode", "path",
+
+        //Fonts
+        "horiz-adv-x", "horiz-origin-x", "horiz-origin-y", "vert-adv-y",
+        "vert-origin-x", "vert-origin-y", "units-per-em", "ascent",
+        "descent", "accent-height", "unicode", "glyph-name", "u1", "u2",
+        "underline-position", "underline-thickness", "overline-position",
+        "overline-thickness", "strikethrough-position",
+        "strikethrough-thickenss",
+
+        //Presentation attributes
+        "alignment-baseline", "baseline-shift", "clip", "clip-path",
+        "clip-rule", "color", "color-interpolation",
+        "color-interpolation-filters", "color-profile", "color-rendering",
+        "cursor", "direction", "display", "dominant-baseline",
+        "enable-background", "fill", "fill-opacity", "fill-rule", "filter",
+        "flood-color", "flood-opacity", "font", "font-family", "font-size",
+        "font-size-adjust", "font-stretch", "font-style", "font-variant",
+        "font-weight", "glyph-orientation-horizontal",
+        "glyph-orientation-vertical", "image-rendering", "kerning",
+        "letter-spacing", "lighting-color", "marker", "marker-end",
+        "marker-mid", "marker-start", "mask", "opacity", "overflow",
+        "pointer-events", "shape-rendering", "stop-color", "stop-opacity",
+        "stroke", "stroke-dasharray", "stroke-dashoffset", "stroke-linecap",
+        "stroke-linejoin", "stroke-miterlimit", "stroke-opacity",
+        "stroke-width", "text-anchor", "text-decoration", "text-rendering",
+        "unicode-bidi", "vector-effect", "visibility", "word-spacing",
+        "writing-mode",
+    };
+
+    private static final HashMap<String, Integer> indices = new HashMap<>();
+    static
+    {
+        for (int i = 0; i < NAMES.length; ++i)
+        {
+            indices.put(NAMES[i], i);
+        }
+    }
+
+    private PropertyIndex()
+    {
+    }
+
+    /**
+     * @param name - Attribute or style name
+     * @return the index of the named property, or -1 if it is not a known
+     * property
+     */
+    public static int indexOf(String name)
+    {
+        if (name == null)
+        {
+            return -1;
+        }
+        Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param index - Index of a known property
+     * @return the name of the property
+     */
+    public static String getName(int index)
+    {
+        return NAMES[index];
+    }
+
+    /**
+     * @return the number of known properties
+     */
+    public static int getNumProperties()
+    {
+        return NAMES.length;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+package com.kitfox.svg.xml;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compact table of the style or presentation attributes of an element.
+ * Attributes with a name known to PropertyIndex are kept in a small array
+ * sorted by property index.  Any others are kept in a map, which is only
+ * created when needed.
+ *
+ * @author kitfox
+ */
+public class PropertyTable implements Serializable
+{
+    public static final long serialVersionUID = 0;
+
+    private static final short[] NO_INDICES = new short[0];
+    private static final StyleAttribute[] NO_ATTRIBUTES = new StyleAttribute[0];
+
+    private short[] indices = NO_INDICES;
+    private StyleAttribute[] attribs = NO_ATTRIBUTES;
+    private int size;
+    private HashMap<String, StyleAttribute> others;
+
+    /** Creates a new instance of PropertyTable */
+    public PropertyTable()
+    {
+    }
+
+    /**
+     * @param index - Property index, as returned by PropertyIndex
+     * @return the attribute with the given property index, or null if there
+     * is none
+     */
+    public StyleAttribute get(int index)
+    {
+        int pos = Arrays.binarySearch(indices, 0, size, (short)index);
+        return pos < 0 ? null : attribs[pos];
+    }
+
+    /**
+     * @param name - Attribute name
+     * @return the attribute with the given name, or null if there is none
+     */
+    public StyleAttribute get(String name)
+    {
+        int index = PropertyIndex.indexOf(name);
+        if (index != -1)
+        {
+            return get(index);
+        }
+        return others == null ? null : others.get(name);
+    }
+
+    /**
+     * @param attrib - Attribute whose name is to be looked up
+     * @return the attribute in this table with the same name as attrib, or
+     * null if there is none
+     */
+    public StyleAttribute get(StyleAttribute attrib)
+    {
+        int index = attrib.getPropertyIndex();
+        if (index != -1)
+        {
+            return get(index);
+        }
+        return others == null ? null : others.get(attrib.getName());
+    }
+
+    public boolean containsKey(String name)
+    {
+        return get(name) != null;
+    }
+
+    /**
+     * Adds an attribute to this table, replacing any attribute of the same
+     * name.
+     *
+     * @param attrib - Attribute to add
+     */
+    public void put(StyleAttribute attrib)
+    {
+        int index = attrib.getPropertyIndex();
+        if (index == -1)
+        {
+            if (others == null)
+            {
+                others = new HashMap<>();
+            }
+            others.put(attrib.getName(), attrib);
+            return;
+        }
+
+        int pos = Arrays.binarySearch(indices, 0, size, (short)index);
+        if (pos >= 0)
+        {
+            attribs[pos] = attrib;
+            return;
+        }
+
+        pos = -pos - 1;
+        if (size == indices.length)
+        {
+            indices = Arrays.copyOf(indices, size + 4);
+            attribs = Arrays.copyOf(attribs, size + 4);
+        }
+        System.arraycopy(indices, pos, indices, pos + 1, size - pos);
+        System.arraycopy(attribs, pos, attribs, pos + 1, size - pos);
+        indices[pos] = (short)index;
+        attribs[pos] = attrib;
+        ++size;
+    }
+
+    /**
+     * Removes the named attribute from this table.
+     *
+     * @param name - Attribute name
+     * @return the attribute removed, or null if there was none
+     */
+    public StyleAttribute remove(String name)
+    {
+        int index = PropertyIndex.indexOf(name);
+        if (index == -1)
+        {
+            return others == null ? null : others.remove(name);
+        }
+
+        int pos = Arrays.binarySearch(indices, 0, size, (short)index);
+        if (pos < 0)
+        {
+            return null;
+        }
+
+        StyleAttribute attrib = attribs[pos];
+        --size;
+        System.arraycopy(indices, pos + 1, indices, pos, size - pos);
+        System.arraycopy(attribs, pos + 1, attribs, pos, size - pos);
+        attribs[size] = null;
+        return attrib;
+    }
+
+    /**
+     * @return the number of attributes in this table
+     */
+    public int size()
+    {
+        return size + (others == null ? 0 : others.size());
+    }
+
+    /**
+     * @return the names of all attributes in this table.  The set is a copy
+     * and is not updated as the table changes.
+     */
+    public Set<String> keySet()
+    {
+        HashSet<String> keys = new HashSet<>();
+        for (int i = 0; i < size; ++i)
+        {
+            keys.add(attribs[i].getName());
+        }
+        if (others != null)
+        {
+            keys.addAll(others.keySet());
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+}
@@ -58,9 +58,15 @@ public class StyleAttribute implements Serializable
     static final Pattern patternFpNumUnits = Pattern.compile("\\s*([-+]?((\\d*\\.\\d+)|(\\d+))([-+]?[eE]\\d+)?)\\s*(px|cm|mm|in|pc|pt|em|ex)\\s*");
     String name;
     String stringValue;
+    //Index of name in PropertyIndex, or -1 if it is not a known property
+    transient int propertyIndex;
 
-    boolean colorCompatable = false;
-    boolean urlCompatable = false;
+    //Typed values parsed from stringValue, indexed by their type.  Dropped
+    // when the string is changed.
+    transient volatile ParsedValue[] parsed;
+    //Attribute the value was copied from by setValue(), which values parsed
+    // here are passed back to
+    transient StyleAttribute source;
 
     /** Creates a new instance of StyleAttribute */
     public StyleAttribute()
@@ -70,14 +76,20 @@ public class StyleAttribute implements Serializable
     
     public StyleAttribute(String name) 
     {
-        this.name = name;
-        stringValue = null;
+        this(name, null);
     }
 
     public StyleAttribute(String name, String stringValue) 
     {
         this.name = name;
         this.stringValue = stringValue;
+        propertyIndex = PropertyIndex.indexOf(name);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        propertyIndex = PropertyIndex.indexOf(name);
     }
 
     public String getName() {
@@ -86,9 +98,22 @@ public class StyleAttribute implements Serializable
     
     public StyleAttribute setName(String name)
     {
-        this.name = name;
+        if (name != this.name)
+        {
+            this.name = name;
+            propertyIndex = PropertyIndex.indexOf(name);
+        }
         return this;
     }
+
+    /**
+     * @return the index of this attribute's name in PropertyIndex, or -1 if
+     * it is not a known property
+     */
+    public int getPropertyIndex()
+    {
+        return propertyIndex;
+    }
     
     public String getStringValue()
     {
@@ -103,6 +128,65 @@ public class StyleAttribute implements Serializable
     public void setStringValue(String value)
     {
         stringValue = value;
+        parsed = null;
+        source = null;
+    }
+
+    /**
+     * Copies the string value of another attribute.  Typed values parsed
+     * from it are shared with that attribute, so a value only needs to be
+     * parsed once however many times it is copied.
+     *
+     * @param attrib - Attribute to take the value of
+     */
+    public void setValue(StyleAttribute attrib)
+    {
+        StyleAttribute src = attrib.source != null ? attrib.source : attrib;
+        stringValue = attrib.stringValue;
+        parsed = attrib.parsed;
+        source = src.stringValue == stringValue ? src : null;
+    }
+
+    /**
+     * @return the attribute this one copied its value from with setValue(),
+     * or null if its value was set directly
+     */
+    public StyleAttribute getSource()
+    {
+        StyleAttribute src = source;
+        return src != null && src.stringValue == stringValue ? src : null;
+    }
+
+    private ParsedValue getParsed(int type)
+    {
+        ParsedValue[] values = parsed;
+        return values == null ? null : values[type];
+    }
+
+    private ParsedValue setParsed(ParsedValue value)
+    {
+        ParsedValue[] values = parsed;
+        if (values == null)
+        {
+            StyleAttribute src = source;
+            if (src != null && src.stringValue == stringValue)
+            {
+                //Share slots with the attribute the value was copied from
+                values = src.parsed;
+                if (values == null)
+                {
+                    values = new ParsedValue[ParsedValue.NUM_TYPES];
+                    src.parsed = values;
+                }
+            }
+            else
+            {
+                values = new ParsedValue[ParsedValue.NUM_TYPES];
+            }
+            parsed = values;
+        }
+        values[value.type] = value;
+        return value;
     }
 
     public boolean getBooleanValue() {
@@ -118,7 +202,12 @@ public class StyleAttribute implements Serializable
     }
 
     public double getDoubleValue() {
-        return XMLParseUtil.findDouble(stringValue);
+        ParsedValue value = getParsed(ParsedValue.DOUBLE);
+        if (value == null)
+        {
+            value = setParsed(new ParsedValue(ParsedValue.DOUBLE, 0, 0, XMLParseUtil.findDouble(stringValue)));
+        }
+        return (Double)value.object;
     }
 
     public double[] getDoubleList() {
@@ -126,15 +215,30 @@ public class StyleAttribute implements Serializable
     }
 
     public float getFloatValue() {
-        return XMLParseUtil.findFloat(stringValue);
+        ParsedValue value = getParsed(ParsedValue.FLOAT);
+        if (value == null)
+        {
+            value = setParsed(new ParsedValue(ParsedValue.FLOAT, XMLParseUtil.findFloat(stringValue), 0, null));
+        }
+        return value.number;
     }
 
     public float[] getFloatList() {
-        return XMLParseUtil.parseFloatList(stringValue);
+        ParsedValue value = getParsed(ParsedValue.FLOAT_LIST);
+        if (value == null)
+        {
+            value = setParsed(new ParsedValue(ParsedValue.FLOAT_LIST, 0, 0, XMLParseUtil.parseFloatList(stringValue)));
+        }
+        return ((float[])value.object).clone();
     }
 
     public float getRatioValue() {
-        return (float)XMLParseUtil.parseRatio(stringValue);
+        ParsedValue value = getParsed(ParsedValue.RATIO);
+        if (value == null)
+        {
+            value = setParsed(new ParsedValue(ParsedValue.RATIO, (float)XMLParseUtil.parseRatio(stringValue), 0, null));
+        }
+        return value.number;
 //        try { return Float.parseFloat(stringValue); }
 //        catch (Exception e) {}
 //        return 0f;
@@ -147,25 +251,42 @@ public class StyleAttribute implements Serializable
     }
 
     public NumberWithUnits getNumberWithUnits() {
-        return XMLParseUtil.parseNumberWithUnits(stringValue);
+        ParsedValue value = getParsed(ParsedValue.NUMBER_WITH_UNITS);
+        if (value == null)
+        {
+            NumberWithUnits number = XMLParseUtil.parseNumberWithUnits(stringValue);
+            value = setParsed(new ParsedValue(ParsedValue.NUMBER_WITH_UNITS, number.getValue(), number.getUnits(), null));
+        }
+        return new NumberWithUnits(value.number, value.units);
     }
 
     public float getFloatValueWithUnits()
     {
-        NumberWithUnits number = getNumberWithUnits();
-        return convertUnitsToPixels(number.getUnits(), number.getValue());
+        ParsedValue value = getParsed(ParsedValue.FLOAT_WITH_UNITS);
+        if (value == null)
+        {
+            NumberWithUnits number = XMLParseUtil.parseNumberWithUnits(stringValue);
+            value = setParsed(new ParsedValue(ParsedValue.FLOAT_WITH_UNITS,
+                convertUnitsToPixels(number.getUnits(), number.getValue()), 0, null));
+        }
+        return value.number;
     }
 
     public float[] getFloatListWithUnits()
     {
-        String[] values = getStringList();
-        float[] result = new float[values.length];
-        for (int i = 0; i < result.length; i++)
+        ParsedValue value = getParsed(ParsedValue.FLOAT_LIST_WITH_UNITS);
+        if (value == null)
         {
-            NumberWithUnits number = XMLParseUtil.parseNumberWithUnits(stringValue);
-            result[i] = convertUnitsToPixels(number.getUnits(), number.getValue());
+            String[] values = getStringList();
+            float[] result = new float[values.length];
+            for (int i = 0; i < result.length; i++)
+            {
+                NumberWithUnits number = XMLParseUtil.parseNumberWithUnits(stringValue);
+                result[i] = convertUnitsToPixels(number.getUnits(), number.getValue());
+            }
+            value = setParsed(new ParsedValue(ParsedValue.FLOAT_LIST_WITH_UNITS, 0, 0, result));
         }
-        return result;
+        return ((float[])value.object).clone();
     }
     
     static public float convertUnitsToPixels(int unitType, float value)
@@ -206,7 +327,12 @@ public class StyleAttribute implements Serializable
 
     public Color getColorValue()
     {
-        return ColorTable.parseColor(stringValue);
+        ParsedValue value = getParsed(ParsedValue.COLOR);
+        if (value == null)
+        {
+            value = setParsed(new ParsedValue(ParsedValue.COLOR, 0, 0, ColorTable.parseColor(stringValue)));
+        }
+        return (Color)value.object;
     }
 
     public String parseURLFn()
@@ -261,6 +387,16 @@ public class StyleAttribute implements Serializable
      * attempting to resolve it.
      */
     public URI getURIValue(URI base)
+    {
+        ParsedValue value = getParsed(ParsedValue.URI_VALUE);
+        if (value == null || (value.base == null ? base != null : !value.base.equals(base)))
+        {
+            value = setParsed(new ParsedValue(base, parseURIValue(base)));
+        }
+        return (URI)value.object;
+    }
+
+    private URI parseURIValue(URI base)
     {
         try {
             String fragment = parseURLFn();
@@ -305,6 +441,48 @@ public class StyleAttribute implements Serializable
         }
     }
     
+    /**
+     * A typed value parsed from the string value of an attribute.
+     */
+    static final class ParsedValue
+    {
+        static final int FLOAT = 0;
+        static final int FLOAT_WITH_UNITS = 1;
+        static final int RATIO = 2;
+        static final int DOUBLE = 3;
+        static final int FLOAT_LIST = 4;
+        static final int FLOAT_LIST_WITH_UNITS = 5;
+        static final int NUMBER_WITH_UNITS = 6;
+        static final int COLOR = 7;
+        static final int URI_VALUE = 8;
+        static final int NUM_TYPES = 9;
+
+        final int type;
+        final float number;
+        final int units;
+        final Object object;
+        //Base a URI value was resolved against
+        final URI base;
+
+        ParsedValue(int type, float number, int units, Object object)
+        {
+            this.type = type;
+            this.number = number;
+            this.units = units;
+            this.object = object;
+            this.base = null;
+        }
+
+        ParsedValue(URI base, URI uri)
+        {
+            this.type = URI_VALUE;
+            this.number = 0;
+            this.units = 0;
+            this.object = uri;
+            this.base = base;
+        }
+    }
+
     public static void main(String[] args)
     {
         try
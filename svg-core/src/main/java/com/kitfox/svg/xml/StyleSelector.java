@@ -0,0 +1,663 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or 
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above 
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials 
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ * Created on October 16, 2026
+ */
+package com.kitfox.svg.xml;
+
+import com.kitfox.svg.SVGElement;
+import java.util.ArrayList;
+
+/**
+ * A CSS selector, as found before the declaration block of a style sheet
+ * rule.  Supports type, universal, class, id and attribute selectors, the
+ * :first-child and :last-child pseudo classes, and the descendant, child,
+ * adjacent sibling and general sibling combinators.
+ *
+ * @author kitfox
+ */
+public class StyleSelector
+{
+    static final int DESCENDANT = 0;
+    static final int CHILD = 1;
+    static final int ADJACENT = 2;
+    static final int SIBLING = 3;
+
+    //Compound selectors from left to right
+    private final Compound[] compounds;
+    //Combinator between each compound and the one to its right
+    private final int[] combinators;
+    private final int specificity;
+
+    private StyleSelector(Compound[] compounds, int[] combinators)
+    {
+        this.compounds = compounds;
+        this.combinators = combinators;
+
+        int ids = 0, classes = 0, types = 0;
+        for (Compound comp : compounds)
+        {
+            ids += comp.id == null ? 0 : 1;
+            classes += comp.classes.length + comp.attribs.length
+                + (comp.firstChild ? 1 : 0) + (comp.lastChild ? 1 : 0);
+            types += comp.tag == null ? 0 : 1;
+        }
+        specificity = (Math.min(ids, 255) << 16) | (Math.min(classes, 255) << 8) | Math.min(types, 255);
+    }
+
+    /**
+     * Parses a single selector.
+     *
+     * @param text - Selector text, eg "g.layer > path[fill]"
+     * @return the parsed selector, or null if it is not valid or uses
+     * features that are not supported
+     */
+    public static StyleSelector parse(String text)
+    {
+        Parser parser = new Parser(text);
+        ArrayList<Compound> compList = new ArrayList<>();
+        ArrayList<Integer> combList = new ArrayList<>();
+
+        parser.skipWhitespace();
+        while (true)
+        {
+            Compound comp = parser.parseCompound();
+            if (comp == null)
+            {
+                return null;
+            }
+            compList.add(comp);
+
+            boolean space = parser.skipWhitespace();
+            if (parser.atEnd())
+            {
+                break;
+            }
+
+            char ch = parser.peek();
+            int comb;
+            switch (ch)
+            {
+                case '>':
+                    comb = CHILD;
+                    break;
+                case '+':
+                    comb = ADJACENT;
+                    break;
+                case '~':
+                    comb = SIBLING;
+                    break;
+                default:
+                    if (!space)
+                    {
+                        return null;
+                    }
+                    comb = DESCENDANT;
+            }
+            if (comb != DESCENDANT)
+            {
+                parser.pos++;
+                parser.skipWhitespace();
+            }
+            combList.add(comb);
+        }
+
+        int[] combinators = new int[combList.size()];
+        for (int i = 0; i < combinators.length; ++i)
+        {
+            combinators[i] = combList.get(i);
+        }
+        return new StyleSelector(compList.toArray(new Compound[compList.size()]), combinators);
+    }
+
+    /**
+     * @return specificity of this selector, with the count of id selectors in
+     * bits 16-23, of class, attribute and pseudo class selectors in bits 8-15
+     * and of type selectors in bits 0-7
+     */
+    public int getSpecificity()
+    {
+        return specificity;
+    }
+
+    /**
+     * @return the id required by the rightmost compound selector, or null
+     */
+    String getKeyId()
+    {
+        return compounds[compounds.length - 1].id;
+    }
+
+    /**
+     * @return the first class required by the rightmost compound selector, or
+     * null
+     */
+    String getKeyClass()
+    {
+        Compound comp = compounds[compounds.length - 1];
+        return comp.classes.length == 0 ? null : comp.classes[0];
+    }
+
+    /**
+     * @return the type required by the rightmost compound selector, or null
+     */
+    String getKeyTag()
+    {
+        return compounds[compounds.length - 1].tag;
+    }
+
+    /**
+     * @return true if this selector is a single compound that requires at
+     * most a type and classes
+     */
+    boolean isSimple()
+    {
+        Compound comp = compounds[0];
+        return compounds.length == 1 && comp.id == null && comp.attribs.length == 0
+            && !comp.firstChild && !comp.lastChild;
+    }
+
+    /**
+     * @return true if whether this selector matches depends on the position
+     * of an element among its siblings
+     */
+    boolean isStructural()
+    {
+        for (Compound comp : compounds)
+        {
+            if (comp.firstChild || comp.lastChild)
+            {
+                return true;
+            }
+        }
+        for (int comb : combinators)
+        {
+            if (comb == ADJACENT || comb == SIBLING)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests a simple selector against a type and class list.
+     *
+     * @see #isSimple()
+     */
+    boolean matchesSimple(String tagName, String cssClass)
+    {
+        Compound comp = compounds[0];
+        if (comp.tag != null && !comp.tag.equalsIgnoreCase(tagName))
+        {
+            return false;
+        }
+        return comp.matchesClasses(cssClass);
+    }
+
+    /**
+     * @param element - Element to test
+     * @return true if this selector matches the element
+     */
+    public boolean matches(SVGElement element)
+    {
+        return matches(compounds.length - 1, element);
+    }
+
+    private boolean matches(int index, SVGElement element)
+    {
+        if (!compounds[index].matches(element))
+        {
+            return false;
+        }
+        if (index == 0)
+        {
+            return true;
+        }
+
+        switch (combinators[index - 1])
+        {
+            case CHILD:
+            {
+                SVGElement parent = element.getParent();
+                return parent != null && matches(index - 1, parent);
+            }
+            case DESCENDANT:
+            {
+                for (SVGElement ele = element.getParent(); ele != null; ele = ele.getParent())
+                {
+                    if (matches(index - 1, ele))
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            case ADJACENT:
+            {
+                SVGElement parent = element.getParent();
+                if (parent == null)
+                {
+                    return false;
+                }
+                int pos = parent.indexOfChild(element);
+                return pos > 0 && matches(index - 1, parent.getChild(pos - 1));
+            }
+            case SIBLING:
+            {
+                SVGElement parent = element.getParent();
+                if (parent == null)
+                {
+                    return false;
+                }
+                for (int i = parent.indexOfChild(element) - 1; i >= 0; --i)
+                {
+                    if (matches(index - 1, parent.getChild(i)))
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param element - Element whose type is wanted
+     * @return the name type selectors use for the element.  This is the name
+     * of the element in the document, which differs from getTagName() for a
+     * few element classes.
+     */
+    static String getTypeName(SVGElement element)
+    {
+        String tagName = element.getTagName();
+        switch (tagName)
+        {
+            case "group":
+                return "g";
+            case "fontface":
+                return "font-face";
+            default:
+                return tagName;
+        }
+    }
+
+    /**
+     * Tests whether a whitespace separated list contains a word.
+     */
+    static boolean containsWord(String list, String word)
+    {
+        int len = word.length();
+        int pos = list.indexOf(word);
+        while (pos != -1)
+        {
+            int end = pos + len;
+            if ((pos == 0 || Character.isWhitespace(list.charAt(pos - 1)))
+                && (end == list.length() || Character.isWhitespace(list.charAt(end))))
+            {
+                return true;
+            }
+            pos = list.indexOf(word, pos + 1);
+        }
+        return false;
+    }
+
+    /**
+     * A sequence of simple selectors that must all match the same element.
+     */
+    static class Compound
+    {
+        //Lower case type name, or null for any type
+        String tag;
+        String id;
+        String[] classes = new String[0];
+        AttributeTest[] attribs = new AttributeTest[0];
+        boolean firstChild;
+        boolean lastChild;
+
+        boolean matches(SVGElement element)
+        {
+            if (tag != null && !tag.equalsIgnoreCase(getTypeName(element)))
+            {
+                return false;
+            }
+            if (id != null && !id.equals(element.getId()))
+            {
+                return false;
+            }
+            if (!matchesClasses(element.getCssClass()))
+            {
+                return false;
+            }
+            for (AttributeTest test : attribs)
+            {
+                StyleAttribute attrib = element.getPresAbsolute(test.name);
+                if (attrib == null || attrib.getStringValue() == null
+                    || !test.matches(attrib.getStringValue()))
+                {
+                    return false;
+                }
+            }
+            if (firstChild || lastChild)
+            {
+                SVGElement parent = element.getParent();
+                if (parent == null)
+                {
+                    return false;
+                }
+                int pos = parent.indexOfChild(element);
+                if ((firstChild && pos != 0)
+                    || (lastChild && pos != parent.getNumChildren() - 1))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean matchesClasses(String cssClass)
+        {
+            if (classes.length == 0)
+            {
+                return true;
+            }
+            if (cssClass == null)
+            {
+                return false;
+            }
+            for (String cls : classes)
+            {
+                if (!containsWord(cssClass, cls))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * An attribute selector, such as [fill] or [class~="outline"].
+     */
+    static class AttributeTest
+    {
+        final String name;
+        //One of = ~ | ^ $ *, or 0 to test only that the attribute is present
+        final char op;
+        final String value;
+
+        AttributeTest(String name, char op, String value)
+        {
+            this.name = name;
+            this.op = op;
+            this.value = value;
+        }
+
+        boolean matches(String attrValue)
+        {
+            switch (op)
+            {
+                case 0:
+                    return true;
+                case '=':
+                    return attrValue.equals(value);
+                case '~':
+                    return !value.isEmpty() && containsWord(attrValue, value);
+                case '|':
+                    return attrValue.equals(value) || attrValue.startsWith(value + "-");
+                case '^':
+                    return !value.isEmpty() && attrValue.startsWith(value);
+                case '$':
+                    return !value.isEmpty() && attrValue.endsWith(value);
+                case '*':
+                    return !value.isEmpty() && attrValue.contains(value);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reads the parts of a selector from its text.
+     */
+    static class Parser
+    {
+        final String text;
+        int pos;
+
+        Parser(String text)
+        {
+            this.text = text;
+        }
+
+        boolean atEnd()
+        {
+            return pos >= text.length();
+        }
+
+        char peek()
+        {
+            return text.charAt(pos);
+        }
+
+        boolean skipWhitespace()
+        {
+            int start = pos;
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+            {
+                pos++;
+            }
+            return pos != start;
+        }
+
+        static boolean isNameChar(char ch)
+        {
+            return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z')
+                || (ch >= '0' && ch <= '9') || ch == '-' || ch == '_' || ch >= 0x80;
+        }
+
+        String parseName()
+        {
+            int start = pos;
+            while (pos < text.length() && isNameChar(text.charAt(pos)))
+            {
+                pos++;
+            }
+            return pos == start ? null : text.substring(start, pos);
+        }
+
+        Compound parseCompound()
+        {
+            Compound comp = new Compound();
+            ArrayList<String> classes = new ArrayList<>();
+            ArrayList<AttributeTest> attribs = new ArrayList<>();
+            boolean empty = true;
+
+            if (!atEnd() && peek() == '*')
+            {
+                pos++;
+                empty = false;
+            }
+            else if (!atEnd() && isNameChar(peek()))
+            {
+                comp.tag = parseName().toLowerCase();
+                empty = false;
+            }
+
+            while (!atEnd())
+            {
+                char ch = peek();
+                if (ch == '.')
+                {
+                    pos++;
+                    String name = parseName();
+                    if (name == null)
+                    {
+                        return null;
+                    }
+                    classes.add(name);
+                }
+                else if (ch == '#')
+                {
+                    pos++;
+                    String name = parseName();
+                    if (name == null || (comp.id != null && !comp.id.equals(name)))
+                    {
+                        return null;
+                    }
+                    comp.id = name;
+                }
+                else if (ch == '[')
+                {
+                    pos++;
+                    AttributeTest test = parseAttributeTest();
+                    if (test == null)
+                    {
+                        return null;
+                    }
+                    attribs.add(test);
+                }
+                else if (ch == ':')
+                {
+                    pos++;
+                    String name = parseName();
+                    if ("first-child".equalsIgnoreCase(name))
+                    {
+                        comp.firstChild = true;
+                    }
+                    else if ("last-child".equalsIgnoreCase(name))
+                    {
+                        comp.lastChild = true;
+                    }
+                    else
+                    {
+                        //Dynamic and structural pseudo classes and pseudo
+                        // elements cannot be matched
+                        return null;
+                    }
+                }
+                else
+                {
+                    break;
+                }
+                empty = false;
+            }
+
+            if (empty)
+            {
+                return null;
+            }
+            comp.classes = classes.toArray(new String[classes.size()]);
+            comp.attribs = attribs.toArray(new AttributeTest[attribs.size()]);
+            return comp;
+        }
+
+        AttributeTest parseAttributeTest()
+        {
+            skipWhitespace();
+            String name = parseName();
+            if (name == null)
+            {
+                return null;
+            }
+            //Namespace prefixed attribute names, such as xlink:href
+            if (!atEnd() && peek() == ':')
+            {
+                pos++;
+                String local = parseName();
+                if (local == null)
+                {
+                    return null;
+                }
+                name = name + ":" + local;
+            }
+            skipWhitespace();
+            if (atEnd())
+            {
+                return null;
+            }
+
+            char op = peek();
+            if (op == ']')
+            {
+                pos++;
+                return new AttributeTest(name, (char)0, null);
+            }
+            if (op == '=')
+            {
+                pos++;
+            }
+            else if ("~|^$*".indexOf(op) != -1 && pos + 1 < text.length() && text.charAt(pos + 1) == '=')
+            {
+                pos += 2;
+            }
+            else
+            {
+                return null;
+            }
+
+            skipWhitespace();
+            if (atEnd())
+            {
+                return null;
+            }
+            String value;
+            char quote = peek();
+            if (quote == '"' || quote == '\'')
+            {
+                int end = text.indexOf(quote, pos + 1);
+                if (end == -1)
+                {
+                    return null;
+                }
+                value = text.substring(pos + 1, end);
+                pos = end + 1;
+            }
+            else
+            {
+                value = parseName();
+                if (value == null)
+                {
+                    return null;
+                }
+            }
+            skipWhitespace();
+            if (atEnd() || peek() != ']')
+            {
+                return null;
+            }
+            pos++;
+            return new AttributeTest(name, op, value);
+        }
+    }
+}
@@ -4,64 +4,517 @@
  */
 package com.kitfox.svg.xml;
 
-import com.kitfox.svg.SVGConst;
+import com.kitfox.svg.SVGElement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.List;
 
 /**
+ * A set of CSS rules, such as the contents of a &lt;style&gt; element.  Rules
+ * are indexed by the id, first class or type required by the rightmost part
+ * of their selector, so that only rules which could apply to an element are
+ * tested against it.
  *
  * @author kitfox
  */
 public class StyleSheet
 {
-    HashMap<StyleSheetRule, String> ruleMap = new HashMap<StyleSheetRule, String>();
+    private static final Comparator<Rule> PRECEDENCE = new Comparator<Rule>()
+    {
+        @Override
+        public int compare(Rule a, Rule b)
+        {
+            if (a.important != b.important)
+            {
+                return a.important ? 1 : -1;
+            }
+            int spec = Integer.compare(a.selector.getSpecificity(), b.selector.getSpecificity());
+            return spec != 0 ? spec : Integer.compare(a.order, b.order);
+        }
+    };
+
+    private final HashMap<String, ArrayList<Rule>> idRules = new HashMap<>();
+    private final HashMap<String, ArrayList<Rule>> classRules = new HashMap<>();
+    private final HashMap<String, ArrayList<Rule>> tagRules = new HashMap<>();
+    private final ArrayList<Rule> otherRules = new ArrayList<>();
+    private int numRules;
+    private boolean structural;
 
     public static StyleSheet parseSheet(String src)
     {
-        //Implement CS parser later
-        Logger.getLogger(SVGConst.SVG_LOGGER).log(Level.WARNING,
-            "CSS parser not implemented yet");
-        return new StyleSheet();
+        StyleSheet sheet = new StyleSheet();
+        new SheetParser(stripComments(src)).parse(sheet);
+        return sheet;
     }
-    
+
+    /**
+     * Adds the rules of another sheet to this one.  They take precedence
+     * over rules of equal specificity already in this sheet.
+     *
+     * @param sheet - Sheet to add
+     */
+    public void addStyleSheet(StyleSheet sheet)
+    {
+        ArrayList<Rule> rules = sheet.getRules();
+        Collections.sort(rules, new Comparator<Rule>()
+        {
+            @Override
+            public int compare(Rule a, Rule b)
+            {
+                return Integer.compare(a.order, b.order);
+            }
+        });
+        for (Rule rule : rules)
+        {
+            addRule(new Rule(rule.selector, rule.declarations, rule.important, numRules++));
+        }
+    }
+
     public void addStyleRule(StyleSheetRule rule, String value)
     {
-        ruleMap.put(rule, value);
+        String text = rule.tag == null ? "" : rule.tag;
+        if (rule.className != null)
+        {
+            text += "." + rule.className.trim().replaceAll("\\s+", ".");
+        }
+        StyleSelector selector = StyleSelector.parse(text.isEmpty() ? "*" : text);
+        if (selector == null)
+        {
+            return;
+        }
+        StyleAttribute[] decl = {new StyleAttribute(rule.styleName.intern(), value)};
+        addRule(new Rule(selector, decl, false, numRules++));
+    }
+
+    /**
+     * @return true if this sheet has no rules
+     */
+    public boolean isEmpty()
+    {
+        return numRules == 0;
+    }
+
+    /**
+     * @return true if some rule uses :first-child, :last-child or a sibling
+     * combinator, so adding or removing an element can change which rules
+     * match its siblings
+     */
+    public boolean hasStructuralSelectors()
+    {
+        return structural;
+    }
+
+    /**
+     * Finds the declarations of every rule matching an element.
+     *
+     * @param element - Element to be styled
+     * @return the winning declaration for each property set by a matching
+     * rule, or null if no rule matches
+     */
+    public PropertyTable getStyles(SVGElement element)
+    {
+        ArrayList<Rule> matched = null;
+
+        String id = element.getId();
+        if (id != null)
+        {
+            matched = collect(idRules.get(id), element, matched);
+        }
+        String cssClass = element.getCssClass();
+        if (cssClass != null && !classRules.isEmpty())
+        {
+            for (String cls : XMLParseUtil.parseStringList(cssClass))
+            {
+                matched = collect(classRules.get(cls), element, matched);
+            }
+        }
+        if (!tagRules.isEmpty())
+        {
+            String tag = StyleSelector.getTypeName(element).toLowerCase();
+            matched = collect(tagRules.get(tag), element, matched);
+        }
+        matched = collect(otherRules, element, matched);
+
+        if (matched == null)
+        {
+            return null;
+        }
+
+        Collections.sort(matched, PRECEDENCE);
+        PropertyTable table = new PropertyTable();
+        Rule last = null;
+        for (Rule rule : matched)
+        {
+            //A rule is found twice if the element lists its class twice
+            if (rule == last)
+            {
+                continue;
+            }
+            for (StyleAttribute attrib : rule.declarations)
+            {
+                table.put(attrib);
+            }
+            last = rule;
+        }
+        return table;
     }
-    
+
+    /**
+     * Looks up a property using only rules whose selector is a type and/or
+     * classes.
+     *
+     * @param attrib - Attribute whose name is looked up, and which receives
+     * the value found
+     * @param tagName - Type of the element
+     * @param cssClass - Class list of the element
+     * @return true if a value was found
+     */
     public boolean getStyle(StyleAttribute attrib, String tagName, String cssClass)
     {
-        StyleSheetRule rule = new StyleSheetRule(attrib.getName(), tagName, cssClass);
-        String value = (String)ruleMap.get(rule);
-        
-        if (value != null)
-        {
-            attrib.setStringValue(value);
-            return true;
-        }
-        
-        //Try again using just class name
-        rule = new StyleSheetRule(attrib.getName(), null, cssClass);
-        value = (String)ruleMap.get(rule);
-        
-        if (value != null)
-        {
-            attrib.setStringValue(value);
-            return true;
-        }
-        
-        //Try again using just tag name
-        rule = new StyleSheetRule(attrib.getName(), tagName, null);
-        value = (String)ruleMap.get(rule);
-        
-        if (value != null)
-        {
-            attrib.setStringValue(value);
-            return true;
-        }
-        
-        return false;
+        Rule best = null;
+        StyleAttribute bestDecl = null;
+        for (Rule rule : getRules())
+        {
+            if (!rule.selector.isSimple() || !rule.selector.matchesSimple(tagName, cssClass))
+            {
+                continue;
+            }
+            if (best != null && PRECEDENCE.compare(rule, best) < 0)
+            {
+                continue;
+            }
+            for (StyleAttribute decl : rule.declarations)
+            {
+                if (decl.getName().equals(attrib.getName()))
+                {
+                    best = rule;
+                    bestDecl = decl;
+                }
+            }
+        }
+
+        if (bestDecl == null)
+        {
+            return false;
+        }
+        attrib.setStringValue(bestDecl.getStringValue());
+        return true;
+    }
+
+    private void addRule(Rule rule)
+    {
+        StyleSelector selector = rule.selector;
+        structural |= selector.isStructural();
+        String key;
+        if ((key = selector.getKeyId()) != null)
+        {
+            addToBucket(idRules, key, rule);
+        }
+        else if ((key = selector.getKeyClass()) != null)
+        {
+            addToBucket(classRules, key, rule);
+        }
+        else if ((key = selector.getKeyTag()) != null)
+        {
+            addToBucket(tagRules, key, rule);
+        }
+        else
+        {
+            otherRules.add(rule);
+        }
+    }
+
+    private static void addToBucket(HashMap<String, ArrayList<Rule>> buckets, String key, Rule rule)
+    {
+        ArrayList<Rule> bucket = buckets.get(key);
+        if (bucket == null)
+        {
+            bucket = new ArrayList<>(2);
+            buckets.put(key, bucket);
+        }
+        bucket.add(rule);
+    }
+
+    private static ArrayList<Rule> collect(List<Rule> rules, SVGElement element, ArrayList<Rule> matched)
+    {
+        if (rules == null)
+        {
+            return matched;
+        }
+        for (Rule rule : rules)
+        {
+            if (rule.selector.matches(element))
+            {
+                if (matched == null)
+                {
+                    matched = new ArrayList<>();
+                }
+                matched.add(rule);
+            }
+        }
+        return matched;
+    }
+
+    private ArrayList<Rule> getRules()
+    {
+        ArrayList<Rule> rules = new ArrayList<>(numRules);
+        for (ArrayList<Rule> bucket : idRules.values())
+        {
+            rules.addAll(bucket);
+        }
+        for (ArrayList<Rule> bucket : classRules.values())
+        {
+            rules.addAll(bucket);
+        }
+        for (ArrayList<Rule> bucket : tagRules.values())
+        {
+            rules.addAll(bucket);
+        }
+        rules.addAll(otherRules);
+        return rules;
+    }
+
+    private static String stripComments(String src)
+    {
+        StringBuilder sb = new StringBuilder(src.length());
+        int pos = 0;
+        while (true)
+        {
+            int start = src.indexOf("/*", pos);
+            if (start == -1)
+            {
+                sb.append(src, pos, src.length());
+                break;
+            }
+            sb.append(src, pos, start).append(' ');
+            int end = src.indexOf("*/", start + 2);
+            if (end == -1)
+            {
+                break;
+            }
+            pos = end + 2;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A selector and the declarations that apply to elements it matches.
+     */
+    static class Rule
+    {
+        final StyleSelector selector;
+        final StyleAttribute[] declarations;
+        final boolean important;
+        //Position of this rule in the sheet
+        final int order;
+
+        Rule(StyleSelector selector, StyleAttribute[] declarations, boolean important, int order)
+        {
+            this.selector = selector;
+            this.declarations = declarations;
+            this.important = important;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Reads the rules of a sheet whose comments have been removed.
+     */
+    static class SheetParser
+    {
+        final String text;
+        int pos;
+
+        SheetParser(String text)
+        {
+            this.text = text;
+        }
+
+        void parse(StyleSheet sheet)
+        {
+            while (true)
+            {
+                skipSeparators();
+                if (pos >= text.length())
+                {
+                    return;
+                }
+
+                if (text.charAt(pos) == '@')
+                {
+                    //At-rules such as @media and @font-face are not supported
+                    int end = scan(pos, ";{");
+                    pos = end < text.length() && text.charAt(end) == '{'
+                        ? skipBlock(end) : end + 1;
+                    continue;
+                }
+
+                int open = scan(pos, "{");
+                if (open >= text.length())
+                {
+                    return;
+                }
+                int close = scan(open + 1, "}");
+                String prelude = text.substring(pos, open);
+                String body = text.substring(open + 1, Math.min(close, text.length()));
+                pos = close + 1;
+
+                addRules(sheet, prelude, body);
+            }
+        }
+
+        private void addRules(StyleSheet sheet, String prelude, String body)
+        {
+            ArrayList<StyleSelector> selectors = new ArrayList<>();
+            for (String part : split(prelude, ','))
+            {
+                StyleSelector selector = StyleSelector.parse(part);
+                if (selector == null)
+                {
+                    //An invalid selector invalidates the whole rule
+                    return;
+                }
+                selectors.add(selector);
+            }
+
+            ArrayList<StyleAttribute> normal = new ArrayList<>();
+            ArrayList<StyleAttribute> important = new ArrayList<>();
+            for (String decl : split(body, ';'))
+            {
+                int colon = decl.indexOf(':');
+                if (colon == -1)
+                {
+                    continue;
+                }
+                String name = decl.substring(0, colon).trim().toLowerCase().intern();
+                String value = decl.substring(colon + 1).trim();
+                if (name.isEmpty())
+                {
+                    continue;
+                }
+
+                ArrayList<StyleAttribute> list = normal;
+                int bang = value.lastIndexOf('!');
+                if (bang != -1 && value.substring(bang + 1).trim().equalsIgnoreCase("important"))
+                {
+                    list = important;
+                    value = value.substring(0, bang).trim();
+                }
+                value = XMLParseUtil.quotePat.matcher(value).replaceAll("").intern();
+                list.add(new StyleAttribute(name, value));
+            }
+
+            for (StyleSelector selector : selectors)
+            {
+                if (!normal.isEmpty())
+                {
+                    sheet.addRule(new Rule(selector,
+                        normal.toArray(new StyleAttribute[normal.size()]), false, sheet.numRules++));
+                }
+                if (!important.isEmpty())
+                {
+                    sheet.addRule(new Rule(selector,
+                        important.toArray(new StyleAttribute[important.size()]), true, sheet.numRules++));
+                }
+            }
+        }
+
+        /**
+         * Skips whitespace and the HTML comment markers that may surround a
+         * sheet.
+         */
+        private void skipSeparators()
+        {
+            while (pos < text.length())
+            {
+                if (Character.isWhitespace(text.charAt(pos)))
+                {
+                    pos++;
+                }
+                else if (text.startsWith("<!--", pos))
+                {
+                    pos += 4;
+                }
+                else if (text.startsWith("-->", pos))
+                {
+                    pos += 3;
+                }
+                else
+                {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return the position of the first of the given characters at or
+         * after start that is not inside quotes, brackets or parentheses, or
+         * the length of the text if there is none
+         */
+        private int scan(int start, String stops)
+        {
+            int depth = 0;
+            for (int i = start; i < text.length(); ++i)
+            {
+                char ch = text.charAt(i);
+                if (ch == '"' || ch == '\'')
+                {
+                    int end = text.indexOf(ch, i + 1);
+                    i = end == -1 ? text.length() : end;
+                }
+                else if (ch == '(' || ch == '[')
+                {
+                    depth++;
+                }
+                else if ((ch == ')' || ch == ']') && depth > 0)
+                {
+                    depth--;
+                }
+                else if (depth == 0 && stops.indexOf(ch) != -1)
+                {
+                    return i;
+                }
+            }
+            return text.length();
+        }
+
+        /**
+         * @return the position after the block opened at start, including
+         * any nested blocks
+         */
+        private int skipBlock(int start)
+        {
+            int nesting = 0;
+            for (int i = start; i < text.length(); i = scan(i + 1, "{}"))
+            {
+                nesting += text.charAt(i) == '{' ? 1 : -1;
+                if (nesting == 0)
+                {
+                    return i + 1;
+                }
+            }
+            return text.length();
+        }
+
+        /**
+         * Splits text at separators that are not inside quotes, brackets or
+         * parentheses.
+         */
+        private static ArrayList<String> split(String text, char separator)
+        {
+            SheetParser parser = new SheetParser(text);
+            String stops = String.valueOf(separator);
+            ArrayList<String> parts = new ArrayList<>();
+            int start = 0;
+            while (start <= text.length())
+            {
+                int end = parser.scan(start, stops);
+                parts.add(text.substring(start, end));
+                start = end + 1;
+            }
+            return parts;
+        }
     }
-    
 }
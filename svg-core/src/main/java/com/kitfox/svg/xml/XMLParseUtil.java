@@ -41,6 +41,7 @@ import org.w3c.dom.*;
 import java.awt.*;
 import java.net.*;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.regex.*;
 import java.lang.reflect.*;
 import java.util.logging.Level;
@@ -54,7 +55,6 @@ public class XMLParseUtil
 {
     private static final Pattern PATTERN_WHITESPACE = Pattern.compile("[^\\s]+");
     private static final Pattern PATTERN_SEMI_COLON = Pattern.compile(";");
-    static final Pattern fpPat = Pattern.compile("([-+]?((\\d*\\.\\d+)|(\\d+))([eE][+-]?\\d+)?)(\\%|in|cm|mm|pt|pc|px|em|ex)?");
     static final Pattern intPat = Pattern.compile("[-+]?\\d+");
     static final Pattern quotePat = Pattern.compile("^'|'$");
 
@@ -119,8 +119,10 @@ public class XMLParseUtil
 
     public static boolean isDouble(String val)
     {
-        Matcher m = fpPat.matcher(val);
-        return m.matches();
+        if (val == null || val.length() == 0) return false;
+        int end = scanNumberEnd(val, 0);
+        if (end == -1) return false;
+        return end + unitsLength(scanUnits(val, end)) == val.length();
     }
     
     public static double parseDouble(String val)
@@ -142,30 +144,59 @@ public class XMLParseUtil
      * Searches the given string for the first floating point number it contains,
      * parses and returns it.
      */
-    public synchronized static double findDouble(String val)
+    public static double findDouble(String val)
     {
         if (val == null) return 0;
 
-        Matcher matcher = fpPat.matcher(val);
-        try
+        int start = scanNumberStart(val, 0);
+        if (start == -1) return 0;
+        int end = scanNumberEnd(val, start);
+
+        double retVal = parseDouble(val, start, end);
+
+        float pixPerInch = getPixelsPerInch();
+        if (pixPerInch == 0)
         {
-            if (!matcher.find()) return 0;
+            //Headless toolkits cannot report a resolution.  Values are then
+            // returned as written.
+            return retVal;
         }
-        catch (StringIndexOutOfBoundsException e)
+        final float inchesPerCm = .3936f;
+
+        switch (scanUnits(val, end))
         {
-            Logger.getLogger(SVGConst.SVG_LOGGER).log(Level.WARNING, 
-                "XMLParseUtil: regex parse problem: '" + val + "'", e);
+            case NumberWithUnits.UT_PERCENT:
+                retVal /= 100;
+                break;
+            case NumberWithUnits.UT_IN:
+                retVal *= pixPerInch;
+                break;
+            case NumberWithUnits.UT_CM:
+                retVal *= inchesPerCm * pixPerInch;
+                break;
+            case NumberWithUnits.UT_MM:
+                retVal *= inchesPerCm * pixPerInch * .1f;
+                break;
+            case NumberWithUnits.UT_PT:
+                retVal *= (1f / 72f) * pixPerInch;
+                break;
+            case NumberWithUnits.UT_PC:
+                retVal *= (1f / 6f) * pixPerInch;
+                break;
         }
+        return retVal;
+    }
 
-        val = matcher.group(1);
-        //System.err.println("Parsing " + val);
+    private static volatile float pixelsPerInch = -1;
 
-        double retVal = 0;
-        try
-        { 
-            retVal = Double.parseDouble(val); 
-            
-            float pixPerInch;
+    /**
+     * @return resolution of the screen, or 0 if there is no screen to query
+     */
+    private static float getPixelsPerInch()
+    {
+        float pixPerInch = pixelsPerInch;
+        if (pixPerInch < 0)
+        {
             try {
                 pixPerInch = (float)Toolkit.getDefaultToolkit().getScreenResolution();
             }
@@ -174,34 +205,13 @@ public class XMLParseUtil
                 //Default value for headless X servers
                 pixPerInch = 72;
             }
-            final float inchesPerCm = .3936f;
-            final String units = matcher.group(6);
-            
-            if ("%".equals(units)) retVal /= 100;
-            else if ("in".equals(units))
+            catch (HeadlessException e)
             {
-                retVal *= pixPerInch;
-            }
-            else if ("cm".equals(units))
-            {
-                retVal *= inchesPerCm * pixPerInch;
-            }
-            else if ("mm".equals(units))
-            {
-                retVal *= inchesPerCm * pixPerInch * .1f;
-            }
-            else if ("pt".equals(units))
-            {
-                retVal *= (1f / 72f) * pixPerInch;
-            }
-            else if ("pc".equals(units))
-            {
-                retVal *= (1f / 6f) * pixPerInch;
+                pixPerInch = 0;
             }
+            pixelsPerInch = pixPerInch;
         }
-        catch (Exception e)
-        {}
-        return retVal;
+        return pixPerInch;
     }
 
     /**
@@ -210,27 +220,25 @@ public class XMLParseUtil
      * point value to be seperators.  Thus this will parse whitespace seperated,
      * comma seperated, and many other separation schemes correctly.
      */
-    public synchronized static double[] parseDoubleList(String list)
+    public static double[] parseDoubleList(String list)
     {
         if (list == null) return null;
-        Matcher matcher = fpPat.matcher(list);
 
-        LinkedList<Double> doubList = new LinkedList<Double>();
-        while (matcher.find())
+        double[] retArr = new double[8];
+        int size = 0;
+        int start = scanNumberStart(list, 0);
+        while (start != -1)
         {
-            String val = matcher.group(1);
-            doubList.add(Double.valueOf(val));
-        }
-
-        double[] retArr = new double[doubList.size()];
-        Iterator<Double> it = doubList.iterator();
-        int idx = 0;
-        while (it.hasNext())
-        {
-            retArr[idx++] = ((Double)it.next()).doubleValue();
+            int end = scanNumberEnd(list, start);
+            if (size == retArr.length)
+            {
+                retArr = Arrays.copyOf(retArr, size * 2);
+            }
+            retArr[size++] = parseDouble(list, start, end);
+            start = scanNumberStart(list, end + unitsLength(scanUnits(list, end)));
         }
 
-        return retArr;
+        return size == retArr.length ? retArr : Arrays.copyOf(retArr, size);
     }
 
     public static float parseFloat(String val)
@@ -252,48 +260,252 @@ public class XMLParseUtil
      * Searches the given string for the first floating point number it contains,
      * parses and returns it.
      */
-    public synchronized static float findFloat(String val)
+    public static float findFloat(String val)
     {
         if (val == null) return 0f;
-        Matcher matcher = fpPat.matcher(val);
-        if (!matcher.find()) return 0f;
+        int start = scanNumberStart(val, 0);
+        if (start == -1) return 0f;
+        int end = scanNumberEnd(val, start);
 
-        val = matcher.group(1);
-        //System.err.println("Parsing " + val);
+        float retVal = parseFloat(val, start, end);
+        if (scanUnits(val, end) == NumberWithUnits.UT_PERCENT) retVal /= 100;
+        return retVal;
+    }
 
-        float retVal = 0f;
-        try
+    public static float[] parseFloatList(String list)
+    {
+        if (list == null) return null;
+
+        float[] retArr = new float[8];
+        int size = 0;
+        int start = scanNumberStart(list, 0);
+        while (start != -1)
         {
-            retVal = Float.parseFloat(val);
-            String units = matcher.group(6);
-            if ("%".equals(units)) retVal /= 100;
+            int end = scanNumberEnd(list, start);
+            if (size == retArr.length)
+            {
+                retArr = Arrays.copyOf(retArr, size * 2);
+            }
+            retArr[size++] = parseFloat(list, start, end);
+            start = scanNumberStart(list, end + unitsLength(scanUnits(list, end)));
         }
-        catch (Exception e)
-        {}
-        return retVal;
+
+        return size == retArr.length ? retArr : Arrays.copyOf(retArr, size);
     }
 
-    public synchronized static float[] parseFloatList(String list)
+    /**
+     * Finds where the next number in a string begins.  Numbers have the
+     * form <code>[-+]?(\d*\.\d+|\d+)([eE][+-]?\d+)?</code>.
+     *
+     * @param str - String to search
+     * @param from - Index to start searching at
+     * @return index of the first character of the number, or -1 if the
+     * string contains no further numbers
+     */
+    public static int scanNumberStart(String str, int from)
     {
-        if (list == null) return null;
-        Matcher matcher = fpPat.matcher(list);
+        int len = str.length();
+        for (int i = from; i < len; ++i)
+        {
+            char ch = str.charAt(i);
+            if ((ch >= '0' && ch <= '9') || ch == '.' || ch == '-' || ch == '+')
+            {
+                if (scanNumberEnd(str, i) != -1)
+                {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
 
-        LinkedList<Float> floatList = new LinkedList<Float>();
-        while (matcher.find())
+    /**
+     * Reads the number beginning at the given index.
+     *
+     * @param str - String to scan
+     * @param start - Index of the first character of the number
+     * @return index just past the last character of the number, or -1 if
+     * no number starts at the given index.  Units are not included.
+     */
+    public static int scanNumberEnd(String str, int start)
+    {
+        int len = str.length();
+        int i = start;
+        if (i < len && (str.charAt(i) == '-' || str.charAt(i) == '+')) i++;
+
+        int intStart = i;
+        while (i < len && isDigit(str.charAt(i))) i++;
+
+        if (i + 1 < len && str.charAt(i) == '.' && isDigit(str.charAt(i + 1)))
+        {
+            i += 2;
+            while (i < len && isDigit(str.charAt(i))) i++;
+        }
+        else if (i == intStart)
         {
-            String val = matcher.group(1);
-            floatList.add(Float.valueOf(val));
+            return -1;
         }
 
-        float[] retArr = new float[floatList.size()];
-        Iterator<Float> it = floatList.iterator();
-        int idx = 0;
-        while (it.hasNext())
+        if (i < len && (str.charAt(i) == 'e' || str.charAt(i) == 'E'))
         {
-            retArr[idx++] = ((Float)it.next()).floatValue();
+            int j = i + 1;
+            if (j < len && (str.charAt(j) == '-' || str.charAt(j) == '+')) j++;
+            if (j < len && isDigit(str.charAt(j)))
+            {
+                while (j < len && isDigit(str.charAt(j))) j++;
+                i = j;
+            }
         }
+        return i;
+    }
 
-        return retArr;
+    /**
+     * @param str - String to scan
+     * @param pos - Index just past the end of a number
+     * @return the NumberWithUnits unit type of the units directly following
+     * the number, or UT_UNITLESS if there are none
+     */
+    public static int scanUnits(String str, int pos)
+    {
+        if (pos >= str.length()) return NumberWithUnits.UT_UNITLESS;
+        char c0 = str.charAt(pos);
+        if (c0 == '%') return NumberWithUnits.UT_PERCENT;
+        if (pos + 1 >= str.length()) return NumberWithUnits.UT_UNITLESS;
+        char c1 = str.charAt(pos + 1);
+
+        switch (c0)
+        {
+            case 'i':
+                if (c1 == 'n') return NumberWithUnits.UT_IN;
+                break;
+            case 'c':
+                if (c1 == 'm') return NumberWithUnits.UT_CM;
+                break;
+            case 'm':
+                if (c1 == 'm') return NumberWithUnits.UT_MM;
+                break;
+            case 'p':
+                if (c1 == 't') return NumberWithUnits.UT_PT;
+                if (c1 == 'c') return NumberWithUnits.UT_PC;
+                if (c1 == 'x') return NumberWithUnits.UT_PX;
+                break;
+            case 'e':
+                if (c1 == 'm') return NumberWithUnits.UT_EM;
+                if (c1 == 'x') return NumberWithUnits.UT_EX;
+                break;
+        }
+        return NumberWithUnits.UT_UNITLESS;
+    }
+
+    /**
+     * @return number of characters used to write the given unit type
+     */
+    public static int unitsLength(int unitType)
+    {
+        switch (unitType)
+        {
+            case NumberWithUnits.UT_UNITLESS:
+                return 0;
+            case NumberWithUnits.UT_PERCENT:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    private static boolean isDigit(char ch)
+    {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final float[] POW10F = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    /**
+     * Parses a number found by scanNumberStart() and scanNumberEnd().  Gives
+     * the same result as Double.parseDouble(), but does not create a
+     * substring for numbers with few digits.
+     */
+    public static double parseDouble(String str, int start, int end)
+    {
+        long mantissa = scanMantissa(str, start, end);
+        int exp = scanExponent(str, start, end);
+        if (mantissa >= 0 && mantissa <= (1L << 53) && exp >= -22 && exp <= 22)
+        {
+            double val = exp < 0 ? mantissa / POW10[-exp] : mantissa * POW10[exp];
+            return str.charAt(start) == '-' ? -val : val;
+        }
+        return Double.parseDouble(str.substring(start, end));
+    }
+
+    /**
+     * Parses a number found by scanNumberStart() and scanNumberEnd().  Gives
+     * the same result as Float.parseFloat(), but does not create a
+     * substring for numbers with few digits.
+     */
+    public static float parseFloat(String str, int start, int end)
+    {
+        long mantissa = scanMantissa(str, start, end);
+        int exp = scanExponent(str, start, end);
+        if (mantissa >= 0 && mantissa <= (1L << 24) && exp >= -10 && exp <= 10)
+        {
+            float val = exp < 0 ? mantissa / POW10F[-exp] : mantissa * POW10F[exp];
+            return str.charAt(start) == '-' ? -val : val;
+        }
+        return Float.parseFloat(str.substring(start, end));
+    }
+
+    /**
+     * @return all digits of the number as an integer ignoring the decimal
+     * point, or -1 if there are too many to fit
+     */
+    private static long scanMantissa(String str, int start, int end)
+    {
+        long mantissa = 0;
+        for (int i = start; i < end; ++i)
+        {
+            char ch = str.charAt(i);
+            if (ch == 'e' || ch == 'E') break;
+            if (!isDigit(ch)) continue;
+            if (mantissa >= 100000000000000000L) return -1;
+            mantissa = mantissa * 10 + (ch - '0');
+        }
+        return mantissa;
+    }
+
+    /**
+     * @return power of ten to multiply the mantissa by, or Integer.MIN_VALUE
+     * if the exponent is too large to read
+     */
+    private static int scanExponent(String str, int start, int end)
+    {
+        int exp = 0;
+        int i = start;
+        boolean fraction = false;
+        for (; i < end; ++i)
+        {
+            char ch = str.charAt(i);
+            if (ch == '.') fraction = true;
+            else if (ch == 'e' || ch == 'E') break;
+            else if (fraction) exp--;
+        }
+        if (i == end) return exp;
+
+        i++;
+        boolean negative = str.charAt(i) == '-';
+        if (str.charAt(i) == '-' || str.charAt(i) == '+') i++;
+        if (end - i > 6) return Integer.MIN_VALUE;
+        int power = 0;
+        for (; i < end; ++i)
+        {
+            power = power * 10 + (str.charAt(i) - '0');
+        }
+        return exp + (negative ? -power : power);
     }
 
     public static int parseInt(String val)
@@ -801,6 +1013,22 @@ public class XMLParseUtil
      * @param map - A map to which these styles will be added
      */
     public static HashMap<String, StyleAttribute> parseStyle(String styleString, HashMap<String, StyleAttribute> map) {
+        parseStyle(styleString, attrib -> map.put(attrib.getName(), attrib));
+        return map;
+    }
+
+    /**
+     * Takes a CSS style string and adds the styles it declares to a table.
+     * @param styleString - A CSS formatted string of styles.  Eg,
+     *     "font-size:12;fill:#d32c27;fill-rule:evenodd;stroke-width:1pt;"
+     * @param table - A table to which these styles will be added
+     */
+    public static PropertyTable parseStyle(String styleString, PropertyTable table) {
+        parseStyle(styleString, table::put);
+        return table;
+    }
+
+    private static void parseStyle(String styleString, Consumer<StyleAttribute> output) {
 
         String[] styles = PATTERN_SEMI_COLON.split(styleString);
 
@@ -819,9 +1047,7 @@ public class XMLParseUtil
             String key = styles[i].substring(0, colon).trim().intern();
             String value = quotePat.matcher(styles[i].substring(colon + 1).trim()).replaceAll("").intern();
 
-            map.put(key, new StyleAttribute(key, value));
+            output.accept(new StyleAttribute(key, value));
         }
-
-        return map;
     }
 }
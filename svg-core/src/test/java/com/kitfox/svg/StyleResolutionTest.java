@@ -0,0 +1,148 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ */
+package com.kitfox.svg;
+
+import com.kitfox.svg.xml.StyleAttribute;
+import java.io.StringReader;
+import java.net.URI;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Checks how style sheet rules, inline styles and presentation attributes
+ * combine into the computed style of an element.
+ *
+ * @author kitfox
+ */
+public class StyleResolutionTest
+{
+    private static final String SHAPES =
+        "<rect id='a' class='c' width='1' height='1'/>"
+        + "<rect id='b' class='c' width='1' height='1'/>"
+        + "<rect id='d' width='1' height='1'/>";
+
+    @Test
+    public void testSpecificity() throws Exception
+    {
+        //Rules are listed from most to least specific, so order alone
+        // would pick the wrong winner
+        SVGDiagram diagram = load(
+            "#a { fill: red } g rect.c { fill: green } rect.c { fill: blue } rect { fill: gray }",
+            "<g>" + SHAPES + "</g>");
+        assertEquals("red", getFill(diagram, "a"));
+        assertEquals("green", getFill(diagram, "b"));
+        assertEquals("gray", getFill(diagram, "d"));
+    }
+
+    @Test
+    public void testSourceOrder() throws Exception
+    {
+        SVGDiagram diagram = load(
+            ".c { fill: red } .c { fill: blue }",
+            SHAPES);
+        assertEquals("blue", getFill(diagram, "a"));
+    }
+
+    @Test
+    public void testImportant() throws Exception
+    {
+        SVGDiagram diagram = load(
+            "rect { fill: blue !important; stroke: blue } #a { fill: red; stroke: red }",
+            SHAPES);
+        assertEquals("blue", getFill(diagram, "a"));
+        assertEquals("red", getStyle(diagram, "a", "stroke"));
+    }
+
+    @Test
+    public void testCascadeOrder() throws Exception
+    {
+        //Inline styles beat sheet rules, which beat presentation attributes
+        SVGDiagram diagram = load(
+            "rect { fill: green; stroke: green }",
+            "<rect id='a' width='1' height='1' style='fill: red' fill='blue' stroke='blue' opacity='0.5'/>");
+        assertEquals("red", getFill(diagram, "a"));
+        assertEquals("green", getStyle(diagram, "a", "stroke"));
+        assertEquals("0.5", getStyle(diagram, "a", "opacity"));
+    }
+
+    @Test
+    public void testStructuralSelectors() throws Exception
+    {
+        SVGDiagram diagram = load(
+            "rect:last-child { fill: red } rect + rect { stroke: blue }",
+            "<g id='g'>" + SHAPES + "</g>");
+        assertEquals("red", getFill(diagram, "d"));
+        assertEquals("blue", getStyle(diagram, "b", "stroke"));
+
+        //Appending a child changes which sibling is last
+        Group group = (Group) diagram.getElement("g");
+        Rect added = new Rect();
+        group.loaderAddChild(null, added);
+        assertEquals("", getFill(diagram, "d"));
+        assertEquals("red", getStyle(added, "fill"));
+
+        //Removing the first child leaves b without a preceding sibling
+        group.removeChild(diagram.getElement("a"));
+        assertEquals("", getStyle(diagram, "b", "stroke"));
+        assertEquals("blue", getStyle(diagram, "d", "stroke"));
+    }
+
+    private static SVGDiagram load(String sheet, String content)
+    {
+        SVGUniverse universe = new SVGUniverse();
+        String text = "<svg xmlns='http://www.w3.org/2000/svg' width='10' height='10'>"
+            + "<style type='text/css'>" + sheet + "</style>"
+            + content + "</svg>";
+        URI uri = universe.loadSVG(new StringReader(text), "test");
+        return universe.getDiagram(uri);
+    }
+
+    private static String getFill(SVGDiagram diagram, String id) throws SVGException
+    {
+        return getStyle(diagram, id, "fill");
+    }
+
+    private static String getStyle(SVGDiagram diagram, String id, String name) throws SVGException
+    {
+        return getStyle(diagram.getElement(id), name);
+    }
+
+    private static String getStyle(SVGElement element, String name) throws SVGException
+    {
+        StyleAttribute attrib = new StyleAttribute(name);
+        element.getStyle(attrib);
+        return attrib.getStringValue();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ */
+package com.kitfox.svg.app;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import javax.imageio.ImageIO;
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the images written by BatchRasterizer for each scale.
+ *
+ * @author kitfox
+ */
+public class BatchRasterizerTest
+{
+    //Left half clear, right half filled
+    private static final String SVG =
+        "<svg xmlns='http://www.w3.org/2000/svg' width='10' height='10'>"
+        + "<rect x='5' y='0' width='5' height='10' fill='#ff0000'/></svg>";
+
+    private File dir;
+    private File source;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = File.createTempFile("rasterizer", "");
+        dir.delete();
+        dir.mkdir();
+        source = new File(dir, "half.svg");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(source), StandardCharsets.UTF_8))
+        {
+            out.write(SVG);
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File file : dir.listFiles())
+        {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testScalesSizeToFit() throws Exception
+    {
+        checkScales(true);
+    }
+
+    @Test
+    public void testScalesNaturalSize() throws Exception
+    {
+        checkScales(false);
+    }
+
+    private void checkScales(boolean sizeToFit) throws Exception
+    {
+        BatchRasterizer rasterizer = new BatchRasterizer();
+        rasterizer.setScales(1, 2, 3);
+        rasterizer.setSizeToFit(sizeToFit);
+        rasterizer.setAntiAlias(false);
+        rasterizer.setThreads(1);
+        File dest = new File(dir, "half.png");
+        rasterizer.addFile(source, dest);
+
+        BatchRasterizer.Summary summary = rasterizer.run();
+        assertEquals(0, summary.getNumFailures());
+        assertEquals(3, summary.getNumImages());
+
+        for (int scale = 1; scale <= 3; ++scale)
+        {
+            BufferedImage img = ImageIO.read(BatchRasterizer.getScaledFile(dest, scale));
+            int size = 10 * scale;
+            assertEquals(size, img.getWidth());
+            assertEquals(size, img.getHeight());
+            //Samples either side of the edge of the rect, at both ends
+            for (int y : new int[]{0, size - 1})
+            {
+                assertEquals("@" + scale + "x", 0, img.getRGB(5 * scale - 1, y) >>> 24);
+                assertEquals("@" + scale + "x", 0xffff0000, img.getRGB(5 * scale, y));
+                assertEquals("@" + scale + "x", 0xffff0000, img.getRGB(size - 1, y));
+            }
+        }
+    }
+}
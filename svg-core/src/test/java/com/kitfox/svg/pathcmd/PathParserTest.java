@@ -0,0 +1,337 @@
+/*
+ * SVG Salamander
+ * Copyright (c) 2004, Mark McKay
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *   - Redistributions of source code must retain the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer.
+ *   - Redistributions in binary form must reproduce the above
+ *     copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Mark McKay can be contacted at mark@kitfox.com.  Salamander and other
+ * projects can be found at http://www.kitfox.com
+ *
+ */
+package com.kitfox.svg.pathcmd;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Checks that paths parsed into a PackedPath give exactly the segments the
+ * parser they replaced built through PathCommand and BuildHistory.
+ *
+ * @author kitfox
+ */
+public class PathParserTest
+{
+    private static final String COMMANDS = "MmLlHhVvAaQqTtCcSsZz";
+
+    @Test
+    public void testArcs()
+    {
+        assertSameAsLegacy("M10 10 A20 30 0 0 1 50 50");
+        assertSameAsLegacy("M10 10 a20 30 45 1 0 50 -50 20 20 0 0 1 10 10");
+        //Flags need no separators
+        assertSameAsLegacy("M0 0a25,25 -30 0,1 50,-25a5 5 0 0150 0");
+        assertSameAsLegacy("M0,0A1,1,0,1,1,10,0z");
+    }
+
+    @Test
+    public void testSmoothCurves()
+    {
+        assertSameAsLegacy("M10 80 C40 10 65 10 95 80 S150 150 180 80");
+        assertSameAsLegacy("M10 80 c30-70 55-70 85 0 s55 70 85 0 55-70 85 0");
+        assertSameAsLegacy("M10 80 Q52.5 10 95 80 T180 80 265 80");
+        assertSameAsLegacy("M10 80 q42.5-70 85 0 t85 0 85 0");
+        //Smooth curves without a preceding curve reflect the current point
+        assertSameAsLegacy("M10 10 S20 20 30 10 T50 50");
+        assertSameAsLegacy("M10 10 L20 20 s10 10 20 0 t10 10");
+    }
+
+    @Test
+    public void testImplicitRepeats()
+    {
+        assertSameAsLegacy("M0 0 10 10 20 0 30 10");
+        assertSameAsLegacy("m0 0 10 10 20 0 30 10z");
+        assertSameAsLegacy("M0 0 L10 10 20 0 H30 40 V50 60 h5 5 v5 5");
+        assertSameAsLegacy("M0 0 C1 1 2 2 3 3 4 4 5 5 6 6");
+        assertSameAsLegacy("M0 0 Z m5 5 l1 1 z M10 10 l1 1");
+    }
+
+    @Test
+    public void testNumberForms()
+    {
+        assertSameAsLegacy("M1e2 1E2 L1e-2 1E+2 -1.5e1 .5e-1");
+        assertSameAsLegacy("M.5.5L-.5-.5 1-1");
+        assertSameAsLegacy("M00L01 10 0.5.5");
+        assertSameAsLegacy("M+1 +2 L1. 2. 3.0e0 -0");
+        assertSameAsLegacy("  M 1 , 2 \n\t L 3 ,4  ");
+        assertSameAsLegacy("M3.4028235e38 1.4e-45 L123456789 0.000001");
+    }
+
+    @Test
+    public void testInvalid()
+    {
+        assertSameAsLegacy("M1 2 L");
+        assertSameAsLegacy("M1 2 X3 4");
+        assertSameAsLegacy("M1 2 A1 1 0 2 0 5 5");
+        assertSameAsLegacy("M1 2 L1e 3");
+        assertSameAsLegacy("M1 2 L- 3");
+        assertSameAsLegacy("M1,,2");
+    }
+
+    @Test
+    public void testRandomPaths()
+    {
+        Random random = new Random(20170301);
+        for (int i = 0; i < 5000; ++i)
+        {
+            assertSameAsLegacy(randomPath(random));
+        }
+    }
+
+    private static String randomPath(Random random)
+    {
+        StringBuilder sb = new StringBuilder();
+        int numCommands = 1 + random.nextInt(12);
+        for (int i = 0; i < numCommands; ++i)
+        {
+            char cmd = i == 0 && random.nextInt(8) != 0
+                ? (random.nextBoolean() ? 'M' : 'm')
+                : COMMANDS.charAt(random.nextInt(COMMANDS.length()));
+            sb.append(cmd);
+            appendSeparator(random, sb);
+            if (cmd == 'Z' || cmd == 'z')
+            {
+                continue;
+            }
+
+            int repeats = 1 + (random.nextInt(4) == 0 ? random.nextInt(3) : 0);
+            for (int j = 0; j < repeats; ++j)
+            {
+                switch (Character.toUpperCase(cmd))
+                {
+                    case 'H':
+                    case 'V':
+                        appendNumber(random, sb);
+                        break;
+                    case 'A':
+                        appendNumber(random, sb);
+                        appendNumber(random, sb);
+                        appendNumber(random, sb);
+                        appendFlag(random, sb);
+                        appendFlag(random, sb);
+                        appendNumber(random, sb);
+                        appendNumber(random, sb);
+                        break;
+                    case 'Q':
+                    case 'S':
+                        for (int k = 0; k < 4; ++k)
+                        {
+                            appendNumber(random, sb);
+                        }
+                        break;
+                    case 'C':
+                        for (int k = 0; k < 6; ++k)
+                        {
+                            appendNumber(random, sb);
+                        }
+                        break;
+                    default:
+                        appendNumber(random, sb);
+                        appendNumber(random, sb);
+                        break;
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendNumber(Random random, StringBuilder sb)
+    {
+        if (random.nextInt(5) == 0)
+        {
+            sb.append(random.nextBoolean() ? '-' : '+');
+        }
+        switch (random.nextInt(6))
+        {
+            case 0:
+                sb.append(random.nextInt(1000));
+                break;
+            case 1:
+                sb.append('.').append(random.nextInt(100));
+                break;
+            case 2:
+                sb.append(random.nextInt(100)).append('.').append(random.nextInt(1000));
+                break;
+            case 3:
+                sb.append(random.nextInt(10)).append(random.nextBoolean() ? 'e' : 'E');
+                if (random.nextBoolean())
+                {
+                    sb.append(random.nextBoolean() ? '-' : '+');
+                }
+                sb.append(random.nextInt(5));
+                break;
+            case 4:
+                sb.append('0');
+                break;
+            default:
+                sb.append(random.nextFloat() * 200 - 100);
+                break;
+        }
+        appendSeparator(random, sb);
+    }
+
+    private static void appendFlag(Random random, StringBuilder sb)
+    {
+        sb.append(random.nextBoolean() ? '1' : '0');
+        if (random.nextBoolean())
+        {
+            appendSeparator(random, sb);
+        }
+    }
+
+    private static void appendSeparator(Random random, StringBuilder sb)
+    {
+        switch (random.nextInt(4))
+        {
+            case 0:
+                sb.append(',');
+                break;
+            case 1:
+                sb.append(" , ");
+                break;
+            default:
+                sb.append(' ');
+                break;
+        }
+    }
+
+    /**
+     * Parses d with the legacy parser and both forms of the packed one, and
+     * checks they give the same segments or fail with the same exception.
+     */
+    private static void assertSameAsLegacy(final String d)
+    {
+        final PathCommand[] legacy;
+        try
+        {
+            legacy = new LegacyPathParser(d).parsePathCommand();
+        } catch (RuntimeException e)
+        {
+            assertFails("Parsing " + d, e.getClass(), new Runnable()
+            {
+                public void run()
+                {
+                    new PathParser(d).parsePackedPath();
+                }
+            });
+            return;
+        }
+
+        final PackedPath packed = new PathParser(d).parsePackedPath();
+        List<Object> expected;
+        try
+        {
+            expected = segments(buildFromCommands(legacy));
+        } catch (RuntimeException e)
+        {
+            //Such as a path that does not start with a moveto
+            assertFails("Building " + d, e.getClass(), new Runnable()
+            {
+                public void run()
+                {
+                    packed.buildPath(GeneralPath.WIND_NON_ZERO);
+                }
+            });
+            return;
+        }
+
+        assertEquals("Packed path of " + d, expected, segments(packed.buildPath(GeneralPath.WIND_NON_ZERO)));
+        assertEquals("Commands of " + d, expected, segments(buildFromCommands(packed.toCommands())));
+        assertEquals("PathCommands of " + d, expected, segments(buildFromCommands(new PathParser(d).parsePathCommand())));
+    }
+
+    private static void assertFails(String message, Class<?> exceptionClass, Runnable action)
+    {
+        try
+        {
+            action.run();
+        } catch (RuntimeException e)
+        {
+            assertEquals(message, exceptionClass, e.getClass());
+            return;
+        }
+        fail(message + ": expected " + exceptionClass.getSimpleName());
+    }
+
+    /**
+     * Builds a path the way SVGElement did before paths were packed
+     */
+    private static GeneralPath buildFromCommands(PathCommand[] commands)
+    {
+        int numKnots = 2;
+        for (PathCommand command : commands)
+        {
+            numKnots += command.getNumKnotsAdded();
+        }
+
+        GeneralPath path = new GeneralPath(GeneralPath.WIND_NON_ZERO, numKnots);
+        BuildHistory hist = new BuildHistory();
+        for (PathCommand cmd : commands)
+        {
+            cmd.appendPath(path, hist);
+        }
+        return path;
+    }
+
+    /**
+     * @return the segment types and exact coordinates of a path
+     */
+    private static List<Object> segments(GeneralPath path)
+    {
+        List<Object> segments = new ArrayList<Object>();
+        float[] coords = new float[6];
+        for (PathIterator it = path.getPathIterator(null); !it.isDone(); it.next())
+        {
+            int type = it.currentSegment(coords);
+            segments.add(type);
+            int numCoords = type == PathIterator.SEG_CLOSE ? 0
+                : type == PathIterator.SEG_QUADTO ? 4
+                : type == PathIterator.SEG_CUBICTO ? 6 : 2;
+            for (int i = 0; i < numCoords; ++i)
+            {
+                //Compare bits, so that -0 and NaN are told apart
+                segments.add(Float.floatToIntBits(coords[i]));
+            }
+        }
+        return segments;
+    }
+}